@@ -0,0 +1,30 @@
+package com.minthantoo.apigateway.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+public class HttpClientConfig {
+
+    // replaces SCG's gatewayHttpClientFactory (it backs off when there is one), see PooledHttpClientFactory
+    @Bean
+    public HttpClientFactory pooledHttpClientFactory(HttpClientProperties properties,
+                                                     ServerProperties serverProperties,
+                                                     HttpClientSslConfigurer sslConfigurer,
+                                                     List<HttpClientCustomizer> customizers,
+                                                     GatewayProperties gatewayProperties,
+                                                     @Value("${gateway.http-client.pending-acquire-max-count:-1}") int pendingAcquireMaxCount,
+                                                     @Value("${gateway.http-client.h2c.enabled:false}") boolean h2c) {
+        return new PooledHttpClientFactory(properties, serverProperties, sslConfigurer, customizers,
+                gatewayProperties.getRoutes(), pendingAcquireMaxCount, h2c);
+    }
+}
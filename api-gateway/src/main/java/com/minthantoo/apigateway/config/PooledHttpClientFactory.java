@@ -0,0 +1,151 @@
+package com.minthantoo.apigateway.config;
+
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.core.convert.ConversionService;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+// The HttpClient the gateway forwards with, SCG's factory plus:
+//   - a pool per backend configured in the route metadata (connection-pool.*), on top of the
+//     spring.cloud.gateway.httpclient.pool defaults. Reactor Netty already keeps one pool per backend address,
+//     this only gives each one its own limits. Routes to the same backend share its pool, configure it on one of them
+//   - a limit for requests waiting for a connection (gateway.http-client.pending-acquire-max-count), SCG's fixed
+//     pool lets the queue grow without limit
+//   - h2c to the services (gateway.http-client.h2c.enabled). Offered as an upgrade on the first request of a
+//     connection, a backend without HTTP/2 just stays on HTTP/1.1
+// With spring.cloud.gateway.httpclient.pool.metrics the pools show up as reactor.netty.connection.provider.* meters,
+// tagged with the backend address (active / idle / pending connections, pending.connections.time = acquire latency).
+public class PooledHttpClientFactory extends HttpClientFactory {
+    public static final String POOL_METADATA = "connection-pool";
+
+    private final List<RouteDefinition> routes;
+    private final int pendingAcquireMaxCount;
+    private final boolean h2c;
+    private final ConversionService conversionService = ApplicationConversionService.getSharedInstance();
+
+    public PooledHttpClientFactory(HttpClientProperties properties, ServerProperties serverProperties,
+                                   HttpClientSslConfigurer sslConfigurer, List<HttpClientCustomizer> customizers,
+                                   List<RouteDefinition> routes, int pendingAcquireMaxCount, boolean h2c) {
+        super(properties, serverProperties, sslConfigurer, customizers);
+        this.routes = routes;
+        this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+        this.h2c = h2c;
+    }
+
+    @Override
+    protected HttpClient createInstance() {
+        HttpClient httpClient = super.createInstance();
+        if (!h2c) {
+            return httpClient;
+        }
+        return serverProperties.getHttp2().isEnabled()
+                ? httpClient.protocol(HttpProtocol.HTTP11, HttpProtocol.H2, HttpProtocol.H2C)
+                : httpClient.protocol(HttpProtocol.HTTP11, HttpProtocol.H2C);
+    }
+
+    @Override
+    protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+        HttpClientProperties.Pool pool = properties.getPool();
+        if (pool.getType() == HttpClientProperties.Pool.PoolType.DISABLED) {
+            return super.buildConnectionProvider(properties);
+        }
+
+        ConnectionProvider.Builder builder = ConnectionProvider.builder(pool.getName());
+        applyDefaults(builder, pool);
+        for (RouteDefinition route : routes) {
+            InetSocketAddress backend = backendAddress(route.getUri());
+            if (backend != null && route.getMetadata().get(POOL_METADATA) instanceof Map<?, ?> settings) {
+                // a host specific spec starts from Reactor Netty's defaults, not from the builder's
+                builder.forRemoteHost(backend, spec -> applyOverrides(applyDefaults(spec, pool), settings));
+            }
+        }
+        return builder.build();
+    }
+
+    // same as SCG's buildConnectionProvider, plus the pending limit
+    private <T extends ConnectionProvider.ConnectionPoolSpec<T>> T applyDefaults(T spec, HttpClientProperties.Pool pool) {
+        if (pool.getType() == HttpClientProperties.Pool.PoolType.FIXED) {
+            spec.maxConnections(pool.getMaxConnections())
+                    .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                    .pendingAcquireTimeout(Duration.ofMillis(pool.getAcquireTimeout()));
+        } else {
+            // elastic, nothing ever waits for a connection
+            spec.maxConnections(Integer.MAX_VALUE)
+                    .pendingAcquireTimeout(Duration.ZERO)
+                    .pendingAcquireMaxCount(-1);
+        }
+        if (pool.getMaxIdleTime() != null) {
+            spec.maxIdleTime(pool.getMaxIdleTime());
+        }
+        if (pool.getMaxLifeTime() != null) {
+            spec.maxLifeTime(pool.getMaxLifeTime());
+        }
+        spec.evictInBackground(pool.getEvictionInterval());
+        spec.metrics(pool.isMetrics());
+        if (pool.getLeasingStrategy() == HttpClientProperties.Pool.LeasingStrategy.FIFO) {
+            spec.fifo();
+        } else {
+            spec.lifo();
+        }
+        return spec;
+    }
+
+    private <T extends ConnectionProvider.ConnectionPoolSpec<T>> void applyOverrides(T spec, Map<?, ?> settings) {
+        Integer maxConnections = setting(settings, "max-connections", Integer.class);
+        if (maxConnections != null) {
+            spec.maxConnections(maxConnections);
+        }
+        Integer pendingAcquireMax = setting(settings, "pending-acquire-max-count", Integer.class);
+        if (pendingAcquireMax != null) {
+            spec.pendingAcquireMaxCount(pendingAcquireMax);
+        }
+        Duration pendingAcquireTimeout = setting(settings, "pending-acquire-timeout", Duration.class);
+        if (pendingAcquireTimeout != null) {
+            spec.pendingAcquireTimeout(pendingAcquireTimeout);
+        }
+        Duration maxIdleTime = setting(settings, "max-idle-time", Duration.class);
+        if (maxIdleTime != null) {
+            spec.maxIdleTime(maxIdleTime);
+        }
+        Duration maxLifeTime = setting(settings, "max-life-time", Duration.class);
+        if (maxLifeTime != null) {
+            spec.maxLifeTime(maxLifeTime);
+        }
+        Duration evictionInterval = setting(settings, "eviction-interval", Duration.class);
+        if (evictionInterval != null) {
+            spec.evictInBackground(evictionInterval);
+        }
+    }
+
+    // metadata values come from the yml as strings (or numbers), "2s" / "500ms" work for durations
+    private <V> V setting(Map<?, ?> settings, String name, Class<V> type) {
+        Object value = settings.get(name);
+        return value == null ? null : conversionService.convert(value, type);
+    }
+
+    // same address Reactor Netty keys its pools with, null for lb:// and other non HTTP routes
+    private static InetSocketAddress backendAddress(URI uri) {
+        if (uri == null || uri.getHost() == null) {
+            return null;
+        }
+        String scheme = uri.getScheme();
+        if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+            return null;
+        }
+        int port = uri.getPort() != -1 ? uri.getPort() : "https".equalsIgnoreCase(scheme) ? 443 : 80;
+        return InetSocketAddress.createUnresolved(uri.getHost(), port);
+    }
+}
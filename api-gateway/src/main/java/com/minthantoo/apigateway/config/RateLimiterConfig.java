@@ -1,14 +1,55 @@
 package com.minthantoo.apigateway.config;
 
+import com.minthantoo.apigateway.filter.JwtValidationGatewayFilterFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
+import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.net.InetSocketAddress;
+
 @Configuration
 public class RateLimiterConfig {
+
+    // gateway.rate-limit.trusted-proxies -> how many proxies / load balancers in front of the gateway add to
+    // X-Forwarded-For. 0 = use the address of the connection. The client is the entry that many hops from the right,
+    // entries further left are whatever the client sent and can't be trusted.
+    private final RemoteAddressResolver remoteAddressResolver;
+
+    public RateLimiterConfig(@Value("${gateway.rate-limit.trusted-proxies:0}") int trustedProxies) {
+        this.remoteAddressResolver = trustedProxies > 0
+                ? XForwardedRemoteAddressResolver.maxTrustedIndex(trustedProxies)
+                : new RemoteAddressResolver() {
+                };
+    }
+
     @Bean
+    @Primary
     public KeyResolver ipKeyResolver() {
-        return exchange -> Mono.just(exchange.getRequest().getRemoteAddress().getAddress().getHostAddress());
+        return exchange -> Mono.just(clientIp(exchange));
+    }
+
+    // per user for routes behind JwtValidation (the filter has to come before RequestRateLimiter),
+    // users behind the same NAT don't share a limit. Falls back to the client address without a verified subject
+    // (e.g. remote validation by auth-service)
+    @Bean
+    public KeyResolver jwtSubjectKeyResolver() {
+        return exchange -> {
+            String subject = exchange.getAttribute(JwtValidationGatewayFilterFactory.JWT_SUBJECT_ATTRIBUTE);
+            return Mono.just(subject != null ? "user:" + subject : clientIp(exchange));
+        };
+    }
+
+    private String clientIp(ServerWebExchange exchange) {
+        InetSocketAddress address = remoteAddressResolver.resolve(exchange);
+        if (address == null) {
+            return "ip:unknown";
+        }
+        return "ip:" + (address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString());
     }
 }
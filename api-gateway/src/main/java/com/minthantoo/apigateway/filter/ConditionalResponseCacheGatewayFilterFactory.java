@@ -0,0 +1,263 @@
+package com.minthantoo.apigateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+// Response cache with conditional GET for a route, for backends that send an ETag (patient-service GET /patients).
+//   - ConditionalResponseCache=5s,10MB -> timeToLive, size (bytes of cached bodies for this route)
+// A cached response is served without calling the backend for timeToLive. After that it is revalidated: the backend
+// gets our ETag as If-None-Match and usually answers with an empty 304, the cached body is reused.
+// Clients sending the ETag back get a 304 from the gateway, a hit or a revalidated entry doesn't cost them the body.
+// Only GETs whose response has an ETag (and no Cache-Control: no-store) are kept, streamed exports have none.
+// A successful write (POST/PUT/PATCH/DELETE) through the route drops the route's entries. Writes through other gateway
+// instances or straight to the service are seen after at most timeToLive, same as the service's own version refresh.
+// The gateway acts as the service's own reverse proxy here, so it uses timeToLive even though the service sends
+// Cache-Control: no-cache (that one is for clients). Keep the filter after JwtValidation, a hit must still be authenticated.
+// The key is path + query, responses must not depend on who asks (true for the patients list).
+@Component
+public class ConditionalResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ConditionalResponseCacheGatewayFilterFactory.Config> {
+
+    // hit -> served by the gateway, revalidated -> backend answered 304, miss -> backend sent the body
+    public static final String CACHE_STATUS_HEADER = "X-Gateway-Cache";
+    // set by the filter when the backend response has to go through ResponseCapture, see ConditionalResponseCacheWriteFilter
+    static final String CAPTURE_ATTRIBUTE = ConditionalResponseCacheGatewayFilterFactory.class.getName() + ".capture";
+
+    public ConditionalResponseCacheGatewayFilterFactory() {
+        super(Config.class);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("timeToLive", "size");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // one cache per route, bounded by the size of the bodies. Stale entries are kept for keepStale, they are
+        // what makes a revalidation possible
+        Cache<String, CachedResponse> cache = Caffeine.newBuilder()
+                .maximumWeight(config.getSize().toBytes())
+                .weigher((String key, CachedResponse cached) -> key.length() + cached.body().length)
+                .expireAfterAccess(config.getKeepStale())
+                .build();
+        long timeToLiveNanos = config.getTimeToLive().toNanos();
+
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            HttpMethod method = request.getMethod();
+
+            if (isWrite(method)) {
+                return chain.filter(exchange).doOnSuccess(done -> {
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    if (status != null && status.is2xxSuccessful()) {
+                        cache.invalidateAll();
+                    }
+                });
+            }
+            if (method != HttpMethod.GET) {
+                return chain.filter(exchange);
+            }
+
+            String key = request.getURI().getRawPath() + "?" + request.getURI().getRawQuery();
+            List<String> clientETags = clientETags(request);
+            CachedResponse cached = cache.getIfPresent(key);
+
+            if (cached != null && cached.isFresh(System.nanoTime()) && !isNoCacheRequest(request)) {
+                return write(exchange.getResponse(), cached, clientETags, "hit");
+            }
+
+            // the backend is asked with our ETag when we have a copy, the client's own one is checked here
+            ServerWebExchange forwarded = exchange;
+            if (cached != null) {
+                forwarded = exchange.mutate().request(builder -> builder.headers(headers -> {
+                    headers.setIfNoneMatch(cached.etag());
+                    headers.remove(HttpHeaders.IF_MODIFIED_SINCE);
+                })).build();
+            }
+            forwarded.getAttributes().put(CAPTURE_ATTRIBUTE, new ResponseCapture(cache, key, cached, clientETags, timeToLiveNanos));
+            return chain.filter(forwarded);
+        };
+    }
+
+    private static boolean isWrite(HttpMethod method) {
+        return method == HttpMethod.POST || method == HttpMethod.PUT || method == HttpMethod.PATCH || method == HttpMethod.DELETE;
+    }
+
+    // a malformed header counts as none
+    private static List<String> clientETags(ServerHttpRequest request) {
+        try {
+            return request.getHeaders().getIfNoneMatch();
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    private static boolean isNoCacheRequest(ServerHttpRequest request) {
+        String cacheControl = request.getHeaders().getCacheControl();
+        return cacheControl != null && cacheControl.contains("no-cache");
+    }
+
+    // 304 when the client already has this version, the cached body otherwise
+    static Mono<Void> write(ServerHttpResponse response, CachedResponse cached, List<String> clientETags, String cacheStatus) {
+        HttpHeaders headers = response.getHeaders();
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        headers.setETag(cached.etag());
+        if (cached.lastModified() != null) {
+            headers.set(HttpHeaders.LAST_MODIFIED, cached.lastModified());
+        }
+        if (cached.cacheControl() != null) {
+            headers.setCacheControl(cached.cacheControl());
+        }
+        headers.set(CACHE_STATUS_HEADER, cacheStatus);
+
+        if (matches(clientETags, cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            return response.setComplete();
+        }
+
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentType(cached.contentType());
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    // weak comparison, like the backend does it for GET
+    private static boolean matches(List<String> clientETags, String etag) {
+        String opaque = opaque(etag);
+        for (String clientETag : clientETags) {
+            if (clientETag.equals("*") || opaque(clientETag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    // freshUntil -> nanoTime
+    record CachedResponse(String etag, String lastModified, String cacheControl, MediaType contentType,
+                          byte[] body, long freshUntil) {
+
+        boolean isFresh(long now) {
+            return freshUntil - now > 0;
+        }
+
+        CachedResponse revalidated(long now, long timeToLiveNanos) {
+            return new CachedResponse(etag, lastModified, cacheControl, contentType, body, now + timeToLiveNanos);
+        }
+    }
+
+    // What to do with the backend's answer to a GET, called by ConditionalResponseCacheWriteFilter when it is written
+    static final class ResponseCapture {
+        private final Cache<String, CachedResponse> cache;
+        private final String key;
+        private final CachedResponse stale;
+        private final List<String> clientETags;
+        private final long timeToLiveNanos;
+
+        ResponseCapture(Cache<String, CachedResponse> cache, String key, CachedResponse stale,
+                        List<String> clientETags, long timeToLiveNanos) {
+            this.cache = cache;
+            this.key = key;
+            this.stale = stale;
+            this.clientETags = clientETags;
+            this.timeToLiveNanos = timeToLiveNanos;
+        }
+
+        Mono<Void> writeWith(ServerHttpResponse response, Publisher<? extends DataBuffer> body) {
+            HttpStatusCode status = response.getStatusCode();
+            HttpHeaders headers = response.getHeaders();
+
+            // our copy is still current, the 304 has no body worth keeping
+            if (stale != null && status != null && status.value() == HttpStatus.NOT_MODIFIED.value()) {
+                CachedResponse revalidated = stale.revalidated(System.nanoTime(), timeToLiveNanos);
+                cache.put(key, revalidated);
+                return Flux.from(body).doOnNext(DataBufferUtils::release)
+                        .then(Mono.defer(() -> write(response, revalidated, clientETags, "revalidated")));
+            }
+
+            String etag = headers.getETag();
+            if (status == null || status.value() != HttpStatus.OK.value() || etag == null || isNoStore(headers)) {
+                return response.writeWith(body);
+            }
+
+            // the whole body is needed for the cache anyway, the client gets it in one piece
+            return DataBufferUtils.join(body).flatMap(joined -> {
+                byte[] bytes = new byte[joined.readableByteCount()];
+                joined.read(bytes);
+                DataBufferUtils.release(joined);
+
+                CachedResponse cached = new CachedResponse(etag, headers.getFirst(HttpHeaders.LAST_MODIFIED),
+                        headers.getCacheControl(), headers.getContentType(), bytes, System.nanoTime() + timeToLiveNanos);
+                cache.put(key, cached);
+                return write(response, cached, clientETags, "miss");
+            });
+        }
+
+        private static boolean isNoStore(HttpHeaders headers) {
+            String cacheControl = headers.getCacheControl();
+            return cacheControl != null && cacheControl.contains(CacheControl.noStore().getHeaderValue());
+        }
+    }
+
+    public static class Config {
+        private Duration timeToLive = Duration.ofSeconds(5);
+
+        private DataSize size = DataSize.ofMegabytes(10);
+
+        private Duration keepStale = Duration.ofMinutes(10);
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public Config setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+            return this;
+        }
+
+        public DataSize getSize() {
+            return size;
+        }
+
+        public Config setSize(DataSize size) {
+            this.size = size;
+            return this;
+        }
+
+        public Duration getKeepStale() {
+            return keepStale;
+        }
+
+        public Config setKeepStale(Duration keepStale) {
+            this.keepStale = keepStale;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.minthantoo.apigateway.filter;
+
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+// Second half of ConditionalResponseCache.
+// NettyWriteResponseFilter writes the backend response to the response of the exchange it was given, so a decorator
+// has to be in place before it runs. Route filters run after it (and after JwtValidation), so the decorator is added
+// here for every request and only does something when the route filter left a ResponseCapture on the exchange.
+@Component
+public class ConditionalResponseCacheWriteFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return chain.filter(exchange.mutate().response(new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                ConditionalResponseCacheGatewayFilterFactory.ResponseCapture capture =
+                        exchange.getAttribute(ConditionalResponseCacheGatewayFilterFactory.CAPTURE_ATTRIBUTE);
+                if (capture == null) {
+                    return super.writeWith(body);
+                }
+                // once, the capture writes through getDelegate() and must not see its own output
+                exchange.getAttributes().remove(ConditionalResponseCacheGatewayFilterFactory.CAPTURE_ATTRIBUTE);
+                return capture.writeWith(getDelegate(), body);
+            }
+        }).build());
+    }
+
+    @Override
+    public int getOrder() {
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+}
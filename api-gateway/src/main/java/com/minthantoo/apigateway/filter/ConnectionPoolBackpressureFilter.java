@@ -0,0 +1,68 @@
+package com.minthantoo.apigateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeoutException;
+
+// A backend pool that is full and has too many requests waiting (pending-acquire-max-count), or a request that waited
+// longer than pending-acquire-timeout, is an overloaded backend and not a gateway error -> 503 + Retry-After instead
+// of a 500, counted per route as gateway.connection.pool.rejected.
+// Nothing was sent to the backend yet, so the client can safely retry.
+@Component
+public class ConnectionPoolBackpressureFilter implements GlobalFilter, Ordered {
+    private final MeterRegistry meterRegistry;
+
+    public ConnectionPoolBackpressureFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        return chain.filter(exchange).onErrorResume(
+                e -> rejectionReason(e) != null,
+                e -> {
+                    Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+                    String reason = rejectionReason(e);
+                    meterRegistry.counter("gateway.connection.pool.rejected",
+                            "route", route == null ? "unknown" : route.getId(), "reason", reason).increment();
+
+                    ServerHttpResponse response = exchange.getResponse();
+                    if (response.isCommitted()) {
+                        return Mono.error(e);
+                    }
+                    response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                    response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+                    return response.setComplete();
+                });
+    }
+
+    // reactor-pool only ships shaded inside reactor-netty (reactor.netty.internal.shaded...), so its exceptions are
+    // not referenced by type: PoolAcquireTimeoutException is a java.util.concurrent.TimeoutException (the gateway's
+    // response timeout uses its own TimeoutException and is a 504), and the pending limit has no public supertype,
+    // so it goes by its class name, which stays the same if the shaded package moves.
+    private static String rejectionReason(Throwable e) {
+        if (e instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (e.getClass().getSimpleName().equals("PoolAcquirePendingLimitException")) {
+            return "pending-limit";
+        }
+        return null;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
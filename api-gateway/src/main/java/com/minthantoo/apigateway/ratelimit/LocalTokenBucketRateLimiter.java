@@ -0,0 +1,223 @@
+package com.minthantoo.apigateway.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.constraints.Min;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token bucket per route + key kept in the gateway's memory, no Redis round trip and Lua script per request.
+// Same route args and response headers as the Redis limiter, only under local-rate-limiter.* instead:
+//   rate-limiter: "#{@localTokenBucketRateLimiter}"
+//   local-rate-limiter.replenishRate / burstCapacity / requestedTokens
+// A bucket is a single AtomicLong (GCRA, the "theoretical arrival time" of the next token), a request is one CAS,
+// and the map is a ConcurrentHashMap so different keys don't contend.
+// A full bucket (nothing consumed for burstCapacity / replenishRate seconds) is the same as no bucket, so idle ones
+// are dropped by a sweep without changing any decision. At most gateway.rate-limit.local.max-keys buckets are kept,
+// when that's reached a new key sweeps right away (at most once a second) and if nothing was idle it is let through
+// without a bucket until there is room -> a flood of keys can't lock out new users, keys that have a bucket stay limited.
+// The limits are per gateway instance. RateLimiterRedisSync (gateway.rate-limit.redis-sync.enabled) makes them
+// roughly global by charging every bucket with what the other instances let through.
+@Component
+@Primary
+public class LocalTokenBucketRateLimiter extends AbstractRateLimiter<LocalTokenBucketRateLimiter.Config> {
+    public static final String CONFIGURATION_PROPERTY_NAME = "local-rate-limiter";
+    private static final long EVICTION_SPACING_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final int maxKeys;
+    // nanoTime of the last sweep started because the map was full
+    private final AtomicLong lastEviction;
+    // set by RateLimiterRedisSync, a bucket with unsynced tokens isn't dropped before they were reported
+    private volatile boolean synced;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "local-rate-limiter-sweep");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LocalTokenBucketRateLimiter(ConfigurationService configurationService,
+                                       @Value("${gateway.rate-limit.local.max-keys:100000}") int maxKeys,
+                                       @Value("${gateway.rate-limit.local.sweep-interval:30s}") Duration sweepInterval) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.maxKeys = maxKeys;
+        this.lastEviction = new AtomicLong(System.nanoTime() - EVICTION_SPACING_NANOS);
+        long sweepMillis = sweepInterval.toMillis();
+        sweeper.scheduleWithFixedDelay(this::evictIdle, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        return Mono.just(tryAcquire(routeId, id, System.nanoTime()));
+    }
+
+    // the actual check, synchronous, isAllowed only wraps it
+    Response tryAcquire(String routeId, String id, long now) {
+        Config config = loadConfiguration(routeId);
+        long interval = config.emissionIntervalNanos();
+        long burst = interval * config.getBurstCapacity();
+
+        Bucket bucket = bucket(routeId, id, now);
+        if (bucket == null) {
+            return new Response(true, headers(config, Math.max(config.getBurstCapacity() - config.getRequestedTokens(), 0)));
+        }
+        long remaining = bucket.tryAcquire(now, interval, burst, config.getRequestedTokens());
+        return new Response(remaining >= 0, headers(config, Math.max(remaining, 0)));
+    }
+
+    // called by RateLimiterRedisSync once, from then on buckets are only dropped after their tokens were reported
+    void enableSync() {
+        synced = true;
+    }
+
+    // for RateLimiterRedisSync
+    Map<String, Bucket> buckets() {
+        return buckets;
+    }
+
+    Config loadConfiguration(String routeId) {
+        Config routeConfig = getConfig().get(routeId);
+        if (routeConfig == null) {
+            routeConfig = getConfig().get(RouteDefinitionRouteLocator.DEFAULT_FILTERS);
+        }
+        if (routeConfig == null) {
+            throw new IllegalArgumentException("No Configuration found for route " + routeId + " or defaultFilters");
+        }
+        return routeConfig;
+    }
+
+    // null when the map is full and nothing could be dropped -> the request is let through
+    private Bucket bucket(String routeId, String id, long now) {
+        String key = routeId + ":" + id;
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxKeys) {
+            long last = lastEviction.get();
+            // one thread sweeps, the others don't wait for it
+            if (now - last >= EVICTION_SPACING_NANOS && lastEviction.compareAndSet(last, now)) {
+                evictIdle(now);
+            }
+            if (buckets.size() >= maxKeys) {
+                return null;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new Bucket(routeId, now));
+    }
+
+    private void evictIdle() {
+        evictIdle(System.nanoTime());
+    }
+
+    private void evictIdle(long now) {
+        buckets.values().removeIf(bucket -> bucket.isIdle(now, synced));
+    }
+
+    private static Map<String, String> headers(Config config, long remaining) {
+        return Map.of(
+                RedisRateLimiter.REMAINING_HEADER, String.valueOf(remaining),
+                RedisRateLimiter.REPLENISH_RATE_HEADER, String.valueOf(config.getReplenishRate()),
+                RedisRateLimiter.BURST_CAPACITY_HEADER, String.valueOf(config.getBurstCapacity()),
+                RedisRateLimiter.REQUESTED_TOKENS_HEADER, String.valueOf(config.getRequestedTokens()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    static final class Bucket {
+        final String routeId;
+        // when the bucket is full again, nanoTime based. Each granted token pushes it one emission interval further
+        private final AtomicLong fullAt;
+        // tokens granted since the last Redis sync
+        final AtomicLong unsynced = new AtomicLong();
+        // global count at the last Redis sync, only touched by the sync
+        long lastSyncedTotal = -1;
+
+        Bucket(String routeId, long now) {
+            this.routeId = routeId;
+            this.fullAt = new AtomicLong(now);
+        }
+
+        // tokens left after taking `tokens`, -1 when there aren't enough (nothing is taken then)
+        long tryAcquire(long now, long interval, long burst, int tokens) {
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + interval * tokens;
+                if (next - now > burst) {
+                    return -1;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    unsynced.addAndGet(tokens);
+                    return (burst - (next - now)) / interval;
+                }
+            }
+        }
+
+        // tokens taken somewhere else (other gateway instances), at most down to an empty bucket
+        void charge(long now, long interval, long burst, long tokens) {
+            fullAt.accumulateAndGet(tokens, (current, n) -> Math.min(Math.max(current, now) + interval * n, now + burst));
+        }
+
+        boolean isIdle(long now, boolean synced) {
+            return fullAt.get() - now <= 0 && (!synced || unsynced.get() == 0);
+        }
+    }
+
+    public static class Config {
+        @Min(1)
+        private int replenishRate;
+
+        @Min(1)
+        private int burstCapacity = 1;
+
+        @Min(1)
+        private int requestedTokens = 1;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public Config setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+            return this;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public Config setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+            return this;
+        }
+
+        public int getRequestedTokens() {
+            return requestedTokens;
+        }
+
+        public Config setRequestedTokens(int requestedTokens) {
+            this.requestedTokens = requestedTokens;
+            return this;
+        }
+
+        long emissionIntervalNanos() {
+            return TimeUnit.SECONDS.toNanos(1) / replenishRate;
+        }
+    }
+}
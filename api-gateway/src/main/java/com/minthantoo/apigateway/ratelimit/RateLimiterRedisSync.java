@@ -0,0 +1,106 @@
+package com.minthantoo.apigateway.ratelimit;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Approximate global limits for LocalTokenBucketRateLimiter with several gateway instances.
+// Every interval each instance adds what it let through per key to a shared counter (INCRBY) and gets the total back,
+// the part of the increase that came from the other instances is charged to the local bucket.
+// Requests still never wait for Redis, the other instances' traffic is only seen up to one interval late, and if
+// Redis is down the limits are just per instance.
+@Component
+@ConditionalOnProperty(name = "gateway.rate-limit.redis-sync.enabled", havingValue = "true")
+public class RateLimiterRedisSync {
+    private static final Logger log = LoggerFactory.getLogger(RateLimiterRedisSync.class);
+    private static final String KEY_PREFIX = "gateway:rate-limit:";
+
+    private final LocalTokenBucketRateLimiter rateLimiter;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    // counters of keys nobody used for that long disappear
+    private final Duration keyTtl;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rate-limiter-redis-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RateLimiterRedisSync(LocalTokenBucketRateLimiter rateLimiter,
+                                ReactiveStringRedisTemplate redisTemplate,
+                                @Value("${gateway.rate-limit.redis-sync.interval:1s}") Duration interval,
+                                @Value("${gateway.rate-limit.redis-sync.key-ttl:5m}") Duration keyTtl) {
+        this.rateLimiter = rateLimiter;
+        this.redisTemplate = redisTemplate;
+        this.keyTtl = keyTtl;
+        rateLimiter.enableSync();
+        long intervalMillis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::sync, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void sync() {
+        // the previous round is still talking to Redis, skip this one
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        AtomicInteger failed = new AtomicInteger();
+        Flux.fromIterable(rateLimiter.buckets().entrySet())
+                .flatMap(entry -> sync(entry).onErrorResume(e -> {
+                    failed.incrementAndGet();
+                    log.debug("Rate limiter sync of {} failed: {}", entry.getKey(), e.getMessage());
+                    return Mono.empty();
+                }), 64)
+                .doFinally(signal -> {
+                    running.set(false);
+                    if (failed.get() > 0) {
+                        log.warn("Rate limiter sync with Redis failed for {} keys, limits are per instance until it's back", failed.get());
+                    }
+                })
+                .subscribe();
+    }
+
+    private Mono<Void> sync(Map.Entry<String, LocalTokenBucketRateLimiter.Bucket> entry) {
+        LocalTokenBucketRateLimiter.Bucket bucket = entry.getValue();
+        long granted = bucket.unsynced.getAndSet(0);
+        String key = KEY_PREFIX + entry.getKey();
+
+        return redisTemplate.opsForValue().increment(key, granted)
+                .onErrorResume(e -> {
+                    bucket.unsynced.addAndGet(granted); // not counted in Redis, reported next time
+                    return Mono.error(e);
+                })
+                // the count is in, a failed EXPIRE is set again by the next sync
+                .flatMap(total -> redisTemplate.expire(key, keyTtl).onErrorReturn(false).thenReturn(total))
+                .doOnNext(total -> {
+                    // first sync of this bucket, or the counter expired in between -> nothing to compare with
+                    long others = bucket.lastSyncedTotal < 0 || total < bucket.lastSyncedTotal
+                            ? 0 : total - bucket.lastSyncedTotal - granted;
+                    bucket.lastSyncedTotal = total;
+                    if (others > 0) {
+                        LocalTokenBucketRateLimiter.Config config = rateLimiter.loadConfiguration(bucket.routeId);
+                        long interval = config.emissionIntervalNanos();
+                        bucket.charge(System.nanoTime(), interval, interval * config.getBurstCapacity(), others);
+                    }
+                })
+                .then();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,124 @@
+package com.minthantoo.apigateway.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Verifies auth-service tokens inside the gateway, with the same secret (jwt.secret / JWT_SECRET) as auth-service JwtUtil,
+// so a patient request doesn't need a second HTTP hop to /validate.
+// Verified tokens are remembered until they expire -> a client sending the same token again costs a sha-256 and a
+// cache lookup instead of HMAC + JSON parsing. The key is the sha-256 of the whole token (like auth-service JwtUtil),
+// not only the signature part, so a cached signature can't be reused with a different payload.
+// Without a secret (or auth.jwt.local-verification.enabled=false) the gateway keeps calling auth-service /validate.
+@Component
+public class JwtVerifier {
+    private static final Logger log = LoggerFactory.getLogger(JwtVerifier.class);
+
+    private final JwtParser parser;
+    private final int maxCachedTokens;
+    // bounded by auth.jwt.cache.max-size (Caffeine evicts the least useful entries), each entry expires with its token
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    public JwtVerifier(@Value("${jwt.secret:}") String secret,
+                       @Value("${auth.jwt.local-verification.enabled:true}") boolean enabled,
+                       @Value("${auth.jwt.cache.max-size:10000}") int maxCachedTokens) {
+        if (enabled && !secret.isBlank()) {
+            byte[] keyBytes = Base64.getDecoder().decode(secret.getBytes(StandardCharsets.UTF_8));
+            // parser is thread safe, build it once
+            this.parser = Jwts.parser().verifyWith(Keys.hmacShaKeyFor(keyBytes)).build();
+            log.info("JWT verification is local, up to {} verified tokens are cached", maxCachedTokens);
+        } else {
+            this.parser = null;
+            log.info("JWT verification is remote, every request is validated by auth-service");
+        }
+        this.maxCachedTokens = maxCachedTokens;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(Math.max(maxCachedTokens, 0))
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String hash, VerifiedToken verified, long currentTime) {
+                        return untilExpiry(verified);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return untilExpiry(verified);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return parser != null;
+    }
+
+    // null when the token is invalid or expired
+    public VerifiedToken verify(String token) {
+        String hash = sha256(token);
+        // an expired entry is never returned, the parser below rejects the token then
+        VerifiedToken verified = verifiedTokens.getIfPresent(hash);
+        if (verified != null) {
+            return verified;
+        }
+
+        Claims claims;
+        try {
+            claims = parser.parseSignedClaims(token).getPayload();
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected JWT: {}", e.getMessage());
+            return null;
+        }
+
+        // auth-service always sets an expiration, a token without one is accepted but not cached
+        Date expiration = claims.getExpiration();
+        verified = new VerifiedToken(claims.getSubject(), expiration == null ? Long.MAX_VALUE : expiration.getTime());
+        if (expiration != null && maxCachedTokens > 0) {
+            verifiedTokens.put(hash, verified);
+        }
+        return verified;
+    }
+
+    // number of tokens in the cache, for tests
+    int cachedTokens() {
+        verifiedTokens.cleanUp();
+        return (int) verifiedTokens.estimatedSize();
+    }
+
+    private static long untilExpiry(VerifiedToken verified) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(verified.expiresAt() - System.currentTimeMillis(), 0));
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // subject is the user's email
+    public record VerifiedToken(String subject, long expiresAt) {
+    }
+}
@@ -0,0 +1,177 @@
+package com.minthantoo.apigateway.filter;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.minthantoo.apigateway.filter.ConditionalResponseCacheGatewayFilterFactory.CACHE_STATUS_HEADER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// ConditionalResponseCache on a route to a stub backend that answers like patient-service: a weak ETag per version,
+// 304 for a matching If-None-Match, and a write makes a new version. timeToLive is 300ms so revalidation can be seen.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "auth.service.url=http://localhost:1")
+class ConditionalResponseCacheTest {
+    private static final Duration TIME_TO_LIVE = Duration.ofMillis(300);
+
+    private static final AtomicInteger backendGets = new AtomicInteger();
+    private static final AtomicInteger version = new AtomicInteger(1);
+    private static final DisposableServer backend = HttpServer.create().port(0).route(routes -> routes
+                    .get("/cached/patients", (request, response) -> {
+                        backendGets.incrementAndGet();
+                        String etag = etag();
+                        if (etag.equals(request.requestHeaders().get(HttpHeaders.IF_NONE_MATCH))) {
+                            return response.status(304).header(HttpHeaders.ETAG, etag).send();
+                        }
+                        return response.header(HttpHeaders.ETAG, etag)
+                                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                                .sendString(Mono.just(body()));
+                    })
+                    .post("/cached/patients", (request, response) -> {
+                        version.incrementAndGet();
+                        return response.status(201).sendString(Mono.just("{}"));
+                    })
+                    .get("/cached/export", (request, response) -> {
+                        backendGets.incrementAndGet();
+                        return response.sendString(Mono.just("no etag"));
+                    }))
+            .bindNow();
+
+    @TestConfiguration
+    static class Routes {
+        @Bean
+        RouteLocator cachedRoute(RouteLocatorBuilder builder, ConditionalResponseCacheGatewayFilterFactory factory) {
+            return builder.routes()
+                    .route("cached", route -> route.path("/cached/**")
+                            .filters(filters -> filters.filter(factory.apply(
+                                    new ConditionalResponseCacheGatewayFilterFactory.Config().setTimeToLive(TIME_TO_LIVE))))
+                            .uri("http://localhost:" + backend.port()))
+                    .build();
+        }
+    }
+
+    @Autowired
+    private WebTestClient client;
+
+    @AfterAll
+    static void stopBackend() {
+        backend.disposeNow();
+    }
+
+    @Test
+    void firstRequestIsAMissAndTheSecondAHit() {
+        int before = backendGets.get();
+
+        EntityExchangeResult<String> miss = get("?page=miss", null);
+        assertEquals(HttpStatus.OK, miss.getStatus());
+        assertEquals("miss", miss.getResponseHeaders().getFirst(CACHE_STATUS_HEADER));
+        assertEquals(etag(), miss.getResponseHeaders().getETag());
+        assertEquals(body(), miss.getResponseBody());
+
+        EntityExchangeResult<String> hit = get("?page=miss", null);
+        assertEquals(HttpStatus.OK, hit.getStatus());
+        assertEquals("hit", hit.getResponseHeaders().getFirst(CACHE_STATUS_HEADER));
+        assertEquals(body(), hit.getResponseBody());
+        assertEquals(1, backendGets.get() - before);
+
+        // another query is another entry
+        assertEquals("miss", get("?page=other", null).getResponseHeaders().getFirst(CACHE_STATUS_HEADER));
+    }
+
+    @Test
+    void clientWithTheCurrentETagGetsA304FromTheGateway() {
+        get("?page=304", null);
+        int before = backendGets.get();
+
+        EntityExchangeResult<String> notModified = get("?page=304", etag());
+
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatus());
+        assertEquals("hit", notModified.getResponseHeaders().getFirst(CACHE_STATUS_HEADER));
+        assertEquals(etag(), notModified.getResponseHeaders().getETag());
+        assertNull(notModified.getResponseBody());
+        assertEquals(before, backendGets.get());
+    }
+
+    @Test
+    void staleEntryIsRevalidatedWithTheBackend() throws InterruptedException {
+        get("?page=revalidate", null);
+        Thread.sleep(TIME_TO_LIVE.toMillis() + 100);
+        int before = backendGets.get();
+
+        // the backend answers our If-None-Match with an empty 304, the client still gets the whole body
+        EntityExchangeResult<String> revalidated = get("?page=revalidate", null);
+        assertEquals(HttpStatus.OK, revalidated.getStatus());
+        assertEquals("revalidated", revalidated.getResponseHeaders().getFirst(CACHE_STATUS_HEADER));
+        assertEquals(body(), revalidated.getResponseBody());
+        assertEquals(1, backendGets.get() - before);
+
+        // fresh again
+        assertEquals("hit", get("?page=revalidate", null).getResponseHeaders().getFirst(CACHE_STATUS_HEADER));
+
+        // a client that has the version gets a 304 after the revalidation too
+        Thread.sleep(TIME_TO_LIVE.toMillis() + 100);
+        EntityExchangeResult<String> notModified = get("?page=revalidate", etag());
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatus());
+        assertEquals("revalidated", notModified.getResponseHeaders().getFirst(CACHE_STATUS_HEADER));
+    }
+
+    @Test
+    void successfulWriteInvalidatesTheRoute() {
+        get("?page=write", null);
+        String oldETag = etag();
+
+        client.post().uri("/cached/patients").exchange().expectStatus().isCreated();
+
+        // the old version is gone, a client with the old ETag gets the new body
+        EntityExchangeResult<String> afterWrite = get("?page=write", oldETag);
+        assertEquals(HttpStatus.OK, afterWrite.getStatus());
+        assertEquals("miss", afterWrite.getResponseHeaders().getFirst(CACHE_STATUS_HEADER));
+        assertEquals(etag(), afterWrite.getResponseHeaders().getETag());
+        assertEquals(body(), afterWrite.getResponseBody());
+    }
+
+    @Test
+    void responsesWithoutETagArePassedThrough() {
+        int before = backendGets.get();
+
+        for (int i = 0; i < 2; i++) {
+            client.get().uri("/cached/export").exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().doesNotExist(CACHE_STATUS_HEADER)
+                    .expectBody(String.class).isEqualTo("no etag");
+        }
+        assertEquals(2, backendGets.get() - before);
+    }
+
+    private EntityExchangeResult<String> get(String query, String ifNoneMatch) {
+        WebTestClient.RequestHeadersSpec<?> request = client.get().uri("/cached/patients" + query);
+        if (ifNoneMatch != null) {
+            request = request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return request.exchange().expectBody(String.class).returnResult();
+    }
+
+    private static String etag() {
+        return "W/\"patients-" + version.get() + "\"";
+    }
+
+    private static String body() {
+        return "{\"version\":" + version.get() + "}";
+    }
+}
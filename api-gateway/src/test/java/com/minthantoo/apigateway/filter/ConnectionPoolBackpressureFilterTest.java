@@ -0,0 +1,80 @@
+package com.minthantoo.apigateway.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A route whose backend pool has one connection and room for one waiting request, in front of a backend that takes
+// 500ms per request. Three requests at once -> one is sent, one waits, and the third is turned away with a 503.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "auth.service.url=http://localhost:1")
+class ConnectionPoolBackpressureFilterTest {
+    private static final String ROUTE = "spring.cloud.gateway.server.webflux.routes[0].";
+
+    private static final DisposableServer backend = HttpServer.create().port(0).route(routes -> routes
+                    .get("/slow", (request, response) -> response.sendString(Mono.just("done").delayElement(Duration.ofMillis(500)))))
+            .bindNow();
+
+    @DynamicPropertySource
+    static void slowRoute(DynamicPropertyRegistry registry) {
+        registry.add(ROUTE + "id", () -> "slow-route");
+        registry.add(ROUTE + "uri", () -> "http://localhost:" + backend.port());
+        registry.add(ROUTE + "predicates[0]", () -> "Path=/slow-service/**");
+        registry.add(ROUTE + "filters[0]", () -> "StripPrefix=1");
+        registry.add(ROUTE + "metadata.connection-pool.max-connections", () -> "1");
+        registry.add(ROUTE + "metadata.connection-pool.pending-acquire-max-count", () -> "1");
+        registry.add(ROUTE + "metadata.connection-pool.pending-acquire-timeout", () -> "3s");
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterAll
+    static void stopBackend() {
+        backend.disposeNow();
+    }
+
+    @Test
+    void requestOverThePendingLimitGetsA503WithRetryAfter() {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/slow-service/slow")).build();
+
+        List<CompletableFuture<HttpResponse<String>>> responses = IntStream.range(0, 3)
+                .mapToObj(i -> client.sendAsync(request, HttpResponse.BodyHandlers.ofString()))
+                .toList();
+        List<HttpResponse<String>> completed = responses.stream().map(CompletableFuture::join).toList();
+
+        List<HttpResponse<String>> rejected = completed.stream().filter(response -> response.statusCode() == 503).toList();
+        assertEquals(1, rejected.size(), () -> "statuses " + completed.stream().map(HttpResponse::statusCode).toList());
+        assertEquals("1", rejected.get(0).headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null));
+        // the other two were served, one after the other on the single connection
+        assertTrue(completed.stream().filter(response -> response.statusCode() == 200).allMatch(response -> response.body().equals("done")));
+        assertEquals(2, completed.stream().filter(response -> response.statusCode() == 200).count());
+
+        assertEquals(1.0, meterRegistry.counter("gateway.connection.pool.rejected",
+                "route", "slow-route", "reason", "pending-limit").count());
+    }
+}
@@ -0,0 +1,108 @@
+package com.minthantoo.apigateway.ratelimit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Token buckets driven by a fake clock (tryAcquire takes the time), 5 requests per second with a burst of 5.
+class LocalTokenBucketRateLimiterTest {
+    private static final String ROUTE = "patient-service-route";
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<LocalTokenBucketRateLimiter> limiters = new ArrayList<>();
+    private final long start = System.nanoTime();
+
+    @AfterEach
+    void tearDown() {
+        limiters.forEach(LocalTokenBucketRateLimiter::shutdown);
+    }
+
+    @Test
+    void burstIsAllowedThenDenied() {
+        LocalTokenBucketRateLimiter limiter = limiter(100);
+
+        for (int remaining = 4; remaining >= 0; remaining--) {
+            RateLimiter.Response response = limiter.tryAcquire(ROUTE, "alice", start);
+            assertTrue(response.isAllowed());
+            assertEquals(String.valueOf(remaining), response.getHeaders().get(RedisRateLimiter.REMAINING_HEADER));
+        }
+        RateLimiter.Response denied = limiter.tryAcquire(ROUTE, "alice", start);
+        assertFalse(denied.isAllowed());
+        assertEquals("0", denied.getHeaders().get(RedisRateLimiter.REMAINING_HEADER));
+    }
+
+    @Test
+    void tokensRefillAtTheReplenishRate() {
+        LocalTokenBucketRateLimiter limiter = limiter(100);
+        drain(limiter, "alice", start);
+
+        // one token every 200ms
+        assertFalse(limiter.tryAcquire(ROUTE, "alice", start + SECOND / 5 - 1).isAllowed());
+        assertTrue(limiter.tryAcquire(ROUTE, "alice", start + SECOND / 5).isAllowed());
+        assertFalse(limiter.tryAcquire(ROUTE, "alice", start + SECOND / 5).isAllowed());
+
+        // a long pause only fills the bucket up to the burst
+        assertEquals(5, drain(limiter, "alice", start + 60 * SECOND));
+    }
+
+    @Test
+    void subjectsAndRoutesHaveTheirOwnBuckets() {
+        LocalTokenBucketRateLimiter limiter = limiter(100);
+        limiter.getConfig().put("other-route", new LocalTokenBucketRateLimiter.Config().setReplenishRate(5).setBurstCapacity(5));
+        drain(limiter, "alice", start);
+
+        assertFalse(limiter.tryAcquire(ROUTE, "alice", start).isAllowed());
+        assertEquals(5, drain(limiter, "bob", start));
+        assertTrue(limiter.tryAcquire("other-route", "alice", start).isAllowed());
+    }
+
+    @Test
+    void newUsersAreNotLockedOutWhenTheMapIsFull() {
+        LocalTokenBucketRateLimiter limiter = limiter(2);
+        drain(limiter, "alice", start);
+        drain(limiter, "bob", start);
+
+        // full and nobody is idle -> new keys get through untracked, the known ones stay limited
+        for (int i = 0; i < 20; i++) {
+            assertTrue(limiter.tryAcquire(ROUTE, "user" + i, start).isAllowed());
+        }
+        assertFalse(limiter.tryAcquire(ROUTE, "alice", start).isAllowed());
+        assertEquals(2, limiter.buckets().size());
+
+        // once alice and bob are idle (full again) the next new key makes room for itself and is limited
+        long later = start + 10 * SECOND;
+        assertEquals(5, drain(limiter, "carol", later));
+        assertTrue(limiter.buckets().containsKey(ROUTE + ":carol"));
+        assertEquals(1, limiter.buckets().size());
+    }
+
+    private LocalTokenBucketRateLimiter limiter(int maxKeys) {
+        ConfigurationService configurationService = new ConfigurationService(new DefaultListableBeanFactory(), () -> null, () -> null);
+        // the background sweep never runs during a test
+        LocalTokenBucketRateLimiter limiter = new LocalTokenBucketRateLimiter(configurationService, maxKeys, Duration.ofHours(1));
+        limiter.getConfig().put(ROUTE, new LocalTokenBucketRateLimiter.Config().setReplenishRate(5).setBurstCapacity(5));
+        limiters.add(limiter);
+        return limiter;
+    }
+
+    // takes tokens until denied, returns how many were allowed
+    private static int drain(LocalTokenBucketRateLimiter limiter, String id, long now) {
+        int allowed = 0;
+        while (limiter.tryAcquire(ROUTE, id, now).isAllowed()) {
+            allowed++;
+        }
+        return allowed;
+    }
+}
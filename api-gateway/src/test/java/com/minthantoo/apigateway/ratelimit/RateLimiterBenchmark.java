@@ -0,0 +1,109 @@
+package com.minthantoo.apigateway.ratelimit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.filter.ratelimit.RedisRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Time the rate limiter adds to one request, isAllowed(...) until the decision is there.
+// local -> LocalTokenBucketRateLimiter, redis -> Spring Cloud Gateway's RedisRateLimiter (Lua script per call),
+// needs a Redis at REDIS_HOST:REDIS_PORT (default localhost:6379), e.g. docker run -p 6379:6379 redis.
+// keys -> 1 is one user hammering, 100000 are many users (one bucket each, most requests hit a different key).
+// The rate is high enough that everything is allowed, only the cost of the check is measured.
+// Only local without Redis: -p mode=local
+// Lives in the limiter's package to use the synchronous tryAcquire next to isAllowed.
+// Run main() from the IDE, or: mvn test-compile, then run this class with the test classpath.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RateLimiterBenchmark {
+    private static final String ROUTE = "patient-service-route";
+
+    @Param({"local", "redis"})
+    public String mode;
+
+    @Param({"1", "100000"})
+    public int keys;
+
+    private RateLimiter<?> rateLimiter;
+    private LettuceConnectionFactory connectionFactory;
+    private String[] ids;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setUp() {
+        ConfigurationService configurationService = new ConfigurationService(new DefaultListableBeanFactory(), () -> null, () -> null);
+        if (mode.equals("local")) {
+            LocalTokenBucketRateLimiter local = new LocalTokenBucketRateLimiter(configurationService, 1_000_000, Duration.ofSeconds(30));
+            local.getConfig().put(ROUTE, new LocalTokenBucketRateLimiter.Config()
+                    .setReplenishRate(1_000_000_000).setBurstCapacity(1_000_000_000));
+            rateLimiter = local;
+        } else {
+            connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+                    System.getenv().getOrDefault("REDIS_HOST", "localhost"),
+                    Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"))));
+            connectionFactory.afterPropertiesSet();
+            // same script as the gateway's own RedisRateLimiter bean
+            DefaultRedisScript script = new DefaultRedisScript<>();
+            script.setScriptSource(new ResourceScriptSource(new ClassPathResource("META-INF/scripts/request_rate_limiter.lua")));
+            script.setResultType(List.class);
+            RedisRateLimiter redis = new RedisRateLimiter(new ReactiveStringRedisTemplate(connectionFactory),
+                    (RedisScript<List<Long>>) script, configurationService);
+            redis.getConfig().put(ROUTE, new RedisRateLimiter.Config()
+                    .setReplenishRate(1_000_000_000).setBurstCapacity(1_000_000_000));
+            rateLimiter = redis;
+        }
+
+        ids = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            ids[i] = "user:user" + i + "@test.com";
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (rateLimiter instanceof LocalTokenBucketRateLimiter local) {
+            local.shutdown();
+        }
+    }
+
+    @Benchmark
+    public boolean isAllowed(Cursor cursor) {
+        String id = ids[cursor.next];
+        cursor.next = (cursor.next + 1) % ids.length;
+        return rateLimiter.isAllowed(ROUTE, id).block().isAllowed();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,125 @@
+package com.minthantoo.apigateway.util;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Local JWT verification with the verified-token cache. Tokens are signed like auth-service JwtUtil does it.
+class JwtVerifierTest {
+    private static final byte[] KEY_BYTES = "a-test-secret-that-is-long-enough-for-hs256!".getBytes(StandardCharsets.UTF_8);
+    private static final String SECRET = Base64.getEncoder().encodeToString(KEY_BYTES);
+    private static final SecretKey KEY = Keys.hmacShaKeyFor(KEY_BYTES);
+    private static final SecretKey OTHER_KEY = Keys.hmacShaKeyFor("another-secret-that-is-long-enough-for-hs256".getBytes(StandardCharsets.UTF_8));
+
+    private final JwtVerifier verifier = new JwtVerifier(SECRET, true, 100);
+
+    @Test
+    void validTokenIsVerifiedAndCached() {
+        long expiresAt = (System.currentTimeMillis() / 1000 + 3600) * 1000;
+        String token = token("john.doe@example.com", new Date(expiresAt), KEY);
+
+        JwtVerifier.VerifiedToken verified = verifier.verify(token);
+
+        assertNotNull(verified);
+        assertEquals("john.doe@example.com", verified.subject());
+        assertEquals(expiresAt, verified.expiresAt());
+        assertEquals(1, verifier.cachedTokens());
+        assertEquals(verified, verifier.verify(token));
+    }
+
+    @Test
+    void tokenSignedWithAnotherKeyIsRejected() {
+        assertNull(verifier.verify(token("john.doe@example.com", inOneHour(), OTHER_KEY)));
+        assertEquals(0, verifier.cachedTokens());
+    }
+
+    @Test
+    void forgedTokenIsNeverServedFromTheCache() {
+        String token = token("john.doe@example.com", inOneHour(), KEY);
+        assertNotNull(verifier.verify(token));
+
+        // the cached token's signature with someone else's payload
+        String[] parts = token.split("\\.");
+        String otherPayload = token("admin@example.com", inOneHour(), KEY).split("\\.")[1];
+        assertNull(verifier.verify(parts[0] + "." + otherPayload + "." + parts[2]));
+
+        // the cached token's payload with a made up signature
+        String forgedSignature = Base64.getUrlEncoder().withoutPadding().encodeToString(new byte[32]);
+        assertNull(verifier.verify(parts[0] + "." + parts[1] + "." + forgedSignature));
+
+        // the same claims signed with another key
+        assertNull(verifier.verify(token("john.doe@example.com", inOneHour(), OTHER_KEY)));
+
+        assertEquals(1, verifier.cachedTokens());
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        assertNull(verifier.verify(token("john.doe@example.com", new Date(System.currentTimeMillis() - 60_000), KEY)));
+        assertEquals(0, verifier.cachedTokens());
+    }
+
+    @Test
+    void cachedTokenIsRejectedOnceItExpired() throws InterruptedException {
+        // exp has second precision, 2s from now expires somewhere between 1 and 2 seconds from now
+        String token = token("john.doe@example.com", new Date(System.currentTimeMillis() + 2000), KEY);
+        assertNotNull(verifier.verify(token));
+        assertEquals(1, verifier.cachedTokens());
+
+        Thread.sleep(2100);
+
+        assertNull(verifier.verify(token));
+        assertEquals(0, verifier.cachedTokens());
+    }
+
+    @Test
+    void cacheNeverGrowsPastItsBound() {
+        for (int i = 0; i < 500; i++) {
+            assertNotNull(verifier.verify(token("user" + i + "@example.com", inOneHour(), KEY)));
+            assertTrue(verifier.cachedTokens() <= 100);
+        }
+        assertEquals(100, verifier.cachedTokens());
+    }
+
+    @Test
+    void zeroCacheSizeVerifiesEveryTime() {
+        JwtVerifier uncached = new JwtVerifier(SECRET, true, 0);
+        String token = token("john.doe@example.com", inOneHour(), KEY);
+
+        assertNotNull(uncached.verify(token));
+        assertNotNull(uncached.verify(token));
+        assertEquals(0, uncached.cachedTokens());
+    }
+
+    @Test
+    void disabledWithoutSecret() {
+        assertFalse(new JwtVerifier("", true, 100).isEnabled());
+        assertFalse(new JwtVerifier(SECRET, false, 100).isEnabled());
+        assertTrue(verifier.isEnabled());
+    }
+
+    private static String token(String subject, Date expiration, SecretKey key) {
+        return Jwts.builder()
+                .subject(subject)
+                .claim("role", "ADMIN")
+                .issuedAt(new Date())
+                .expiration(expiration)
+                .signWith(key)
+                .compact();
+    }
+
+    private static Date inOneHour() {
+        return new Date(System.currentTimeMillis() + 3_600_000);
+    }
+}
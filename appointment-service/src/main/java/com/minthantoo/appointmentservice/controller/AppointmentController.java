@@ -1,29 +1,94 @@
 package com.minthantoo.appointmentservice.controller;
 
+import com.minthantoo.appointmentservice.dto.AppointmentRequestDto;
 import com.minthantoo.appointmentservice.dto.AppointmentResponseDto;
+import com.minthantoo.appointmentservice.dto.CursorPagedAppointmentResponseDto;
+import com.minthantoo.appointmentservice.dto.FreeSlotResponseDto;
 import com.minthantoo.appointmentservice.service.AppointmentService;
+import com.minthantoo.appointmentservice.service.FreeSlotService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/appointments")
 public class AppointmentController {
+    private static final String NDJSON = "application/x-ndjson";
+
     private final AppointmentService appointmentService;
+    private final FreeSlotService freeSlotService;
 
-    public AppointmentController(AppointmentService appointmentService) {
+    public AppointmentController(AppointmentService appointmentService, FreeSlotService freeSlotService) {
         this.appointmentService = appointmentService;
+        this.freeSlotService = freeSlotService;
     }
 
+    // List -> http://localhost:4006/appointments?from=2025-10-20T00:00:00&to=2025-10-20T23:59:59 (400 if the window has too many)
+    // Keyset pagination -> add cursor=&size=100 for the first page, then pass the returned nextCursor as cursor
+    // with the same from/to/patientId (400 otherwise)
+    // patientId=... only returns that patient's appointments
     @GetMapping
-    public List<AppointmentResponseDto> getAppointmentsByDateRange(
+    public ResponseEntity<?> getAppointmentsByDateRange(
             @RequestParam LocalDateTime from,
-            @RequestParam LocalDateTime to
+            @RequestParam LocalDateTime to,
+            @RequestParam(required = false) UUID patientId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size
     ) {
-      return appointmentService.getAppointmentsByDateRange(from, to);
+        // cursor param present (even empty) -> keyset mode
+        if (cursor != null) {
+            CursorPagedAppointmentResponseDto appointments = appointmentService.getAppointmentsByCursor(from, to, patientId, cursor, size);
+            return ResponseEntity.ok().body(appointments);
+        }
+
+        List<AppointmentResponseDto> appointments = appointmentService.getAppointmentsByDateRange(from, to, patientId);
+        return ResponseEntity.ok().body(appointments);
+    }
+
+    // Book an appointment, 409 if the patient already has one overlapping it
+    @PostMapping
+    public ResponseEntity<AppointmentResponseDto> bookAppointment(@Validated @RequestBody AppointmentRequestDto appointmentRequestDto) {
+        AppointmentResponseDto appointmentResponseDto = appointmentService.bookAppointment(appointmentRequestDto);
+
+        return ResponseEntity.ok().body(appointmentResponseDto);
+    }
+
+    // Next free slots -> http://localhost:4006/appointments/free-slots?from=2030-01-07T00:00:00&to=2030-01-14T00:00:00&slotMinutes=30&limit=10
+    // patientId=... -> slots where that patient is free, otherwise slots where nothing is booked
+    @GetMapping("/free-slots")
+    public List<FreeSlotResponseDto> findFreeSlots(
+            @RequestParam LocalDateTime from,
+            @RequestParam LocalDateTime to,
+            @RequestParam(defaultValue = "30") int slotMinutes,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) UUID patientId
+    ) {
+        return freeSlotService.findFreeSlots(from, to, slotMinutes, limit, patientId);
+    }
+
+    // Any window as NDJSON -> http://localhost:4006/appointments/stream?from=2025-01-01T00:00:00&to=2025-12-31T23:59:59
+    // written straight to the response while the rows are read, so the size of the window doesn't matter
+    @GetMapping("/stream")
+    public void streamAppointments(
+            @RequestParam LocalDateTime from,
+            @RequestParam LocalDateTime to,
+            @RequestParam(required = false) UUID patientId,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+
+        appointmentService.streamAppointments(from, to, patientId, response.getOutputStream());
     }
 }
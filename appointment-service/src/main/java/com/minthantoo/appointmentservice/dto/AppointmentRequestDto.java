@@ -1,4 +1,4 @@
-package com.pm.appointmentservice.dto;
+package com.minthantoo.appointmentservice.dto;
 
 import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotBlank;
@@ -0,0 +1,54 @@
+package com.minthantoo.appointmentservice.dto;
+
+import java.util.List;
+
+public class CursorPagedAppointmentResponseDto {
+
+  private List<AppointmentResponseDto> appointments;
+  private int size;
+  private String nextCursor; // null when there is no next page
+  private boolean hasNext;
+
+
+  public CursorPagedAppointmentResponseDto() {}
+
+  public CursorPagedAppointmentResponseDto(List<AppointmentResponseDto> appointments, int size,
+      String nextCursor, boolean hasNext) {
+    this.appointments = appointments;
+    this.size = size;
+    this.nextCursor = nextCursor;
+    this.hasNext = hasNext;
+  }
+
+  public List<AppointmentResponseDto> getAppointments() {
+    return appointments;
+  }
+
+  public void setAppointments(List<AppointmentResponseDto> appointments) {
+    this.appointments = appointments;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public void setSize(int size) {
+    this.size = size;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+
+  public boolean isHasNext() {
+    return hasNext;
+  }
+
+  public void setHasNext(boolean hasNext) {
+    this.hasNext = hasNext;
+  }
+}
@@ -0,0 +1,33 @@
+package com.minthantoo.appointmentservice.dto;
+
+import java.time.LocalDateTime;
+
+public class FreeSlotResponseDto {
+
+  private LocalDateTime startTime;
+  private LocalDateTime endTime;
+
+
+  public FreeSlotResponseDto() {}
+
+  public FreeSlotResponseDto(LocalDateTime startTime, LocalDateTime endTime) {
+    this.startTime = startTime;
+    this.endTime = endTime;
+  }
+
+  public LocalDateTime getStartTime() {
+    return startTime;
+  }
+
+  public void setStartTime(LocalDateTime startTime) {
+    this.startTime = startTime;
+  }
+
+  public LocalDateTime getEndTime() {
+    return endTime;
+  }
+
+  public void setEndTime(LocalDateTime endTime) {
+    this.endTime = endTime;
+  }
+}
@@ -0,0 +1,7 @@
+package com.minthantoo.appointmentservice.exception;
+
+public class AppointmentConflictException extends RuntimeException {
+    public AppointmentConflictException(String message) {
+        super(message);
+    }
+}
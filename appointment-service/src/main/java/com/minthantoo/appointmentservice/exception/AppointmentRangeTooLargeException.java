@@ -0,0 +1,7 @@
+package com.minthantoo.appointmentservice.exception;
+
+public class AppointmentRangeTooLargeException extends RuntimeException {
+    public AppointmentRangeTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.minthantoo.appointmentservice.exception;
+
+public class InvalidAppointmentTimeException extends RuntimeException {
+    public InvalidAppointmentTimeException(String message) {
+        super(message);
+    }
+}
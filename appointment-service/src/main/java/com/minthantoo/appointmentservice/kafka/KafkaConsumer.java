@@ -3,6 +3,7 @@ package com.minthantoo.appointmentservice.kafka;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.minthantoo.appointmentservice.entity.CachedPatient;
 import com.minthantoo.appointmentservice.repository.CachedPatientRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -10,6 +11,9 @@ import org.springframework.stereotype.Service;
 import patient.events.PatientEvent; // comes from generated-sources from maven clean and compile
 
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -24,26 +28,43 @@ public class KafkaConsumer {
 
     // two event topics for creating patient and updating patient
     // used service name as groupId
-    @KafkaListener(topics = {"patient.created", "patient.updated"},groupId = "appointment-service")
-    public void consumeEvent(byte[] event) {
-        try {
-            PatientEvent patientEvent = PatientEvent.parseFrom(event);
+    // Batch listener -> a whole poll (spring.kafka.consumer.max-poll-records) is written with one upsert,
+    // offsets are committed after the method returns (ack-mode=batch). If the upsert throws, the poll is retried.
+    @KafkaListener(topics = {"patient.created", "patient.updated"}, groupId = "appointment-service", batch = "true")
+    public void consumeEvents(List<ConsumerRecord<String, byte[]>> records) {
+        // several events for the same patient in one poll -> only the latest one is written
+        Map<UUID, CachedPatient> latest = new HashMap<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                PatientEvent patientEvent = PatientEvent.parseFrom(record.value());
+                log.debug("Received Patient Event {}", patientEvent);
 
-            log.info("Received Patient Event {}", patientEvent.toString());
+                CachedPatient cachedPatient = new CachedPatient();
+                cachedPatient.setId(UUID.fromString(patientEvent.getPatientId()));
+                cachedPatient.setFullName(patientEvent.getName());
+                cachedPatient.setEmail(patientEvent.getEmail());
+                // event time, not now -> the upsert can tell an old event from a newer one. patient-service sets the
+                // record timestamp to the time of the change (its outbox row), so a retried old event keeps its old time.
+                // Needs the topics' default message.timestamp.type=CreateTime, LogAppendTime would make it the send time again
+                cachedPatient.setUpdatedAt(Instant.ofEpochMilli(record.timestamp()));
 
-            CachedPatient cachedPatient = new CachedPatient();
-            cachedPatient.setId(UUID.fromString(patientEvent.getPatientId()));
-            cachedPatient.setFullName(patientEvent.getName());
-            cachedPatient.setEmail(patientEvent.getEmail());
-            cachedPatient.setUpdatedAt(Instant.now());
+                // same timestamp -> the later record wins (same topic and partition keep their order in the poll)
+                latest.merge(cachedPatient.getId(), cachedPatient,
+                        (current, next) -> next.getUpdatedAt().isBefore(current.getUpdatedAt()) ? current : next);
 
-            cachedPatientRepository.save(cachedPatient);
+            } catch (InvalidProtocolBufferException e) {
+                log.error("Error deserializing Patient Event: {}", e.getMessage());
+            } catch (IllegalArgumentException e) {
+                log.error("Error consuming Patient Event: {}", e.getMessage());
+            }
+        }
 
-        } catch (InvalidProtocolBufferException e) {
-            log.error("Error deserializing Patient Event: {}", e.getMessage());
-        } catch (Exception e) {
-            log.error("Error consuming Patient Event: {}", e.getMessage());
+        if (latest.isEmpty()) {
+            return;
         }
+
+        int written = cachedPatientRepository.upsertAll(latest.values());
+        log.info("Consumed {} patient events, {} patients upserted, {} rows changed", records.size(), latest.size(), written);
     }
 
 }
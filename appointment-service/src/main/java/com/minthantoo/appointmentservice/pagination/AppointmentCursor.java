@@ -0,0 +1,81 @@
+package com.minthantoo.appointmentservice.pagination;
+
+import com.minthantoo.appointmentservice.dto.AppointmentResponseDto;
+import com.minthantoo.appointmentservice.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.UUID;
+
+// Opaque keyset cursor -> remembers start time + id of the last appointment on the page,
+// the next page continues with "WHERE (start_time, id) > (lastStartTime, lastId)" on the (start_time, id) index.
+// It also carries the from/to/patientId of the query it was made for, a cursor only continues that same query.
+// The client just sends it back as is, the format is base64url("v2|id|startTime|from|to|patientId"), patientId may be empty.
+public class AppointmentCursor {
+    private static final String VERSION = "v2";
+    private static final String SEPARATOR = "|";
+
+    private final UUID lastId;
+    private final LocalDateTime lastStartTime;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final UUID patientId;
+
+    private AppointmentCursor(UUID lastId, LocalDateTime lastStartTime, LocalDateTime from, LocalDateTime to, UUID patientId) {
+        this.lastId = lastId;
+        this.lastStartTime = lastStartTime;
+        this.from = from;
+        this.to = to;
+        this.patientId = patientId;
+    }
+
+    // build the cursor that points right after the given appointment, for the query from/to/patientId
+    public static AppointmentCursor after(AppointmentResponseDto appointment, LocalDateTime from, LocalDateTime to, UUID patientId) {
+        return new AppointmentCursor(appointment.getId(), appointment.getStartTime(), from, to, patientId);
+    }
+
+    public static AppointmentCursor decode(String token) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Cursor is not valid base64: " + token);
+        }
+
+        // -1 keeps the trailing empty patientId
+        String[] parts = raw.split("\\" + SEPARATOR, -1);
+        if (parts.length != 6 || !VERSION.equals(parts[0])) {
+            throw new InvalidCursorException("Cursor format is not recognised: " + token);
+        }
+
+        try {
+            return new AppointmentCursor(UUID.fromString(parts[1]), LocalDateTime.parse(parts[2]),
+                    LocalDateTime.parse(parts[3]), LocalDateTime.parse(parts[4]),
+                    parts[5].isEmpty() ? null : UUID.fromString(parts[5]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Cursor contains an invalid time or id: " + token);
+        }
+    }
+
+    public String encode() {
+        String raw = String.join(SEPARATOR, VERSION, lastId.toString(), lastStartTime.toString(),
+                from.toString(), to.toString(), patientId == null ? "" : patientId.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // true when the cursor was made for this query
+    public boolean isFor(LocalDateTime from, LocalDateTime to, UUID patientId) {
+        return this.from.equals(from) && this.to.equals(to) && Objects.equals(this.patientId, patientId);
+    }
+
+    public UUID getLastId() {
+        return lastId;
+    }
+
+    public LocalDateTime getLastStartTime() {
+        return lastStartTime;
+    }
+}
@@ -1,15 +1,120 @@
 package com.minthantoo.appointmentservice.repository;
 
+import com.minthantoo.appointmentservice.dto.AppointmentResponseDto;
 import com.minthantoo.appointmentservice.entity.Appointment;
+import com.minthantoo.appointmentservice.scheduling.TimeInterval;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, UUID> {
-    List<Appointment> findByStartTimeBetween(LocalDateTime from, LocalDateTime to);
+    // appointments with the patient's name in one query (left join -> appointments of patients we haven't cached yet stay in)
+    // selects straight into the DTO, no Appointment/CachedPatient entities are loaded or tracked
+    String SELECT_RESPONSE = """
+            SELECT new com.minthantoo.appointmentservice.dto.AppointmentResponseDto(
+                a.id, a.patientId, COALESCE(p.fullName, 'Unknown'), a.startTime, a.endTime, a.reason, a.version)
+            FROM Appointment a LEFT JOIN CachedPatient p ON p.id = a.patientId
+            """;
+
+    // Keyset pages -> everything after (afterStartTime, afterId) up to "to", one range scan on the (start_time, id) index.
+    // For the first page afterStartTime = from and afterId = the nil UUID (the smallest one).
+    @Query(SELECT_RESPONSE + """
+            WHERE (a.startTime, a.id) > (:afterStartTime, :afterId) AND a.startTime <= :to
+            ORDER BY a.startTime, a.id
+            """)
+    List<AppointmentResponseDto> findPageAfter(@Param("afterStartTime") LocalDateTime afterStartTime,
+                                               @Param("afterId") UUID afterId,
+                                               @Param("to") LocalDateTime to,
+                                               Limit limit);
+
+    // (patient_id, start_time) is unique, so its constraint index serves this one
+    @Query(SELECT_RESPONSE + """
+            WHERE a.patientId = :patientId AND (a.startTime, a.id) > (:afterStartTime, :afterId) AND a.startTime <= :to
+            ORDER BY a.startTime, a.id
+            """)
+    List<AppointmentResponseDto> findPageAfterForPatient(@Param("patientId") UUID patientId,
+                                                         @Param("afterStartTime") LocalDateTime afterStartTime,
+                                                         @Param("afterId") UUID afterId,
+                                                         @Param("to") LocalDateTime to,
+                                                         Limit limit);
+
+    // overlap with [startTime, endTime) -> starts before it ends and ends after it starts
+    // runs on the patient's rows of the (patient_id, start_time) index
+    @Query(SELECT_RESPONSE + """
+            WHERE a.patientId = :patientId AND a.startTime < :endTime AND a.endTime > :startTime
+            ORDER BY a.startTime, a.id
+            """)
+    List<AppointmentResponseDto> findOverlapping(@Param("patientId") UUID patientId,
+                                                 @Param("startTime") LocalDateTime startTime,
+                                                 @Param("endTime") LocalDateTime endTime);
+
+    // For the NDJSON stream, rows come from a database cursor 1000 at a time.
+    // Has to be consumed inside a transaction and closed afterwards.
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query(SELECT_RESPONSE + """
+            WHERE a.startTime BETWEEN :from AND :to
+            ORDER BY a.startTime, a.id
+            """)
+    Stream<AppointmentResponseDto> streamByStartTimeBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query(SELECT_RESPONSE + """
+            WHERE a.patientId = :patientId AND a.startTime BETWEEN :from AND :to
+            ORDER BY a.startTime, a.id
+            """)
+    Stream<AppointmentResponseDto> streamByPatientIdAndStartTimeBetween(@Param("patientId") UUID patientId,
+                                                                        @Param("from") LocalDateTime from,
+                                                                        @Param("to") LocalDateTime to);
+
+    // Booked intervals for the free slot search, sorted by start time, read through a cursor.
+    // "since" (= from minus the longest appointment we expect) lets an appointment that started before the window
+    // still block its first slots, and keeps the range scan on the start_time index short.
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            SELECT new com.minthantoo.appointmentservice.scheduling.TimeInterval(a.startTime, a.endTime)
+            FROM Appointment a
+            WHERE a.startTime >= :since AND a.startTime < :to AND a.endTime > :from
+            ORDER BY a.startTime
+            """)
+    Stream<TimeInterval> streamBookedIntervals(@Param("since") LocalDateTime since,
+                                               @Param("from") LocalDateTime from,
+                                               @Param("to") LocalDateTime to);
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            SELECT new com.minthantoo.appointmentservice.scheduling.TimeInterval(a.startTime, a.endTime)
+            FROM Appointment a
+            WHERE a.patientId = :patientId AND a.startTime >= :since AND a.startTime < :to AND a.endTime > :from
+            ORDER BY a.startTime
+            """)
+    Stream<TimeInterval> streamBookedIntervalsForPatient(@Param("patientId") UUID patientId,
+                                                         @Param("since") LocalDateTime since,
+                                                         @Param("from") LocalDateTime from,
+                                                         @Param("to") LocalDateTime to);
 }
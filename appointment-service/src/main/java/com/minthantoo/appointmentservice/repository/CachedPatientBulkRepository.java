@@ -0,0 +1,12 @@
+package com.minthantoo.appointmentservice.repository;
+
+import com.minthantoo.appointmentservice.entity.CachedPatient;
+
+import java.util.Collection;
+
+// Custom part of CachedPatientRepository (Spring Data picks up CachedPatientBulkRepositoryImpl by name)
+public interface CachedPatientBulkRepository {
+    // insert or update all patients, a row is only overwritten by a newer (or equally new) updatedAt
+    // the same patient must not appear twice, one INSERT ... ON CONFLICT can't touch a row twice
+    int upsertAll(Collection<CachedPatient> patients);
+}
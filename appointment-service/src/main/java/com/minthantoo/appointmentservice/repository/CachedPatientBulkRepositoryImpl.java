@@ -0,0 +1,60 @@
+package com.minthantoo.appointmentservice.repository;
+
+import com.minthantoo.appointmentservice.entity.CachedPatient;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// One multi-row INSERT ... ON CONFLICT DO UPDATE per chunk instead of save() per patient (SELECT + INSERT/UPDATE each).
+// The WHERE on the update keeps an older event (e.g. a late patient.created after a patient.updated) from
+// overwriting newer data, updatedAt is the time of the change in patient-service (the Kafka record timestamp).
+public class CachedPatientBulkRepositoryImpl implements CachedPatientBulkRepository {
+    // 4 parameters per row, PostgreSQL allows at most 32767 bind parameters per statement
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    private static final String INSERT = "INSERT INTO cached_patient (id, full_name, email, updated_at) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?)";
+    private static final String ON_CONFLICT = """
+             ON CONFLICT (id) DO UPDATE
+            SET full_name = EXCLUDED.full_name, email = EXCLUDED.email, updated_at = EXCLUDED.updated_at
+            WHERE cached_patient.updated_at IS NULL OR cached_patient.updated_at <= EXCLUDED.updated_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CachedPatientBulkRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int upsertAll(Collection<CachedPatient> patients) {
+        List<CachedPatient> rows = new ArrayList<>(patients);
+        int written = 0;
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            written += upsertChunk(rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size())));
+        }
+        return written;
+    }
+
+    private int upsertChunk(List<CachedPatient> chunk) {
+        StringBuilder sql = new StringBuilder(INSERT.length() + chunk.size() * (ROW.length() + 2) + ON_CONFLICT.length());
+        sql.append(INSERT);
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(ROW);
+        }
+        sql.append(ON_CONFLICT);
+
+        return jdbcTemplate.update(sql.toString(), statement -> {
+            int index = 1;
+            for (CachedPatient patient : chunk) {
+                statement.setObject(index++, patient.getId());
+                statement.setString(index++, patient.getFullName());
+                statement.setString(index++, patient.getEmail());
+                statement.setTimestamp(index++, Timestamp.from(patient.getUpdatedAt()));
+            }
+        });
+    }
+}
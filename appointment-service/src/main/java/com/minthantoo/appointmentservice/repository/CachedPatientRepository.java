@@ -5,6 +5,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.UUID;
 
-public interface CachedPatientRepository extends JpaRepository<CachedPatient, UUID> {
+public interface CachedPatientRepository extends JpaRepository<CachedPatient, UUID>, CachedPatientBulkRepository {
 
 }
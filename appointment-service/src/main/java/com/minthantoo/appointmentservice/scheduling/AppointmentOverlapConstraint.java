@@ -0,0 +1,73 @@
+package com.minthantoo.appointmentservice.scheduling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+
+// Exclusion constraint that makes PostgreSQL reject overlapping appointments of the same patient.
+// Backed by a GiST index on (patient_id, tsrange(start_time, end_time)) -> an overlap check is an index lookup,
+// not a scan of the patient's day, and two concurrent bookings of the same slot can't both commit
+// (the second one waits for the first and then fails with exclusion_violation).
+// Ranges are [start, end) so back to back appointments (10:00-10:30, 10:30-11:00) don't conflict.
+// Only PostgreSQL has exclusion constraints, elsewhere AppointmentService falls back to checking before the insert.
+@Component
+public class AppointmentOverlapConstraint {
+    private static final Logger log = LoggerFactory.getLogger(AppointmentOverlapConstraint.class);
+
+    public static final String CONSTRAINT_NAME = "appointment_no_overlap";
+
+    // btree_gist -> lets the GiST index use "=" on the uuid column next to "&&" on the range
+    private static final String CREATE_EXTENSION = "CREATE EXTENSION IF NOT EXISTS btree_gist";
+    private static final String CONSTRAINT_EXISTS = "SELECT count(*) FROM pg_constraint WHERE conname = ?";
+    private static final String ADD_CONSTRAINT = "ALTER TABLE appointment ADD CONSTRAINT " + CONSTRAINT_NAME
+            + " EXCLUDE USING gist (patient_id WITH =, tsrange(start_time, end_time) WITH &&)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private volatile boolean available = false;
+
+    public AppointmentOverlapConstraint(JdbcTemplate jdbcTemplate,
+                                        @Value("${appointments.booking.overlap-constraint.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    // runs after data.sql, so the appointment table is there
+    @EventListener(ApplicationReadyEvent.class)
+    public void createConstraint() {
+        if (!enabled || !isPostgres()) {
+            log.info("Appointment overlap constraint disabled, bookings are checked before the insert instead");
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute(CREATE_EXTENSION);
+            Integer existing = jdbcTemplate.queryForObject(CONSTRAINT_EXISTS, Integer.class, CONSTRAINT_NAME);
+            if (existing == null || existing == 0) {
+                jdbcTemplate.execute(ADD_CONSTRAINT);
+            }
+            available = true;
+            log.info("Appointment overlap constraint is ready");
+        } catch (Exception e) {
+            // e.g. no permission to create the extension, or overlapping appointments are already stored
+            log.warn("Could not create the appointment overlap constraint, bookings are checked before the insert instead: {}",
+                    e.getMessage());
+        }
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute(
+                (Connection connection) -> connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(product);
+    }
+}
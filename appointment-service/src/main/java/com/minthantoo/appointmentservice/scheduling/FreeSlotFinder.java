@@ -0,0 +1,88 @@
+package com.minthantoo.appointmentservice.scheduling;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+// Finds free slots of a fixed length between booked intervals, inside working hours.
+// Slots sit on a grid that starts at the opening time (09:00, 09:30, ... for 30 minute slots).
+// Booked intervals have to come sorted by start time, they are read once front to back and
+// the search stops as soon as enough slots are found -> no per-slot queries, and the rest of the rows is never read.
+// Intervals may overlap each other (appointments of different patients), only whether a slot touches one matters.
+public class FreeSlotFinder {
+    private final LocalTime dayStart;
+    private final LocalTime dayEnd;
+    private final Set<DayOfWeek> workingDays;
+
+    public FreeSlotFinder(LocalTime dayStart, LocalTime dayEnd, Set<DayOfWeek> workingDays) {
+        if (!dayEnd.isAfter(dayStart)) {
+            throw new IllegalArgumentException("Working day has to end after it starts: " + dayStart + " - " + dayEnd);
+        }
+        this.dayStart = dayStart;
+        this.dayEnd = dayEnd;
+        this.workingDays = Set.copyOf(workingDays);
+    }
+
+    public List<TimeInterval> findFreeSlots(Iterator<TimeInterval> booked, LocalDateTime from, LocalDateTime to,
+                                            Duration slotLength, int limit) {
+        if (slotLength.isZero() || slotLength.isNegative()
+                || slotLength.compareTo(Duration.between(dayStart, dayEnd)) > 0) {
+            throw new IllegalArgumentException("Slot length has to fit in a working day: " + slotLength);
+        }
+
+        List<TimeInterval> slots = new ArrayList<>(Math.min(limit, 1024));
+        TimeInterval next = booked.hasNext() ? booked.next() : null;
+        LocalDateTime candidate = nextSlotStart(from, to, slotLength);
+
+        while (candidate != null && slots.size() < limit) {
+            LocalDateTime candidateEnd = candidate.plus(slotLength);
+            if (candidateEnd.isAfter(to)) {
+                break;
+            }
+
+            // intervals that are over before the candidate starts can't be in the way of this or any later slot
+            while (next != null && !next.end().isAfter(candidate)) {
+                next = booked.hasNext() ? booked.next() : null;
+            }
+
+            if (next != null && next.start().isBefore(candidateEnd)) {
+                // taken -> first grid point after the interval that is in the way
+                candidate = nextSlotStart(next.end(), to, slotLength);
+                continue;
+            }
+
+            slots.add(new TimeInterval(candidate, candidateEnd));
+            candidate = nextSlotStart(candidateEnd, to, slotLength);
+        }
+        return slots;
+    }
+
+    // earliest grid point at or after "time" where a whole slot fits in working hours, null if there is none before "to"
+    private LocalDateTime nextSlotStart(LocalDateTime time, LocalDateTime to, Duration slotLength) {
+        LocalDate day = time.toLocalDate();
+        while (!day.isAfter(to.toLocalDate())) {
+            if (workingDays.contains(day.getDayOfWeek())) {
+                LocalDateTime open = day.atTime(dayStart);
+                LocalDateTime start = time.isAfter(open) ? alignUp(time, open, slotLength) : open;
+                if (!start.plus(slotLength).isAfter(day.atTime(dayEnd))) {
+                    return start;
+                }
+            }
+            day = day.plusDays(1);
+        }
+        return null;
+    }
+
+    private static LocalDateTime alignUp(LocalDateTime time, LocalDateTime gridStart, Duration slotLength) {
+        long offset = Duration.between(gridStart, time).toNanos();
+        long length = slotLength.toNanos();
+        long slots = (offset + length - 1) / length;
+        return gridStart.plusNanos(slots * length);
+    }
+}
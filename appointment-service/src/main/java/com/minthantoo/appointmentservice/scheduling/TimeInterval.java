@@ -0,0 +1,7 @@
+package com.minthantoo.appointmentservice.scheduling;
+
+import java.time.LocalDateTime;
+
+// [start, end), used for booked appointments and for free slots
+public record TimeInterval(LocalDateTime start, LocalDateTime end) {
+}
@@ -1,47 +1,199 @@
 package com.minthantoo.appointmentservice.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.minthantoo.appointmentservice.dto.AppointmentRequestDto;
 import com.minthantoo.appointmentservice.dto.AppointmentResponseDto;
+import com.minthantoo.appointmentservice.dto.CursorPagedAppointmentResponseDto;
+import com.minthantoo.appointmentservice.entity.Appointment;
 import com.minthantoo.appointmentservice.entity.CachedPatient;
+import com.minthantoo.appointmentservice.exception.AppointmentConflictException;
+import com.minthantoo.appointmentservice.exception.AppointmentRangeTooLargeException;
+import com.minthantoo.appointmentservice.exception.InvalidAppointmentTimeException;
+import com.minthantoo.appointmentservice.exception.InvalidCursorException;
+import com.minthantoo.appointmentservice.pagination.AppointmentCursor;
 import com.minthantoo.appointmentservice.repository.AppointmentRepository;
 import com.minthantoo.appointmentservice.repository.CachedPatientRepository;
+import com.minthantoo.appointmentservice.scheduling.AppointmentOverlapConstraint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 public class AppointmentService {
+    private static final Logger log = LoggerFactory.getLogger(AppointmentService.class);
+
+    // smallest UUID, "after (from, MIN_ID)" includes every appointment starting at from
+    private static final UUID MIN_ID = new UUID(0L, 0L);
 
     private final AppointmentRepository appointmentRepository;
     private final CachedPatientRepository cachedPatientRepository;
+    private final AppointmentOverlapConstraint overlapConstraint;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter ndjsonWriter;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxPageSize;
+    private final int maxListResults;
 
-    public AppointmentService(AppointmentRepository appointmentRepository, CachedPatientRepository cachedPatientRepository) {
+    public AppointmentService(AppointmentRepository appointmentRepository,
+                              CachedPatientRepository cachedPatientRepository,
+                              AppointmentOverlapConstraint overlapConstraint,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${appointments.page.max-size:1000}") int maxPageSize,
+                              @Value("${appointments.list.max-results:0}") int maxListResults) {
         this.appointmentRepository = appointmentRepository;
         this.cachedPatientRepository = cachedPatientRepository;
+        this.overlapConstraint = overlapConstraint;
+        this.objectMapper = objectMapper;
+        // no flush per row (the response buffer decides), no space between root values (we write the newline)
+        this.ndjsonWriter = objectMapper.writerFor(AppointmentResponseDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.maxPageSize = maxPageSize;
+        this.maxListResults = maxListResults;
+    }
+
+    // Booking. The overlap check is the database's job (AppointmentOverlapConstraint): the insert either commits
+    // or fails with an exclusion violation, so of many concurrent requests for the same slot exactly one wins,
+    // and the happy path is a single insert. Only the loser pays for the query that finds what it collided with.
+    public AppointmentResponseDto bookAppointment(AppointmentRequestDto request) {
+        if (!request.getEndTime().isAfter(request.getStartTime())) {
+            throw new InvalidAppointmentTimeException("endTime must be after startTime");
+        }
+
+        if (!overlapConstraint.isAvailable()) {
+            // no constraint to rely on (not PostgreSQL) -> best effort check, concurrent requests can still both pass it
+            List<AppointmentResponseDto> conflicts = appointmentRepository.findOverlapping(
+                    request.getPatientId(), request.getStartTime(), request.getEndTime());
+            if (!conflicts.isEmpty()) {
+                throw conflict(request, conflicts);
+            }
+        }
+
+        Appointment appointment;
+        try {
+            appointment = appointmentRepository.saveAndFlush(new Appointment(
+                    request.getPatientId(), request.getStartTime(), request.getEndTime(), request.getReason()));
+        } catch (DataIntegrityViolationException e) {
+            // exclusion violation (overlap) or the unique (patient_id, start_time) constraint
+            throw conflict(request, appointmentRepository.findOverlapping(
+                    request.getPatientId(), request.getStartTime(), request.getEndTime()));
+        }
+
+        String name = cachedPatientRepository.findById(appointment.getPatientId())
+                .map(CachedPatient::getFullName)
+                .orElse("Unknown");
+
+        log.info("Booked appointment {} for patient {} from {} to {}",
+                appointment.getId(), appointment.getPatientId(), appointment.getStartTime(), appointment.getEndTime());
+        return new AppointmentResponseDto(appointment.getId(), appointment.getPatientId(), name,
+                appointment.getStartTime(), appointment.getEndTime(), appointment.getReason(), appointment.getVersion());
+    }
+
+    private static AppointmentConflictException conflict(AppointmentRequestDto request, List<AppointmentResponseDto> conflicts) {
+        if (conflicts.isEmpty()) {
+            return new AppointmentConflictException("Patient " + request.getPatientId() + " already has an appointment between "
+                    + request.getStartTime() + " and " + request.getEndTime());
+        }
+        AppointmentResponseDto existing = conflicts.get(0);
+        return new AppointmentConflictException("Patient " + request.getPatientId() + " already has appointment " + existing.getId()
+                + " from " + existing.getStartTime() + " to " + existing.getEndTime());
     }
 
-    public List<AppointmentResponseDto> getAppointmentsByDateRange(LocalDateTime from, LocalDateTime to) {
-        return appointmentRepository.findByStartTimeBetween(from, to).stream()
-                .map(appointment -> {
-
-                    String name = cachedPatientRepository
-                            .findById(appointment.getPatientId())
-                            .map(CachedPatient::getFullName)
-                            .orElse("Unknown");
-
-                    AppointmentResponseDto appointmentResponseDto = new AppointmentResponseDto();
-                    appointmentResponseDto.setId(appointment.getId());
-                    appointmentResponseDto.setPatientId(appointment.getPatientId());
-                    appointmentResponseDto.setPatientName(name);
-                    appointmentResponseDto.setStartTime(appointment.getStartTime());
-                    appointmentResponseDto.setEndTime(appointment.getEndTime());
-                    appointmentResponseDto.setReason(appointment.getReason());
-                    appointmentResponseDto.setVersion(appointment.getVersion());
-
-                    return appointmentResponseDto;
-                }).toList();
+    // one query for all appointments and names, it used to be one findById per appointment to get the name (N+1)
+    // Plain list, every appointment of the window like it always was. max-results > 0 opts into a cap (400 past it,
+    // a breaking change for clients that load wide windows), wider windows then use the cursor pages or the NDJSON stream.
+    public List<AppointmentResponseDto> getAppointmentsByDateRange(LocalDateTime from, LocalDateTime to, UUID patientId) {
+        if (maxListResults <= 0) {
+            return findPage(from, MIN_ID, to, patientId, Limit.unlimited());
+        }
+        List<AppointmentResponseDto> appointments = findPage(from, MIN_ID, to, patientId, Limit.of(maxListResults + 1));
+        if (appointments.size() > maxListResults) {
+            throw new AppointmentRangeTooLargeException("More than " + maxListResults + " appointments between " + from + " and " + to
+                    + ", page through them with the cursor parameter or use /appointments/stream");
+        }
+        return appointments;
     }
 
+    // Keyset paging, every page is one index range scan however deep the client is.
+    // One extra row is fetched to know whether there is a next page.
+    public CursorPagedAppointmentResponseDto getAppointmentsByCursor(LocalDateTime from, LocalDateTime to, UUID patientId,
+                                                                     String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
 
+        LocalDateTime afterStartTime = from;
+        UUID afterId = MIN_ID;
+        if (cursor != null && !cursor.isBlank()) {
+            AppointmentCursor decoded = AppointmentCursor.decode(cursor);
+            // a cursor of another window or patient would silently page through the wrong rows
+            if (!decoded.isFor(from, to, patientId)) {
+                throw new InvalidCursorException("Cursor belongs to a different from/to/patientId, start again without a cursor");
+            }
+            afterStartTime = decoded.getLastStartTime();
+            afterId = decoded.getLastId();
+        }
+
+        List<AppointmentResponseDto> rows = findPage(afterStartTime, afterId, to, patientId, Limit.of(pageSize + 1));
+        boolean hasNext = rows.size() > pageSize;
+        List<AppointmentResponseDto> content = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasNext ? AppointmentCursor.after(content.get(content.size() - 1), from, to, patientId).encode() : null;
+
+        return new CursorPagedAppointmentResponseDto(content, content.size(), nextCursor, hasNext);
+    }
+
+    // NDJSON, one appointment per line, written while the rows are read from a database cursor
+    // -> memory stays flat however wide the window is. Returns the number of appointments written.
+    public long streamAppointments(LocalDateTime from, LocalDateTime to, UUID patientId, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        Long written;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            written = readOnlyTransaction.execute(status -> {
+                try (Stream<AppointmentResponseDto> appointments = patientId == null
+                        ? appointmentRepository.streamByStartTimeBetween(from, to)
+                        : appointmentRepository.streamByPatientIdAndStartTimeBetween(patientId, from, to)) {
+                    long count = 0;
+                    Iterator<AppointmentResponseDto> iterator = appointments.iterator();
+                    while (iterator.hasNext()) {
+                        ndjsonWriter.writeValue(generator, iterator.next());
+                        generator.writeRaw('\n');
+                        count++;
+                    }
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // client went away, nothing to do but stop
+                }
+            });
+        }
+
+        long rows = written == null ? 0 : written;
+        log.info("Streamed {} appointments between {} and {} in {}ms", rows, from, to, (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    private List<AppointmentResponseDto> findPage(LocalDateTime afterStartTime, UUID afterId, LocalDateTime to,
+                                                  UUID patientId, Limit limit) {
+        return patientId == null
+                ? appointmentRepository.findPageAfter(afterStartTime, afterId, to, limit)
+                : appointmentRepository.findPageAfterForPatient(patientId, afterStartTime, afterId, to, limit);
+    }
 }
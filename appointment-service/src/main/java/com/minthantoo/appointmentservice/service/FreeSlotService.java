@@ -0,0 +1,90 @@
+package com.minthantoo.appointmentservice.service;
+
+import com.minthantoo.appointmentservice.dto.FreeSlotResponseDto;
+import com.minthantoo.appointmentservice.exception.InvalidAppointmentTimeException;
+import com.minthantoo.appointmentservice.repository.AppointmentRepository;
+import com.minthantoo.appointmentservice.scheduling.FreeSlotFinder;
+import com.minthantoo.appointmentservice.scheduling.TimeInterval;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// "Next N free slots" for the front desk. The booked appointments of the window are streamed in start time order
+// straight into FreeSlotFinder, one query however many slots are asked for.
+// Without patientId a slot is free when nobody has an appointment then, with patientId when that patient has none.
+@Service
+public class FreeSlotService {
+    private final AppointmentRepository appointmentRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final FreeSlotFinder freeSlotFinder;
+    private final Duration lookback;
+    private final Duration maxWindow;
+    private final int maxSlots;
+
+    public FreeSlotService(AppointmentRepository appointmentRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${appointments.slots.day-start:09:00}") String dayStart,
+                           @Value("${appointments.slots.day-end:17:00}") String dayEnd,
+                           @Value("${appointments.slots.working-days:MONDAY,TUESDAY,WEDNESDAY,THURSDAY,FRIDAY}") String workingDays,
+                           @Value("${appointments.slots.lookback:24h}") Duration lookback,
+                           @Value("${appointments.slots.max-window:31d}") Duration maxWindow,
+                           @Value("${appointments.slots.max-results:1000}") int maxSlots) {
+        this.appointmentRepository = appointmentRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.freeSlotFinder = new FreeSlotFinder(LocalTime.parse(dayStart), LocalTime.parse(dayEnd), parseDays(workingDays));
+        this.lookback = lookback;
+        this.maxWindow = maxWindow;
+        this.maxSlots = maxSlots;
+    }
+
+    public List<FreeSlotResponseDto> findFreeSlots(LocalDateTime from, LocalDateTime to, int slotMinutes, int limit, UUID patientId) {
+        if (!to.isAfter(from)) {
+            throw new InvalidAppointmentTimeException("to must be after from");
+        }
+        if (Duration.between(from, to).compareTo(maxWindow) > 0) {
+            throw new InvalidAppointmentTimeException("The window can be at most " + maxWindow.toDays() + " days");
+        }
+        if (slotMinutes <= 0) {
+            throw new InvalidAppointmentTimeException("slotMinutes must be positive");
+        }
+
+        Duration slotLength = Duration.ofMinutes(slotMinutes);
+        int slotLimit = Math.max(1, Math.min(limit, maxSlots));
+        LocalDateTime since = from.minus(lookback);
+
+        List<TimeInterval> slots = readOnlyTransaction.execute(status -> {
+            try (Stream<TimeInterval> booked = patientId == null
+                    ? appointmentRepository.streamBookedIntervals(since, from, to)
+                    : appointmentRepository.streamBookedIntervalsForPatient(patientId, since, from, to)) {
+                return freeSlotFinder.findFreeSlots(booked.iterator(), from, to, slotLength, slotLimit);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidAppointmentTimeException(e.getMessage());
+            }
+        });
+
+        return slots.stream()
+                .map(slot -> new FreeSlotResponseDto(slot.start(), slot.end()))
+                .toList();
+    }
+
+    private static Set<DayOfWeek> parseDays(String days) {
+        return Arrays.stream(days.split(","))
+                .map(String::trim)
+                .map(String::toUpperCase)
+                .map(DayOfWeek::valueOf)
+                .collect(Collectors.toSet());
+    }
+}
@@ -16,6 +16,10 @@ CREATE TABLE IF NOT EXISTS appointment (
                                            version BIGINT DEFAULT 0 NOT NULL
 );
 
+-- Range queries and keyset pages read appointments in (start_time, id) order, this index serves both
+-- (the patientId filter uses the unique (patient_id, start_time) index below)
+CREATE INDEX IF NOT EXISTS idx_appointment_start_time_id ON appointment (start_time, id);
+
 -- Insert patient into cache if not already present
 INSERT INTO cached_patient (id, full_name, email, updated_at)
 SELECT
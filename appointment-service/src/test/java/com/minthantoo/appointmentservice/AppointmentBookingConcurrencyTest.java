@@ -0,0 +1,140 @@
+package com.minthantoo.appointmentservice;
+
+import com.minthantoo.appointmentservice.dto.AppointmentRequestDto;
+import com.minthantoo.appointmentservice.exception.AppointmentConflictException;
+import com.minthantoo.appointmentservice.scheduling.AppointmentOverlapConstraint;
+import com.minthantoo.appointmentservice.service.AppointmentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Many threads try to book the same slot at the same moment, exactly one may win.
+// Runs against a real PostgreSQL because the guarantee comes from its exclusion constraint.
+@SpringBootTest(properties = "spring.kafka.listener.auto-startup=false")
+@Testcontainers(disabledWithoutDocker = true)
+class AppointmentBookingConcurrencyTest {
+    private static final int THREADS = 32;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentOverlapConstraint overlapConstraint;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final LocalDateTime slot = LocalDateTime.now().plusDays(30).truncatedTo(ChronoUnit.HOURS);
+
+    @Test
+    void sameSlotFromManyThreadsBooksExactlyOnce() throws Exception {
+        UUID patientId = UUID.randomUUID();
+
+        int booked = bookConcurrently(i -> request(patientId, slot, slot.plusMinutes(30)));
+
+        assertTrue(overlapConstraint.isAvailable());
+        assertEquals(1, booked);
+        assertEquals(1, appointmentsOf(patientId));
+    }
+
+    // different start times, so the unique (patient_id, start_time) constraint can't help, only the overlap check can
+    @Test
+    void overlappingSlotsFromManyThreadsBookExactlyOnce() throws Exception {
+        UUID patientId = UUID.randomUUID();
+
+        int booked = bookConcurrently(i -> request(patientId, slot.plusMinutes(i % 20), slot.plusMinutes(i % 20 + 30)));
+
+        assertEquals(1, booked);
+        assertEquals(1, appointmentsOf(patientId));
+    }
+
+    @Test
+    void backToBackSlotsAndOtherPatientsDoNotConflict() throws Exception {
+        UUID patientId = UUID.randomUUID();
+
+        // 32 consecutive half hours for one patient + the same slot for 32 other patients
+        int booked = bookConcurrently(i -> i % 2 == 0
+                ? request(patientId, slot.plusMinutes(30L * i), slot.plusMinutes(30L * i + 30))
+                : request(UUID.randomUUID(), slot, slot.plusMinutes(30)));
+
+        assertEquals(THREADS, booked);
+        assertEquals(THREADS / 2, appointmentsOf(patientId));
+    }
+
+    // all threads start together, returns how many bookings succeeded, every failure has to be a conflict
+    private int bookConcurrently(IntFunction<AppointmentRequestDto> requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                AppointmentRequestDto request = requests.apply(i);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        assertNotNull(appointmentService.bookAppointment(request).getId());
+                        return true;
+                    } catch (AppointmentConflictException e) {
+                        return false;
+                    }
+                }));
+            }
+
+            start.countDown();
+            int booked = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    booked++;
+                }
+            }
+            return booked;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int appointmentsOf(UUID patientId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM appointment WHERE patient_id = ?", Integer.class, patientId);
+    }
+
+    private static AppointmentRequestDto request(UUID patientId, LocalDateTime startTime, LocalDateTime endTime) {
+        AppointmentRequestDto request = new AppointmentRequestDto();
+        request.setPatientId(patientId);
+        request.setStartTime(startTime);
+        request.setEndTime(endTime);
+        request.setReason("Concurrency test");
+        return request;
+    }
+}
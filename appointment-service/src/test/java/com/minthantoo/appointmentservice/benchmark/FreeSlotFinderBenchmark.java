@@ -0,0 +1,73 @@
+package com.minthantoo.appointmentservice.benchmark;
+
+import com.minthantoo.appointmentservice.scheduling.FreeSlotFinder;
+import com.minthantoo.appointmentservice.scheduling.TimeInterval;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Free slot search over a week (Mon 00:00 - next Mon 00:00), time per search.
+// appointmentsPerDay -> 20 is one busy practitioner, 2000 is the whole clinic (lots of overlapping intervals)
+// limit -> "next 10 slots" stops early, 1000 walks the whole week
+// This is the in-memory part only, in the service the intervals come from one streamed query.
+// Run main() from the IDE, or: mvn test-compile, then run this class with the test classpath.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FreeSlotFinderBenchmark {
+    private static final LocalDateTime FROM = LocalDate.of(2030, 1, 7).atStartOfDay(); // a Monday
+    private static final LocalDateTime TO = FROM.plusWeeks(1);
+    private static final Duration SLOT = Duration.ofMinutes(30);
+
+    @Param({"20", "2000"})
+    public int appointmentsPerDay;
+
+    @Param({"10", "1000"})
+    public int limit;
+
+    private final FreeSlotFinder finder = new FreeSlotFinder(LocalTime.of(9, 0), LocalTime.of(17, 0),
+            EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY));
+    private List<TimeInterval> booked;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        booked = new ArrayList<>();
+        for (int day = 0; day < 7; day++) {
+            LocalDateTime open = FROM.plusDays(day).withHour(9);
+            for (int i = 0; i < appointmentsPerDay; i++) {
+                // 15 to 60 minutes, starting on a 5 minute boundary within working hours
+                LocalDateTime start = open.plusMinutes(5L * random.nextInt(84));
+                booked.add(new TimeInterval(start, start.plusMinutes(15L + 15L * random.nextInt(4))));
+            }
+        }
+        booked.sort(Comparator.comparing(TimeInterval::start)); // the query returns them ordered by start time
+    }
+
+    @Benchmark
+    public List<TimeInterval> findFreeSlots() {
+        return finder.findFreeSlots(booked.iterator(), FROM, TO, SLOT, limit);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FreeSlotFinderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.minthantoo.appointmentservice.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// FreeSlotFinder against a brute force version: every grid slot of every working day in [from, to],
+// kept when no booked interval touches it. Random schedules with overlapping intervals, intervals starting
+// before "from" (the lookback the service reads), off-grid "from" and empty working weeks.
+class FreeSlotFinderTest {
+    private static final LocalTime DAY_START = LocalTime.of(9, 0);
+    private static final LocalTime DAY_END = LocalTime.of(17, 0);
+    private static final Set<DayOfWeek> WEEKDAYS = EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+    // a Monday
+    private static final LocalDate MONDAY = LocalDate.of(2025, 10, 20);
+
+    @Test
+    void matchesBruteForceOnRandomSchedules() {
+        Random random = new Random(42);
+        int[] slotMinutes = {15, 20, 30, 45, 60, 90, 480};
+
+        for (int run = 0; run < 2000; run++) {
+            Set<DayOfWeek> workingDays = EnumSet.noneOf(DayOfWeek.class);
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (random.nextInt(4) != 0) {
+                    workingDays.add(day);
+                }
+            }
+            Duration slot = Duration.ofMinutes(slotMinutes[random.nextInt(slotMinutes.length)]);
+            LocalDateTime from = MONDAY.atStartOfDay().plusMinutes(random.nextInt(7 * 24 * 60));
+            LocalDateTime to = from.plusMinutes(random.nextInt(5 * 24 * 60));
+            int limit = 1 + random.nextInt(random.nextBoolean() ? 5 : 500);
+
+            // intervals from two days before "from" up to "to", some long enough to cover several slots
+            List<TimeInterval> booked = new ArrayList<>();
+            int count = random.nextInt(40);
+            long windowMinutes = Duration.between(from.minusDays(2), to).toMinutes() + 1;
+            for (int i = 0; i < count; i++) {
+                LocalDateTime start = from.minusDays(2).plusMinutes(random.nextLong(windowMinutes));
+                booked.add(new TimeInterval(start, start.plusMinutes(5 + random.nextInt(random.nextBoolean() ? 60 : 3000))));
+            }
+            booked.sort(Comparator.comparing(TimeInterval::start));
+
+            FreeSlotFinder finder = new FreeSlotFinder(DAY_START, DAY_END, workingDays);
+            assertEquals(bruteForce(booked, from, to, slot, limit, workingDays),
+                    finder.findFreeSlots(booked.iterator(), from, to, slot, limit),
+                    "run " + run + ": from " + from + " to " + to + ", slot " + slot + ", days " + workingDays
+                            + ", limit " + limit + ", booked " + booked);
+        }
+    }
+
+    @Test
+    void intervalStartingBeforeTheWindowStillBlocksIt() {
+        LocalDateTime from = MONDAY.atTime(10, 0);
+        List<TimeInterval> booked = List.of(new TimeInterval(MONDAY.atTime(8, 0), MONDAY.atTime(11, 15)));
+
+        List<TimeInterval> slots = new FreeSlotFinder(DAY_START, DAY_END, WEEKDAYS)
+                .findFreeSlots(booked.iterator(), from, MONDAY.atTime(17, 0), Duration.ofMinutes(30), 1);
+
+        assertEquals(List.of(slot(MONDAY.atTime(11, 30), 30)), slots);
+    }
+
+    @Test
+    void skipsNonWorkingDays() {
+        LocalDate friday = MONDAY.plusDays(4);
+        List<TimeInterval> slots = new FreeSlotFinder(DAY_START, DAY_END, WEEKDAYS)
+                .findFreeSlots(List.<TimeInterval>of().iterator(), friday.atTime(16, 0), friday.plusDays(3).atTime(17, 0),
+                        Duration.ofHours(1), 2);
+
+        assertEquals(List.of(slot(friday.atTime(16, 0), 60), slot(friday.plusDays(3).atTime(9, 0), 60)), slots);
+    }
+
+    @Test
+    void slotThatDoesNotFitBeforeTheEndOfTheDayMovesToTheNextDay() {
+        // 45 minute grid -> 16:30 is the last grid point, but 16:30 - 17:15 runs past closing
+        List<TimeInterval> slots = new FreeSlotFinder(DAY_START, DAY_END, WEEKDAYS)
+                .findFreeSlots(List.<TimeInterval>of().iterator(), MONDAY.atTime(16, 20), MONDAY.plusDays(1).atTime(17, 0),
+                        Duration.ofMinutes(45), 1);
+
+        assertEquals(List.of(slot(MONDAY.plusDays(1).atTime(9, 0), 45)), slots);
+    }
+
+    private static List<TimeInterval> bruteForce(List<TimeInterval> booked, LocalDateTime from, LocalDateTime to,
+                                                 Duration slot, int limit, Set<DayOfWeek> workingDays) {
+        List<TimeInterval> free = new ArrayList<>();
+        for (LocalDate day = from.toLocalDate(); !day.isAfter(to.toLocalDate()); day = day.plusDays(1)) {
+            if (!workingDays.contains(day.getDayOfWeek())) {
+                continue;
+            }
+            for (LocalDateTime start = day.atTime(DAY_START); !start.plus(slot).isAfter(day.atTime(DAY_END)); start = start.plus(slot)) {
+                LocalDateTime end = start.plus(slot);
+                if (start.isBefore(from) || end.isAfter(to)) {
+                    continue;
+                }
+                LocalDateTime slotStart = start;
+                boolean taken = booked.stream().anyMatch(b -> b.start().isBefore(end) && b.end().isAfter(slotStart));
+                if (!taken) {
+                    free.add(new TimeInterval(start, end));
+                    if (free.size() == limit) {
+                        return free;
+                    }
+                }
+            }
+        }
+        return free;
+    }
+
+    private static TimeInterval slot(LocalDateTime start, int minutes) {
+        return new TimeInterval(start, start.plusMinutes(minutes));
+    }
+}
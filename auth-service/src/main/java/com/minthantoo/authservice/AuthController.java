@@ -2,13 +2,16 @@ package com.minthantoo.authservice;
 
 import com.minthantoo.authservice.dto.LoginRequestDTO;
 import com.minthantoo.authservice.dto.LoginResponseDTO;
+import com.minthantoo.authservice.dto.RefreshRequestDTO;
 import com.minthantoo.authservice.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 public class AuthController {
@@ -22,16 +25,34 @@ public class AuthController {
 
     @Operation(summary = "Generate token on user login")
     @PostMapping("/login")
-    public ResponseEntity<LoginResponseDTO> login(@RequestBody LoginRequestDTO loginRequestDTO) {
+    // async -> the request thread is released while the password is checked on the hashing threads
+    public CompletableFuture<ResponseEntity<LoginResponseDTO>> login(@RequestBody LoginRequestDTO loginRequestDTO) {
 
-        Optional<String> tokenOptional = authService.authenticate(loginRequestDTO);
+        return authService.authenticate(loginRequestDTO)
+                .thenApply(tokens -> tokens
+                        .map(ResponseEntity::ok)
+                        .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build()))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof RejectedExecutionException) {
+                        // too many logins at once, the client should try again shortly
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").build();
+                    }
+                    throw e instanceof CompletionException completionException ? completionException : new CompletionException(e);
+                });
+    }
 
-        if(tokenOptional.isEmpty()) {
+    @Operation(summary = "Exchange a refresh token for a new access token and refresh token")
+    @PostMapping("/refresh")
+    // the refresh token can only be used once, the response has the next one
+    public ResponseEntity<LoginResponseDTO> refresh(@RequestBody RefreshRequestDTO refreshRequestDTO) {
+        if (refreshRequestDTO.getRefreshToken() == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
-        String token = tokenOptional.get();
-        return ResponseEntity.ok(new LoginResponseDTO(token));
+        return authService.refresh(refreshRequestDTO.getRefreshToken())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
     }
 
     @Operation(summary = "Validate Token")
@@ -47,4 +68,23 @@ public class AuthController {
                 ? ResponseEntity.ok().build()
                 : ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
     }
+
+    @Operation(summary = "Revoke Token")
+    @PostMapping("/revoke")
+    // e.g. on logout, /validate rejects the token from now on.
+    // With the refresh token in the body the session ends too, otherwise it could just get a new access token
+    public ResponseEntity<Void> revokeToken(@RequestHeader("Authorization") String authHeader,
+                                            @RequestBody(required = false) RefreshRequestDTO refreshRequestDTO) {
+        if(authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        if (refreshRequestDTO != null && refreshRequestDTO.getRefreshToken() != null) {
+            authService.revokeRefreshToken(refreshRequestDTO.getRefreshToken());
+        }
+
+        return authService.revokeToken(authHeader.substring(7))
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+    }
 }
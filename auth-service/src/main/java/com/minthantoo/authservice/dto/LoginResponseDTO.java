@@ -1,13 +1,28 @@
 package com.minthantoo.authservice.dto;
 
 public class LoginResponseDTO {
+    // short-lived access token (JWT), sent as "Authorization: Bearer <token>"
     private final String token;
+    // used once on /refresh to get the next pair
+    private final String refreshToken;
+    // seconds until token expires
+    private final long expiresIn;
 
-    public LoginResponseDTO(String token) {
+    public LoginResponseDTO(String token, String refreshToken, long expiresIn) {
         this.token = token;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
     }
 
     public String getToken() {
         return token;
     }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public long getExpiresIn() {
+        return expiresIn;
+    }
 }
@@ -0,0 +1,16 @@
+package com.minthantoo.authservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+public class RefreshRequestDTO {
+    @NotBlank(message = "Refresh token is required")
+    private String refreshToken;
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
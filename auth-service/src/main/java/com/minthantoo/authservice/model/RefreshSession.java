@@ -0,0 +1,19 @@
+package com.minthantoo.authservice.model;
+
+import java.time.Instant;
+
+// What a refresh token stands for. All refresh tokens rotated from one login share the familyId and the expiresAt,
+// so a session ends at expiresAt however often it was refreshed.
+public record RefreshSession(String familyId, String email, Instant expiresAt) {
+
+    // compact form for the stores, "familyId|expiresAt millis|email" (the email goes last, it's the only part
+    // that could contain the separator)
+    public String serialize() {
+        return familyId + "|" + expiresAt.toEpochMilli() + "|" + email;
+    }
+
+    public static RefreshSession deserialize(String value) {
+        String[] parts = value.split("\\|", 3);
+        return new RefreshSession(parts[0], parts[2], Instant.ofEpochMilli(Long.parseLong(parts[1])));
+    }
+}
@@ -0,0 +1,68 @@
+package com.minthantoo.authservice.repository;
+
+import com.minthantoo.authservice.model.RefreshSession;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sessions are lost on restart, users log in again. Expired entries are dropped at most once a minute on save.
+@Repository
+@ConditionalOnProperty(name = "auth.refresh-tokens.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRefreshTokenStore implements RefreshTokenStore {
+    private static final long PURGE_INTERVAL_MILLIS = 60_000;
+
+    private final Map<String, RefreshSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, RefreshSession> used = new ConcurrentHashMap<>();
+    private final Map<String, Instant> revokedFamilies = new ConcurrentHashMap<>();
+    private final AtomicLong lastPurge = new AtomicLong();
+
+    @Override
+    public void save(String tokenHash, RefreshSession session) {
+        purgeExpired();
+        sessions.put(tokenHash, session);
+    }
+
+    @Override
+    public Optional<RefreshSession> take(String tokenHash) {
+        RefreshSession session = sessions.remove(tokenHash);
+        if (session != null) {
+            used.put(tokenHash, session);
+        }
+        return Optional.ofNullable(session).filter(s -> Instant.now().isBefore(s.expiresAt()));
+    }
+
+    @Override
+    public Optional<String> usedBy(String tokenHash) {
+        return Optional.ofNullable(used.get(tokenHash))
+                .filter(s -> Instant.now().isBefore(s.expiresAt()))
+                .map(RefreshSession::familyId);
+    }
+
+    @Override
+    public void revokeFamily(String familyId, Instant until) {
+        revokedFamilies.put(familyId, until);
+    }
+
+    @Override
+    public boolean isFamilyRevoked(String familyId) {
+        Instant until = revokedFamilies.get(familyId);
+        return until != null && Instant.now().isBefore(until);
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        long last = lastPurge.get();
+        if (now - last < PURGE_INTERVAL_MILLIS || !lastPurge.compareAndSet(last, now)) {
+            return;
+        }
+        Instant cutoff = Instant.ofEpochMilli(now);
+        sessions.values().removeIf(s -> !cutoff.isBefore(s.expiresAt()));
+        used.values().removeIf(s -> !cutoff.isBefore(s.expiresAt()));
+        revokedFamilies.values().removeIf(until -> !cutoff.isBefore(until));
+    }
+}
@@ -0,0 +1,73 @@
+package com.minthantoo.authservice.repository;
+
+import com.minthantoo.authservice.model.RefreshSession;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+// One key per token with the session's remaining lifetime as TTL, Redis drops them when the session ends.
+// take() is a GETDEL, so two instances can't both rotate the same token.
+@Repository
+@ConditionalOnProperty(name = "auth.refresh-tokens.store", havingValue = "redis")
+public class RedisRefreshTokenStore implements RefreshTokenStore {
+    private static final String TOKEN_KEY = "auth:refresh:";
+    private static final String USED_KEY = "auth:refresh-used:";
+    private static final String REVOKED_FAMILY_KEY = "auth:refresh-family-revoked:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisRefreshTokenStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void save(String tokenHash, RefreshSession session) {
+        Duration ttl = remaining(session.expiresAt());
+        if (!ttl.isZero()) {
+            redisTemplate.opsForValue().set(TOKEN_KEY + tokenHash, session.serialize(), ttl);
+        }
+    }
+
+    @Override
+    public Optional<RefreshSession> take(String tokenHash) {
+        String value = redisTemplate.opsForValue().getAndDelete(TOKEN_KEY + tokenHash);
+        if (value == null) {
+            return Optional.empty();
+        }
+
+        RefreshSession session = RefreshSession.deserialize(value);
+        Duration ttl = remaining(session.expiresAt());
+        if (ttl.isZero()) {
+            return Optional.empty();
+        }
+        redisTemplate.opsForValue().set(USED_KEY + tokenHash, session.familyId(), ttl);
+        return Optional.of(session);
+    }
+
+    @Override
+    public Optional<String> usedBy(String tokenHash) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(USED_KEY + tokenHash));
+    }
+
+    @Override
+    public void revokeFamily(String familyId, Instant until) {
+        Duration ttl = remaining(until);
+        if (!ttl.isZero()) {
+            redisTemplate.opsForValue().set(REVOKED_FAMILY_KEY + familyId, "1", ttl);
+        }
+    }
+
+    @Override
+    public boolean isFamilyRevoked(String familyId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(REVOKED_FAMILY_KEY + familyId));
+    }
+
+    private static Duration remaining(Instant until) {
+        Duration ttl = Duration.between(Instant.now(), until);
+        return ttl.isNegative() ? Duration.ZERO : ttl;
+    }
+}
@@ -0,0 +1,25 @@
+package com.minthantoo.authservice.repository;
+
+import com.minthantoo.authservice.model.RefreshSession;
+
+import java.time.Instant;
+import java.util.Optional;
+
+// Refresh tokens by sha-256 of the token. Everything is only kept until the session's expiresAt.
+// InMemoryRefreshTokenStore for a single instance, RedisRefreshTokenStore (auth.refresh-tokens.store=redis)
+// when several auth-service instances have to see the same sessions.
+public interface RefreshTokenStore {
+
+    void save(String tokenHash, RefreshSession session);
+
+    // atomically removes the token, of two concurrent calls with the same token only one gets the session.
+    // The token is remembered as used, see usedBy
+    Optional<RefreshSession> take(String tokenHash);
+
+    // family of an already used token, a used token coming back means it was copied -> the family gets revoked
+    Optional<String> usedBy(String tokenHash);
+
+    void revokeFamily(String familyId, Instant until);
+
+    boolean isFamilyRevoked(String familyId);
+}
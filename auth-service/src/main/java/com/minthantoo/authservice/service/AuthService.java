@@ -1,33 +1,84 @@
 package com.minthantoo.authservice.service;
 
 import com.minthantoo.authservice.dto.LoginRequestDTO;
+import com.minthantoo.authservice.dto.LoginResponseDTO;
+import com.minthantoo.authservice.model.User;
 import com.minthantoo.authservice.util.JwtUtil;
 import io.jsonwebtoken.JwtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class AuthService {
 
+    private static final Logger log = LoggerFactory.getLogger(AuthService.class);
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final JwtUtil jwtUtil;
+    private final RefreshTokenService refreshTokenService;
 
-    public AuthService(UserService userService, PasswordEncoder passwordEncoder, JwtUtil jwtUtil) {
+    public AuthService(UserService userService, PasswordEncoder passwordEncoder, PasswordHasher passwordHasher, JwtUtil jwtUtil,
+                       RefreshTokenService refreshTokenService) {
         this.userService = userService;
         this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
         this.jwtUtil = jwtUtil;
+        this.refreshTokenService = refreshTokenService;
     }
 
-    public Optional<String> authenticate(LoginRequestDTO loginRequestDTO) {
-        Optional<String> token = userService
-                .findByEmail(loginRequestDTO.getEmail())
-                .filter(u -> passwordEncoder.matches(loginRequestDTO.getPassword(),u.getPassword())) //(rawPassword, encodedPassword)
-                .map(u -> jwtUtil.generateToken(u.getEmail(), u.getRole()));
+    // the user comes from the cache, the password check runs on the hashing threads (PasswordHasher)
+    // completes with RejectedExecutionException when too many logins are already waiting
+    public CompletableFuture<Optional<LoginResponseDTO>> authenticate(LoginRequestDTO loginRequestDTO) {
+        Optional<User> user = userService.findByEmail(loginRequestDTO.getEmail());
+        if (user.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        User u = user.get();
+        return passwordHasher.submit(() -> {
+            if (!passwordEncoder.matches(loginRequestDTO.getPassword(), u.getPassword())) { //(rawPassword, encodedPassword)
+                return Optional.empty();
+            }
+            if (passwordHasher.needsRehash(u.getPassword())) {
+                rehash(u, loginRequestDTO.getPassword());
+            }
+            return Optional.of(tokens(u, refreshTokenService.issue(u.getEmail())));
+        });
+    }
+
+    // new access token + the next refresh token of the session. The user is looked up again (cached),
+    // so a deleted user can't refresh and a changed role is in the next access token
+    public Optional<LoginResponseDTO> refresh(String refreshToken) {
+        return refreshTokenService.rotate(refreshToken)
+                .flatMap(rotated -> userService.findByEmail(rotated.session().email())
+                        .map(u -> tokens(u, rotated.refreshToken())));
+    }
+
+    public void revokeRefreshToken(String refreshToken) {
+        refreshTokenService.revoke(refreshToken);
+    }
+
+    private LoginResponseDTO tokens(User user, String refreshToken) {
+        return new LoginResponseDTO(jwtUtil.generateToken(user.getEmail(), user.getRole()), refreshToken,
+                jwtUtil.getAccessTokenTtl().toSeconds());
+    }
 
-        return token;
+    // the raw password is only known at login, so that's when a hash with the old cost gets replaced.
+    // A failure here doesn't fail the login, it's tried again next time
+    private void rehash(User user, String rawPassword) {
+        try {
+            if (userService.updatePassword(user, user.getPassword(), passwordEncoder.encode(rawPassword))) {
+                log.info("Rehashed password of user {} with the configured bcrypt cost", user.getId());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not rehash password of user {}: {}", user.getId(), e.getMessage());
+        }
     }
 
     public boolean validateToken(String token) {
@@ -38,4 +89,13 @@ public class AuthService {
             return false;
         }
     }
+
+    public boolean revokeToken(String token) {
+        try {
+            jwtUtil.revokeToken(token);
+            return true;
+        } catch (JwtException e) {
+            return false;
+        }
+    }
 }
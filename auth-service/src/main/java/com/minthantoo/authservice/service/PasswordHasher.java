@@ -0,0 +1,63 @@
+package com.minthantoo.authservice.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// bcrypt runs here instead of on the request threads. At a login storm at most `threads` hashes run at once and
+// at most `queue-capacity` wait, anything beyond that fails fast (RejectedExecutionException -> 503) instead of
+// piling up until every Tomcat thread is busy hashing and /validate can't be served either.
+@Component
+public class PasswordHasher {
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final ExecutorService hashingThreads;
+    private final int strength;
+
+    public PasswordHasher(@Value("${auth.password.hashing.threads:0}") int threads,
+                          @Value("${auth.password.hashing.queue-capacity:256}") int queueCapacity,
+                          @Value("${auth.password.bcrypt-strength:12}") int strength) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.hashingThreads = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.strength = strength;
+    }
+
+    // fails with RejectedExecutionException when the queue is full
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, hashingThreads);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // true when the stored hash was made with another cost than auth.password.bcrypt-strength,
+    // e.g. the cost was raised (or lowered for smaller machines) for this deployment
+    public boolean needsRehash(String encodedPassword) {
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingThreads.shutdown();
+    }
+}
@@ -0,0 +1,81 @@
+package com.minthantoo.authservice.service;
+
+import com.minthantoo.authservice.model.RefreshSession;
+import com.minthantoo.authservice.repository.RefreshTokenStore;
+import com.minthantoo.authservice.util.TokenHashes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+// Rotating refresh tokens. A refresh token is random (not a JWT), can be used once and is replaced by a new one
+// of the same family on every /refresh. If a used token shows up again, someone else has a copy of it ->
+// the whole family is revoked and both the thief and the user have to log in again.
+// Two refreshes racing with the same token (e.g. two tabs) look the same and log the user out too.
+@Service
+public class RefreshTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenStore refreshTokenStore;
+    private final SecureRandom random = new SecureRandom();
+    // how long a login lasts (e.g. one shift), refreshing doesn't extend it
+    private final Duration sessionTtl;
+
+    public RefreshTokenService(RefreshTokenStore refreshTokenStore,
+                               @Value("${auth.refresh-tokens.ttl:12h}") Duration sessionTtl) {
+        this.refreshTokenStore = refreshTokenStore;
+        this.sessionTtl = sessionTtl;
+    }
+
+    // new session at login
+    public String issue(String email) {
+        return issue(new RefreshSession(UUID.randomUUID().toString(), email, Instant.now().plus(sessionTtl)));
+    }
+
+    // the session of the token, and the token is replaced by the returned one. Empty when the token is unknown,
+    // expired, already used or its family was revoked
+    public Optional<Rotated> rotate(String refreshToken) {
+        String hash = TokenHashes.sha256(refreshToken);
+        Optional<RefreshSession> session = refreshTokenStore.take(hash);
+
+        if (session.isEmpty()) {
+            refreshTokenStore.usedBy(hash).filter(familyId -> !refreshTokenStore.isFamilyRevoked(familyId)).ifPresent(familyId -> {
+                log.warn("Refresh token of family {} was used twice, revoking the family", familyId);
+                refreshTokenStore.revokeFamily(familyId, Instant.now().plus(sessionTtl));
+            });
+            return Optional.empty();
+        }
+
+        RefreshSession current = session.get();
+        if (refreshTokenStore.isFamilyRevoked(current.familyId())) {
+            return Optional.empty();
+        }
+        return Optional.of(new Rotated(current, issue(current)));
+    }
+
+    // logout, no token of the session can be refreshed anymore
+    public void revoke(String refreshToken) {
+        refreshTokenStore.take(TokenHashes.sha256(refreshToken))
+                .ifPresent(session -> refreshTokenStore.revokeFamily(session.familyId(), session.expiresAt()));
+    }
+
+    private String issue(RefreshSession session) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenStore.save(TokenHashes.sha256(token), session);
+        return token;
+    }
+
+    public record Rotated(RefreshSession session, String refreshToken) {
+    }
+}
@@ -1,22 +1,47 @@
 package com.minthantoo.authservice.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.minthantoo.authservice.model.User;
 import com.minthantoo.authservice.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.util.Optional;
 
 @Service
 public class UserService {
 
     private final UserRepository userRepository;
+    // email -> user, so a login storm doesn't run the same SELECT for every attempt.
+    // Changes made through this service evict the entry right away, the ttl bounds how long a change made
+    // somewhere else (another instance, the database directly) can go unnoticed.
+    // Unknown emails are not cached. The users are shared between threads, treat them as read-only.
+    private final Cache<String, User> usersByEmail;
 
     // Constructor to initialize the variable using dependency injection
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository,
+                       @Value("${auth.users.cache.max-size:10000}") long maxSize,
+                       @Value("${auth.users.cache.ttl:10m}") Duration ttl) {
         this.userRepository = userRepository;
+        this.usersByEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
     }
 
     public Optional<User> findByEmail(String email) {
-        return userRepository.findByEmail(email);
+        // concurrent misses for the same email share one query
+        return Optional.ofNullable(usersByEmail.get(email, key -> userRepository.findByEmail(key).orElse(null)));
+    }
+
+    // only replaces the hash if it's still the one the caller saw, a password change in between wins
+    @Transactional
+    public boolean updatePassword(User user, String currentPassword, String newPassword) {
+        int updated = userRepository.updatePassword(user.getId(), currentPassword, newPassword);
+        usersByEmail.invalidate(user.getEmail());
+        return updated == 1;
     }
 }
@@ -1,6 +1,11 @@
 package com.minthantoo.authservice.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
@@ -9,18 +14,63 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
-import java.security.Key;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
 
-    private final Key secretKey;
+    private final SecretKey secretKey;
+    // thread safe, built once instead of on every validation
+    private final JwtParser parser;
 
-    public JwtUtil(@Value("${jwt.secret}") String secret) {
+    // Tokens that passed validation, sha-256 of the token -> expiration (epoch millis).
+    // The same token comes back on every request of a session, a hit skips the HMAC and the JSON parsing.
+    // Bounded by jwt.cache.max-size (Caffeine evicts the least useful entries), each entry expires with its token.
+    private final Cache<String, Long> verifiedTokens;
+    // Revoked tokens, kept until they would have expired anyway, after that the expiry check rejects them.
+    // Never evicted early, dropping one would make the token valid again.
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final int maxCachedTokens;
+    // short, so the gateway and the services can trust a token without asking auth-service,
+    // a revoked session can only keep using its last access token until it expires. Clients renew it with /refresh
+    private final Duration accessTokenTtl;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.cache.max-size:10000}") int maxCachedTokens,
+                   @Value("${jwt.access-token.ttl:15m}") Duration accessTokenTtl) {
         byte[] keyBytes = Base64.getDecoder().decode(secret.getBytes(StandardCharsets.UTF_8));
         this.secretKey = Keys.hmacShaKeyFor(keyBytes);
+        this.parser = Jwts.parser().verifyWith(secretKey).build();
+        this.maxCachedTokens = maxCachedTokens;
+        this.accessTokenTtl = accessTokenTtl;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(Math.max(maxCachedTokens, 0))
+                .expireAfter(new Expiry<String, Long>() {
+                    @Override
+                    public long expireAfterCreate(String hash, Long expiresAt, long currentTime) {
+                        return untilExpiry(expiresAt);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, Long expiresAt, long currentTime, long currentDuration) {
+                        return untilExpiry(expiresAt);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, Long expiresAt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public Duration getAccessTokenTtl() {
+        return accessTokenTtl;
     }
 
     public String generateToken(String email, String role) {
@@ -28,20 +78,63 @@ public class JwtUtil {
                 .subject(email)
                 .claim("role", role)
                 .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10))  // 10 hours
+                .expiration(new Date(System.currentTimeMillis() + accessTokenTtl.toMillis()))
                 .signWith(secretKey)
                 .compact();
     }
 
     public void validateToken(String token) {
+        String hash = TokenHashes.sha256(token);
+
+        if (revokedTokens.containsKey(hash)) {
+            throw new JwtException("Revoked JWT");
+        }
+
+        // an expired entry is never returned, the parser below rejects the token then
+        if (verifiedTokens.getIfPresent(hash) != null) {
+            return;
+        }
+
+        Claims claims = parse(token);
+        // auth-service tokens always have an expiration, a token without one is not cached
+        if (claims.getExpiration() != null && maxCachedTokens > 0) {
+            verifiedTokens.put(hash, claims.getExpiration().getTime());
+        }
+    }
+
+    // e.g. on logout, the token is rejected from now on even though its signature and expiration are fine.
+    // Only auth-service knows about it -> a gateway verifying tokens locally (JWT_LOCAL_VERIFICATION) still accepts
+    // the token until it expires.
+    public void revokeToken(String token) {
+        Claims claims = parse(token); // an invalid token doesn't need revoking
+        if (claims.getExpiration() == null) {
+            throw new JwtException("JWT without expiration can't be revoked");
+        }
+
+        long now = System.currentTimeMillis();
+        String hash = TokenHashes.sha256(token);
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        revokedTokens.put(hash, claims.getExpiration().getTime());
+        verifiedTokens.invalidate(hash);
+    }
+
+    private Claims parse(String token) {
         try {
-            Jwts.parser().verifyWith((SecretKey) secretKey)
-                    .build()
-                    .parseSignedClaims(token);
+            return parser.parseSignedClaims(token).getPayload();
         } catch (SignatureException e) {
             throw new JwtException("Invalid JWT signature");
-        } catch (JwtException e) {
+        } catch (JwtException | IllegalArgumentException e) {
             throw new JwtException("Invalid JWT");
         }
     }
+
+    // number of tokens in the cache, for tests
+    long cachedTokens() {
+        verifiedTokens.cleanUp();
+        return verifiedTokens.estimatedSize();
+    }
+
+    private static long untilExpiry(long expiresAt) {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(expiresAt - System.currentTimeMillis(), 0));
+    }
 }
@@ -0,0 +1,125 @@
+package com.minthantoo.authservice;
+
+import com.minthantoo.authservice.dto.LoginRequestDTO;
+import com.minthantoo.authservice.dto.LoginResponseDTO;
+import com.minthantoo.authservice.model.User;
+import com.minthantoo.authservice.service.AuthService;
+import com.minthantoo.authservice.service.PasswordHasher;
+import com.minthantoo.authservice.service.RefreshTokenService;
+import com.minthantoo.authservice.service.UserService;
+import com.minthantoo.authservice.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// POST /login through the real AuthService and PasswordHasher (1 hashing thread, 1 queue slot),
+// user lookup, JWTs and refresh tokens are mocked.
+class AuthControllerTest {
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
+    private final PasswordHasher passwordHasher = new PasswordHasher(1, 1, 4);
+    private final UserService userService = mock(UserService.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AuthController controller;
+
+    @BeforeEach
+    void setUp() {
+        JwtUtil jwtUtil = mock(JwtUtil.class);
+        when(jwtUtil.generateToken("john.doe@example.com", "ADMIN")).thenReturn("access-token");
+        when(jwtUtil.getAccessTokenTtl()).thenReturn(Duration.ofMinutes(15));
+        RefreshTokenService refreshTokenService = mock(RefreshTokenService.class);
+        when(refreshTokenService.issue("john.doe@example.com")).thenReturn("refresh-token");
+
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("john.doe@example.com");
+        user.setPassword(passwordEncoder.encode("password123"));
+        user.setRole("ADMIN");
+        when(userService.findByEmail("john.doe@example.com")).thenReturn(Optional.of(user));
+
+        controller = new AuthController(new AuthService(userService, passwordEncoder, passwordHasher, jwtUtil, refreshTokenService));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    void correctPasswordReturnsTokens() throws Exception {
+        ResponseEntity<LoginResponseDTO> response = login("john.doe@example.com", "password123");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("access-token", response.getBody().getToken());
+        assertEquals("refresh-token", response.getBody().getRefreshToken());
+        assertEquals(900, response.getBody().getExpiresIn());
+    }
+
+    @Test
+    void wrongPasswordIsUnauthorized() throws Exception {
+        ResponseEntity<LoginResponseDTO> response = login("john.doe@example.com", "wrong");
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void unknownEmailIsUnauthorized() throws Exception {
+        when(userService.findByEmail("nobody@example.com")).thenReturn(Optional.empty());
+
+        assertEquals(HttpStatus.UNAUTHORIZED, login("nobody@example.com", "password123").getStatusCode());
+    }
+
+    @Test
+    void saturatedHashingPoolAnswers503WithRetryAfter() throws Exception {
+        // the only hashing thread is busy and the only queue slot is taken
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<Void> busy = passwordHasher.submit(() -> {
+            running.countDown();
+            return awaitRelease();
+        });
+        running.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Void> queued = passwordHasher.submit(() -> null);
+
+        ResponseEntity<LoginResponseDTO> response = login("john.doe@example.com", "password123");
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+
+        // and logins work again once the pool has room
+        release.countDown();
+        CompletableFuture.allOf(busy, queued).get(5, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.OK, login("john.doe@example.com", "password123").getStatusCode());
+    }
+
+    private ResponseEntity<LoginResponseDTO> login(String email, String password) throws Exception {
+        LoginRequestDTO request = new LoginRequestDTO();
+        request.setEmail(email);
+        request.setPassword(password);
+        return controller.login(request).get(5, TimeUnit.SECONDS);
+    }
+
+    private Void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.minthantoo.authservice.benchmark;
+
+import com.minthantoo.authservice.util.JwtUtil;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Validations per second of one token (what /validate does for every gateway request of a session).
+// parserPerCall -> the old JwtUtil.validateToken, Jwts.parser()...build() + HMAC + JSON every time
+// sharedParser  -> JwtUtil with the cache switched off (jwt.cache.max-size=0), only the parser is reused
+// cached        -> JwtUtil as configured, the token was verified before so it's a sha-256 + map lookup
+// tokens -> 1 is a single client, 1000 spreads the calls over many sessions (all still fit in the cache)
+// Run main() from the IDE, or: mvn test-compile, then run this class with the test classpath.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtValidationBenchmark {
+
+    @Param({"1", "1000"})
+    public int tokens;
+
+    private SecretKey key;
+    private JwtUtil sharedParser;
+    private JwtUtil cached;
+    private String[] issued;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        byte[] keyBytes = new byte[32];
+        new Random(42).nextBytes(keyBytes);
+        String secret = Base64.getEncoder().encodeToString(keyBytes);
+        key = Keys.hmacShaKeyFor(Base64.getDecoder().decode(secret.getBytes(StandardCharsets.UTF_8)));
+
+        sharedParser = new JwtUtil(secret, 0, Duration.ofMinutes(15));
+        cached = new JwtUtil(secret, 10000, Duration.ofMinutes(15));
+        issued = new String[tokens];
+        for (int i = 0; i < tokens; i++) {
+            issued[i] = cached.generateToken("user" + i + "@test.com", "ADMIN");
+            cached.validateToken(issued[i]);
+        }
+    }
+
+    @Benchmark
+    public Object parserPerCall(Cursor cursor) {
+        return Jwts.parser().verifyWith(key).build().parseSignedClaims(next(cursor));
+    }
+
+    @Benchmark
+    public void sharedParser(Cursor cursor) {
+        sharedParser.validateToken(next(cursor));
+    }
+
+    @Benchmark
+    public void cached(Cursor cursor) {
+        cached.validateToken(next(cursor));
+    }
+
+    private String next(Cursor cursor) {
+        String token = issued[cursor.next];
+        cursor.next = (cursor.next + 1) % issued.length;
+        return token;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtValidationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.minthantoo.authservice.benchmark;
+
+import com.minthantoo.authservice.dto.LoginRequestDTO;
+import com.minthantoo.authservice.model.User;
+import com.minthantoo.authservice.repository.InMemoryRefreshTokenStore;
+import com.minthantoo.authservice.repository.UserRepository;
+import com.minthantoo.authservice.service.AuthService;
+import com.minthantoo.authservice.service.PasswordHasher;
+import com.minthantoo.authservice.service.RefreshTokenService;
+import com.minthantoo.authservice.service.UserService;
+import com.minthantoo.authservice.util.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Successful logins per second with 32 clients logging in at once (shift change).
+// direct      -> the old AuthService.authenticate: SELECT per login + bcrypt on the request thread
+// hashingPool -> cached user lookup + bcrypt on PasswordHasher's bounded pool (queue big enough, nothing rejected)
+// strength    -> bcrypt cost, the knob auth.password.bcrypt-strength turns, every step doubles the work
+// The repository is a stub that answers after 500us, like a SELECT over the network.
+// Run main() from the IDE, or: mvn test-compile, then run this class with the test classpath.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(32)
+public class LoginBenchmark {
+    private static final long DB_LATENCY_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+    private static final String PASSWORD = "password123";
+
+    @Param({"direct", "hashingPool"})
+    public String mode;
+
+    @Param({"4", "10"})
+    public int strength;
+
+    private BCryptPasswordEncoder passwordEncoder;
+    private UserRepository userRepository;
+    private AuthService authService;
+    private JwtUtil jwtUtil;
+    private LoginRequestDTO request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        passwordEncoder = new BCryptPasswordEncoder(strength);
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("testuser@test.com");
+        user.setPassword(passwordEncoder.encode(PASSWORD));
+        user.setRole("ADMIN");
+        userRepository = stubRepository(user);
+
+        byte[] keyBytes = new byte[32];
+        new Random(42).nextBytes(keyBytes);
+        jwtUtil = new JwtUtil(Base64.getEncoder().encodeToString(keyBytes), 10000, Duration.ofMinutes(15));
+        authService = new AuthService(new UserService(userRepository, 10000, Duration.ofMinutes(10)), passwordEncoder,
+                new PasswordHasher(0, 1000, strength), jwtUtil,
+                new RefreshTokenService(new InMemoryRefreshTokenStore(), Duration.ofHours(12)));
+
+        request = new LoginRequestDTO();
+        request.setEmail(user.getEmail());
+        request.setPassword(PASSWORD);
+    }
+
+    @Benchmark
+    public Optional<?> login() {
+        if (mode.equals("direct")) {
+            return userRepository.findByEmail(request.getEmail())
+                    .filter(u -> passwordEncoder.matches(request.getPassword(), u.getPassword()))
+                    .map(u -> jwtUtil.generateToken(u.getEmail(), u.getRole()));
+        }
+        return authService.authenticate(request).join();
+    }
+
+    // only findByEmail is needed, the stored hash already has the benchmarked cost so nothing is rehashed
+    private static UserRepository stubRepository(User user) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("findByEmail")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    LockSupport.parkNanos(DB_LATENCY_NANOS);
+                    return user.getEmail().equals(args[0]) ? Optional.of(user) : Optional.empty();
+                });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoginBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.minthantoo.authservice.service;
+
+import com.minthantoo.authservice.dto.LoginRequestDTO;
+import com.minthantoo.authservice.model.User;
+import com.minthantoo.authservice.util.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// A successful login replaces a hash made with another bcrypt cost than the configured one.
+class AuthServiceTest {
+    private final UserService userService = mock(UserService.class);
+    // configured cost 5
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder(5);
+    private final PasswordHasher passwordHasher = new PasswordHasher(1, 16, 5);
+
+    @AfterEach
+    void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    void loginRehashesAPasswordStoredWithAnotherCost() throws Exception {
+        String oldHash = new BCryptPasswordEncoder(4).encode("password123");
+        User user = user(oldHash);
+        when(userService.updatePassword(eq(user), eq(oldHash), anyString())).thenReturn(true);
+
+        assertTrue(authService().authenticate(login("password123")).get(5, TimeUnit.SECONDS).isPresent());
+
+        verify(userService).updatePassword(eq(user), eq(oldHash), argThat(newHash ->
+                newHash.startsWith("$2a$05$") && passwordEncoder.matches("password123", newHash)));
+    }
+
+    @Test
+    void loginKeepsAPasswordStoredWithTheConfiguredCost() throws Exception {
+        user(passwordEncoder.encode("password123"));
+
+        assertTrue(authService().authenticate(login("password123")).get(5, TimeUnit.SECONDS).isPresent());
+
+        verify(userService, never()).updatePassword(any(), anyString(), anyString());
+    }
+
+    @Test
+    void failedLoginDoesNotRehash() throws Exception {
+        user(new BCryptPasswordEncoder(4).encode("password123"));
+
+        assertFalse(authService().authenticate(login("wrong")).get(5, TimeUnit.SECONDS).isPresent());
+
+        verify(userService, never()).updatePassword(any(), anyString(), anyString());
+    }
+
+    private AuthService authService() {
+        JwtUtil jwtUtil = mock(JwtUtil.class);
+        when(jwtUtil.generateToken(anyString(), anyString())).thenReturn("access-token");
+        when(jwtUtil.getAccessTokenTtl()).thenReturn(Duration.ofMinutes(15));
+        RefreshTokenService refreshTokenService = mock(RefreshTokenService.class);
+        when(refreshTokenService.issue(anyString())).thenReturn("refresh-token");
+        return new AuthService(userService, passwordEncoder, passwordHasher, jwtUtil, refreshTokenService);
+    }
+
+    private User user(String passwordHash) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("john.doe@example.com");
+        user.setPassword(passwordHash);
+        user.setRole("ADMIN");
+        when(userService.findByEmail("john.doe@example.com")).thenReturn(Optional.of(user));
+        return user;
+    }
+
+    private static LoginRequestDTO login(String password) {
+        LoginRequestDTO request = new LoginRequestDTO();
+        request.setEmail("john.doe@example.com");
+        request.setPassword(password);
+        return request;
+    }
+}
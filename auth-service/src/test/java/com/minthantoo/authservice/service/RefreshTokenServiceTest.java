@@ -0,0 +1,77 @@
+package com.minthantoo.authservice.service;
+
+import com.minthantoo.authservice.repository.InMemoryRefreshTokenStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Rotation, reuse detection, expiry and logout of refresh tokens, against the in-memory store.
+class RefreshTokenServiceTest {
+    private final RefreshTokenService service = new RefreshTokenService(new InMemoryRefreshTokenStore(), Duration.ofHours(12));
+
+    @Test
+    void rotationReturnsANewTokenOfTheSameSession() {
+        String token = service.issue("john.doe@example.com");
+
+        RefreshTokenService.Rotated rotated = service.rotate(token).orElseThrow();
+
+        assertNotEquals(token, rotated.refreshToken());
+        assertEquals("john.doe@example.com", rotated.session().email());
+        // and the new one rotates again, in the same family with the same end
+        RefreshTokenService.Rotated next = service.rotate(rotated.refreshToken()).orElseThrow();
+        assertEquals(rotated.session(), next.session());
+    }
+
+    @Test
+    void reusingARotatedTokenRevokesTheWholeFamily() {
+        String stolen = service.issue("john.doe@example.com");
+        String current = service.rotate(stolen).orElseThrow().refreshToken();
+
+        // the copy shows up again -> rejected, and the token the user holds now is dead too
+        assertTrue(service.rotate(stolen).isEmpty());
+        assertTrue(service.rotate(current).isEmpty());
+    }
+
+    @Test
+    void reuseDoesNotTouchOtherSessions() {
+        String stolen = service.issue("john.doe@example.com");
+        service.rotate(stolen);
+        String otherLogin = service.issue("john.doe@example.com");
+
+        service.rotate(stolen);
+
+        assertTrue(service.rotate(otherLogin).isPresent());
+    }
+
+    @Test
+    void expiredTokenIsRejected() throws InterruptedException {
+        RefreshTokenService shortSessions = new RefreshTokenService(new InMemoryRefreshTokenStore(), Duration.ofMillis(100));
+        String token = shortSessions.issue("john.doe@example.com");
+
+        Thread.sleep(150);
+
+        assertEquals(Optional.empty(), shortSessions.rotate(token));
+    }
+
+    @Test
+    void unknownTokenIsRejected() {
+        assertTrue(service.rotate("not-a-token").isEmpty());
+    }
+
+    @Test
+    void logoutRevokesTheSession() {
+        String token = service.issue("john.doe@example.com");
+        String current = service.rotate(token).orElseThrow().refreshToken();
+
+        service.revoke(current);
+
+        assertTrue(service.rotate(current).isEmpty());
+        // an older token of the session can't bring it back either
+        assertTrue(service.rotate(token).isEmpty());
+    }
+}
@@ -0,0 +1,81 @@
+package com.minthantoo.authservice.service;
+
+import com.minthantoo.authservice.model.User;
+import com.minthantoo.authservice.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The email -> user cache: lookups are served from it until updatePassword evicts the user.
+class UserServiceTest {
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserService userService = new UserService(userRepository, 100, Duration.ofMinutes(10));
+    private final UUID id = UUID.randomUUID();
+
+    @Test
+    void repeatedLookupsQueryOnce() {
+        User user = user("old-hash");
+
+        assertEquals(Optional.of(user), userService.findByEmail("john.doe@example.com"));
+        assertEquals(Optional.of(user), userService.findByEmail("john.doe@example.com"));
+
+        verify(userRepository, times(1)).findByEmail("john.doe@example.com");
+    }
+
+    @Test
+    void unknownEmailsAreNotCached() {
+        when(userRepository.findByEmail("nobody@example.com")).thenReturn(Optional.empty());
+
+        assertTrue(userService.findByEmail("nobody@example.com").isEmpty());
+        assertTrue(userService.findByEmail("nobody@example.com").isEmpty());
+
+        verify(userRepository, times(2)).findByEmail("nobody@example.com");
+    }
+
+    @Test
+    void updatePasswordEvictsTheCachedUser() {
+        User user = user("old-hash");
+        userService.findByEmail("john.doe@example.com");
+        when(userRepository.updatePassword(user.getId(), "old-hash", "new-hash")).thenReturn(1);
+
+        assertTrue(userService.updatePassword(user, "old-hash", "new-hash"));
+
+        // the next lookup sees the new hash
+        user("new-hash");
+        assertEquals("new-hash", userService.findByEmail("john.doe@example.com").orElseThrow().getPassword());
+        verify(userRepository, times(2)).findByEmail("john.doe@example.com");
+    }
+
+    @Test
+    void updatePasswordEvictsEvenWhenTheHashChangedInBetween() {
+        User user = user("old-hash");
+        userService.findByEmail("john.doe@example.com");
+        when(userRepository.updatePassword(user.getId(), "old-hash", "new-hash")).thenReturn(0);
+
+        assertFalse(userService.updatePassword(user, "old-hash", "new-hash"));
+
+        userService.findByEmail("john.doe@example.com");
+        verify(userRepository, times(2)).findByEmail("john.doe@example.com");
+    }
+
+    // the same user as the repository has it right now
+    private User user(String passwordHash) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail("john.doe@example.com");
+        user.setPassword(passwordHash);
+        user.setRole("ADMIN");
+        when(userRepository.findByEmail("john.doe@example.com")).thenReturn(Optional.of(user));
+        return user;
+    }
+}
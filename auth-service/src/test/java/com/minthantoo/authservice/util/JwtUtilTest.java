@@ -0,0 +1,90 @@
+package com.minthantoo.authservice.util;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Token validation with the verified-token cache, and revocation on logout.
+class JwtUtilTest {
+    private static final byte[] KEY_BYTES = "a-test-secret-that-is-long-enough-for-hs256!".getBytes(StandardCharsets.UTF_8);
+    private static final String SECRET = Base64.getEncoder().encodeToString(KEY_BYTES);
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 100, Duration.ofMinutes(15));
+
+    @Test
+    void validTokenIsCached() {
+        String token = jwtUtil.generateToken("john.doe@example.com", "ADMIN");
+
+        assertDoesNotThrow(() -> jwtUtil.validateToken(token));
+        assertDoesNotThrow(() -> jwtUtil.validateToken(token));
+        assertEquals(1, jwtUtil.cachedTokens());
+    }
+
+    @Test
+    void tamperedTokenIsRejectedAndNotCached() {
+        String token = jwtUtil.generateToken("john.doe@example.com", "ADMIN");
+        jwtUtil.validateToken(token);
+
+        String[] parts = token.split("\\.");
+        String otherPayload = jwtUtil.generateToken("admin@example.com", "ADMIN").split("\\.")[1];
+        assertThrows(JwtException.class, () -> jwtUtil.validateToken(parts[0] + "." + otherPayload + "." + parts[2]));
+        assertEquals(1, jwtUtil.cachedTokens());
+    }
+
+    @Test
+    void cachedTokenIsRejectedOnceItExpired() throws InterruptedException {
+        // exp has second precision, 2s from now expires somewhere between 1 and 2 seconds from now
+        String token = Jwts.builder()
+                .subject("john.doe@example.com")
+                .expiration(new Date(System.currentTimeMillis() + 2000))
+                .signWith(Keys.hmacShaKeyFor(KEY_BYTES))
+                .compact();
+        jwtUtil.validateToken(token);
+        assertEquals(1, jwtUtil.cachedTokens());
+
+        Thread.sleep(2100);
+
+        assertThrows(JwtException.class, () -> jwtUtil.validateToken(token));
+        assertEquals(0, jwtUtil.cachedTokens());
+    }
+
+    @Test
+    void revokedTokenIsRejectedEvenWhenCached() {
+        String token = jwtUtil.generateToken("john.doe@example.com", "ADMIN");
+        jwtUtil.validateToken(token);
+
+        jwtUtil.revokeToken(token);
+
+        assertThrows(JwtException.class, () -> jwtUtil.validateToken(token));
+        assertEquals(0, jwtUtil.cachedTokens());
+    }
+
+    @Test
+    void cacheNeverGrowsPastItsBound() {
+        for (int i = 0; i < 500; i++) {
+            jwtUtil.validateToken(jwtUtil.generateToken("user" + i + "@example.com", "USER"));
+            assertTrue(jwtUtil.cachedTokens() <= 100);
+        }
+    }
+
+    @Test
+    void zeroCacheSizeValidatesEveryTime() {
+        JwtUtil uncached = new JwtUtil(SECRET, 0, Duration.ofMinutes(15));
+        String token = uncached.generateToken("john.doe@example.com", "ADMIN");
+
+        assertDoesNotThrow(() -> uncached.validateToken(token));
+        assertDoesNotThrow(() -> uncached.validateToken(token));
+        assertEquals(0, uncached.cachedTokens());
+    }
+}
@@ -0,0 +1,53 @@
+#!/usr/bin/env bash
+# Where does the gateway queue under load? Runs `hey` against the patient route at rising concurrency and reads the
+# gateway's pool meters (/actuator/prometheus) after each step:
+#   max-conns        connection limit of the patient-service pool (route metadata connection-pool)
+#   acquire-ms       average wait for a connection during the step (pending.connections.time, pending.streams.time with h2c)
+#   503              requests turned away by the pool (pending limit or timeout, ConnectionPoolBackpressureFilter)
+# For live numbers while it runs, watch reactor_netty_connection_provider_active_connections / pending_connections in Prometheus.
+# Start the gateway with PATIENT_RATE_LIMIT=100000 (and JWT_SECRET), then e.g.
+#   PATIENT_POOL_MAX_CONNECTIONS=50 ./connection-pool.sh
+#   PATIENT_POOL_MAX_CONNECTIONS=50 GATEWAY_H2C=true ./connection-pool.sh
+# Waiting for a connection that grows with concurrency while patient-service CPU is low -> the pool is too small.
+# No waiting, but latency still grows -> patient-service (or its database) is the bottleneck.
+set -euo pipefail
+
+GATEWAY_URL=${GATEWAY_URL:-http://localhost:4004}
+REQUESTS=${REQUESTS:-5000}
+STEPS=${STEPS:-"10 50 100 200 400"}
+BACKEND=${BACKEND:-patient-service:4000}
+
+TOKEN=$(curl -sS --fail -H 'Content-Type: application/json' \
+  -d '{"email":"testuser@test.com","password":"password123"}' \
+  "${GATEWAY_URL}/auth/login" | sed -E 's/.*"token":"([^"]+)".*/\1/')
+
+# sum of a meter over all pools (HTTP/1.1 and h2c) of the backend
+meter() {
+  curl -sS "${GATEWAY_URL}/actuator/prometheus" \
+    | awk -v name="$1" -v backend="$BACKEND" 'index($0, name "{") == 1 && index($0, "remote_address=\"" backend "\"") {sum += $NF} END {print sum + 0}'
+}
+
+acquire_totals() {
+  echo "$(meter reactor_netty_connection_provider_pending_connections_time_seconds_sum) $(meter reactor_netty_connection_provider_pending_connections_time_seconds_count) $(meter reactor_netty_connection_provider_pending_streams_time_seconds_sum) $(meter reactor_netty_connection_provider_pending_streams_time_seconds_count)"
+}
+
+# no-cache -> the gateway's response cache (ConditionalResponseCache) revalidates every request with patient-service
+printf '%6s %10s %9s %10s %12s %6s\n' conc req/s p99-ms max-conns acquire-ms 503
+for concurrency in $STEPS; do
+  read -r sum_before count_before streams_sum_before streams_count_before <<< "$(acquire_totals)"
+
+  out=$(hey -n "$REQUESTS" -c "$concurrency" -H "Authorization: Bearer ${TOKEN}" -H 'Cache-Control: no-cache' \
+    "${GATEWAY_URL}/api/patients?page=1&size=10")
+  max=$(meter reactor_netty_connection_provider_max_connections)
+
+  read -r sum_after count_after streams_sum_after streams_count_after <<< "$(acquire_totals)"
+  acquires=$(echo "$count_after - $count_before + $streams_count_after - $streams_count_before" | bc -l)
+  acquire_ms=$(echo "if ($acquires > 0) 1000 * ($sum_after - $sum_before + $streams_sum_after - $streams_sum_before) / $acquires else 0" | bc -l)
+
+  rps=$(echo "$out" | awk '/Requests\/sec/ {print $2}')
+  p99=$(echo "$out" | awk '/99% in/ {print $3}')
+  rejected=$(echo "$out" | awk '/\[503\]/ {print $2}')
+
+  printf '%6d %10.0f %9.1f %10.0f %12.2f %6d\n' "$concurrency" "$rps" "$(echo "$p99 * 1000" | bc -l)" \
+    "$max" "$acquire_ms" "${rejected:-0}"
+done
@@ -0,0 +1,29 @@
+#!/usr/bin/env bash
+# Gateway load test for the JwtValidation filter, reports requests/second and p99 latency (needs `hey`).
+# Run it once per mode, restarting the gateway in between:
+#   JWT_SECRET=<same as auth-service> PATIENT_RATE_LIMIT=100000                 -> local verification
+#   JWT_SECRET=<same as auth-service> PATIENT_RATE_LIMIT=100000 JWT_LOCAL_VERIFICATION=false -> remote hop to auth-service /validate
+# PATIENT_RATE_LIMIT lifts the per-IP limit of the patient route, otherwise almost everything is a 429.
+#   ./jwt-validation.sh local
+#   ./jwt-validation.sh remote
+# Compare the two lines. Also watch the auth-service CPU, in local mode it should be idle during the run.
+set -euo pipefail
+
+LABEL=${1:-run}
+GATEWAY_URL=${GATEWAY_URL:-http://localhost:4004}
+REQUESTS=${REQUESTS:-20000}
+CONCURRENCY=${CONCURRENCY:-50}
+
+TOKEN=$(curl -sS --fail -H 'Content-Type: application/json' \
+  -d '{"email":"testuser@test.com","password":"password123"}' \
+  "${GATEWAY_URL}/auth/login" | sed -E 's/.*"token":"([^"]+)".*/\1/')
+
+# warm up (JIT, connection pools, token cache)
+hey -n 2000 -c "$CONCURRENCY" -H "Authorization: Bearer ${TOKEN}" "${GATEWAY_URL}/api/patients" > /dev/null
+
+out=$(hey -n "$REQUESTS" -c "$CONCURRENCY" -H "Authorization: Bearer ${TOKEN}" "${GATEWAY_URL}/api/patients")
+rps=$(echo "$out" | awk '/Requests\/sec/ {print $2}')
+p99=$(echo "$out" | awk '/99% in/ {print $3}')
+non200=$(echo "$out" | awk '/\[[0-9]+\]/ && !/\[200\]/ {sum += $2} END {print sum + 0}')
+
+printf '%-8s %10.0f req/s   p99 %8.1f ms   non-200: %d\n' "$LABEL" "$rps" "$(echo "$p99 * 1000" | bc -l)" "$non200"
@@ -0,0 +1,78 @@
+#!/usr/bin/env bash
+# Replays patient list reads through the gateway and counts what they cost: response bytes and backend calls.
+# A few clients page through the first PAGES pages ROUNDS times, one patient is created halfway (new ETag).
+# With CONDITIONAL=true the clients remember the ETag of every page and send it back as If-None-Match, like a browser.
+# Backend calls are read from the gateway's X-Gateway-Cache header (miss / revalidated = patient-service was called,
+# hit = answered by the gateway, no header = no ConditionalResponseCache on the route, so also a backend call).
+# Compare, restarting the gateway in between (PATIENT_RATE_LIMIT=100000 so nothing is a 429):
+#   PATIENT_RESPONSE_CACHE_TTL=0s, CONDITIONAL=false ./patient-read-replay.sh  -> every read hits patient-service
+#   PATIENT_RESPONSE_CACHE_TTL=0s, CONDITIONAL=true  ./patient-read-replay.sh  -> revalidation only, 304s
+#   PATIENT_RESPONSE_CACHE_TTL=5s, CONDITIONAL=true  ./patient-read-replay.sh  -> gateway cache + 304s
+# Cursor pages (?cursor=) go through the same filter, PATH_QUERY switches the replay to them.
+set -euo pipefail
+
+GATEWAY_URL=${GATEWAY_URL:-http://localhost:4004}
+CLIENTS=${CLIENTS:-5}
+PAGES=${PAGES:-10}
+ROUNDS=${ROUNDS:-20}
+SIZE=${SIZE:-10}
+CONDITIONAL=${CONDITIONAL:-true}
+PATH_QUERY=${PATH_QUERY:-"/api/patients?size=${SIZE}&page="}
+
+TOKEN=$(curl -sS --fail -H 'Content-Type: application/json' \
+  -d '{"email":"testuser@test.com","password":"password123"}' \
+  "${GATEWAY_URL}/auth/login" | sed -E 's/.*"token":"([^"]+)".*/\1/')
+
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+headers="$work/headers"
+
+requests=0; ok=0; not_modified=0; other=0; bytes=0; backend=0
+
+read_page() {
+  local client=$1 page=$2
+  local etag_file="$work/etag-${client}-${page}"
+  local conditional=()
+  if [[ "$CONDITIONAL" == "true" && -s "$etag_file" ]]; then
+    conditional=(-H "If-None-Match: $(cat "$etag_file")")
+  fi
+
+  local result status size
+  result=$(curl -sS -o /dev/null -D "$headers" -w '%{http_code} %{size_download}' \
+    -H "Authorization: Bearer ${TOKEN}" "${conditional[@]}" "${GATEWAY_URL}${PATH_QUERY}${page}")
+  status=${result% *}
+  size=${result#* }
+
+  requests=$((requests + 1))
+  bytes=$((bytes + size))
+  case "$status" in
+    200) ok=$((ok + 1)) ;;
+    304) not_modified=$((not_modified + 1)) ;;
+    *) other=$((other + 1)) ;;
+  esac
+
+  local cache etag
+  cache=$(tr -d '\r' < "$headers" | awk -F': ' 'tolower($1) == "x-gateway-cache" {print $2}')
+  [[ "$cache" == "hit" ]] || backend=$((backend + 1))
+  etag=$(tr -d '\r' < "$headers" | awk -F': ' 'tolower($1) == "etag" {print $2}')
+  [[ -z "$etag" ]] || printf '%s' "$etag" > "$etag_file"
+}
+
+start=$(date +%s.%N)
+for round in $(seq 1 "$ROUNDS"); do
+  if [[ "$round" -eq $((ROUNDS / 2 + 1)) ]]; then
+    curl -sS --fail -o /dev/null -H "Authorization: Bearer ${TOKEN}" -H 'Content-Type: application/json' \
+      -d "{\"name\":\"Replay Patient\",\"email\":\"replay.$(date +%s%N)@example.com\",\"address\":\"1 Replay St\",\"dateOfBirth\":\"1990-01-01\",\"registeredDate\":\"2024-01-01\"}" \
+      "${GATEWAY_URL}/api/patients"
+  fi
+  for client in $(seq 1 "$CLIENTS"); do
+    for page in $(seq 1 "$PAGES"); do
+      read_page "$client" "$page"
+    done
+  done
+done
+elapsed=$(echo "$(date +%s.%N) - $start" | bc -l)
+
+printf 'requests %d (200: %d, 304: %d, other: %d) in %.1fs\n' "$requests" "$ok" "$not_modified" "$other" "$elapsed"
+printf 'response bytes %d (%.0f per request)\n' "$bytes" "$(echo "$bytes / $requests" | bc -l)"
+printf 'backend calls  %d (%.0f%% of requests)\n' "$backend" "$(echo "100 * $backend / $requests" | bc -l)"
@@ -0,0 +1,22 @@
+#!/usr/bin/env bash
+# Appointments by date range benchmark, end to end (PostgreSQL -> appointment-service -> client).
+# Seed the busy day first with appointments-by-date-range.sql, then run this once against the old build
+# and once against the new one.
+# Query count: start appointment-service with SPRING_JPA_PROPERTIES_HIBERNATE_GENERATE_STATISTICS=true,
+# Hibernate then logs "... JDBC statements executed" for every request (20001 before, 1 after).
+set -euo pipefail
+
+BASE_URL=${BASE_URL:-http://localhost:4006}
+RUNS=${RUNS:-10}
+URL="${BASE_URL}/appointments?from=2026-03-02T00:00:00&to=2026-03-02T23:59:59"
+
+# first request warms up the JVM and the connection pool, it isn't counted
+curl -sS --fail -o /dev/null "$URL"
+
+total=0
+for ((run = 1; run <= RUNS; run++)); do
+  read -r seconds bytes < <(curl -sS --fail -o /dev/null -w '%{time_total} %{size_download}\n' "$URL")
+  total=$(echo "$total + $seconds" | bc -l)
+  printf 'run %2d  %8.3fs  %10d bytes\n' "$run" "$seconds" "$bytes"
+done
+printf 'average %8.3fs over %d runs\n' "$(echo "$total / $RUNS" | bc -l)" "$RUNS"
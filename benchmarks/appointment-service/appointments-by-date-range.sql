@@ -0,0 +1,48 @@
+-- Appointments by date range benchmark (PostgreSQL, psql)
+-- Seeds one busy day (2026-03-02) with 20k appointments for 5k patients, then compares the old N+1 access
+-- (range query + one cached_patient lookup per appointment) with the single join used by
+-- AppointmentRepository.findResponsesByStartTimeBetween.
+-- Run against a throwaway database: psql -h localhost -U admin_user -d db -f appointments-by-date-range.sql
+-- End to end latency through the service: appointments-by-date-range.sh
+
+\timing on
+
+-- 5k patients, the last 250 are not cached yet -> "Unknown"
+INSERT INTO cached_patient (id, full_name, email, updated_at)
+SELECT md5('benchmark-patient-' || i)::uuid,
+       'Benchmark Patient ' || i,
+       'benchmark.patient.' || i || '@example.com',
+       TIMESTAMP '2026-01-01 00:00:00'
+FROM generate_series(0, 4749) AS i
+ON CONFLICT DO NOTHING;
+
+-- 20k appointments between 07:00 and 18:00, 4 per patient
+INSERT INTO appointment (id, patient_id, start_time, end_time, reason, version)
+SELECT gen_random_uuid(),
+       md5('benchmark-patient-' || (i % 5000))::uuid,
+       TIMESTAMP '2026-03-02 07:00:00' + i * INTERVAL '2 seconds',
+       TIMESTAMP '2026-03-02 07:30:00' + i * INTERVAL '2 seconds',
+       'Benchmark appointment ' || i,
+       0
+FROM generate_series(0, 19999) AS i
+ON CONFLICT DO NOTHING;
+
+ANALYZE cached_patient;
+ANALYZE appointment;
+
+-- BEFORE: findByStartTimeBetween ...
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM appointment a
+WHERE a.start_time BETWEEN TIMESTAMP '2026-03-02 00:00:00' AND TIMESTAMP '2026-03-02 23:59:59';
+
+-- ... then this once per appointment (20k round trips), the cost is the round trips, not the lookup itself
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM cached_patient cp WHERE cp.id = md5('benchmark-patient-42')::uuid;
+
+-- AFTER: one query, the names come with the rows
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT a.id, a.patient_id, coalesce(cp.full_name, 'Unknown'), a.start_time, a.end_time, a.reason, a.version
+FROM appointment a
+         LEFT JOIN cached_patient cp ON cp.id = a.patient_id
+WHERE a.start_time BETWEEN TIMESTAMP '2026-03-02 00:00:00' AND TIMESTAMP '2026-03-02 23:59:59'
+ORDER BY a.start_time, a.id;
@@ -0,0 +1,46 @@
+#!/usr/bin/env bash
+# Patient event backfill benchmark for appointment-service's Kafka consumer, reports events/second.
+# Builds a backlog of patient.created events first, then measures how fast the consumer group drains it.
+#   1. stop appointment-service (docker stop appointment-service)
+#   2. ./patient-events-backfill.sh import         # imports COUNT patients -> COUNT patient.created events
+#   3. start appointment-service and right away:  ./patient-events-backfill.sh drain
+# Run drain once on the old single-record listener and once on the batch listener to compare.
+set -euo pipefail
+
+PATIENT_URL=${PATIENT_URL:-http://localhost:4000}
+COUNT=${COUNT:-100000}
+KAFKA_CONTAINER=${KAFKA_CONTAINER:-kafka}
+BOOTSTRAP=${BOOTSTRAP:-localhost:9092}
+GROUP=${GROUP:-appointment-service}
+
+lag() {
+  docker exec "$KAFKA_CONTAINER" /opt/kafka/bin/kafka-consumer-groups.sh --bootstrap-server "$BOOTSTRAP" \
+    --describe --group "$GROUP" 2>/dev/null \
+    | awk '$2 ~ /^patient\.(created|updated)$/ && $6 ~ /^[0-9]+$/ { sum += $6 } END { print sum + 0 }'
+}
+
+case "${1:-}" in
+  import)
+    run=$(date +%s)
+    # emails have to be unique, the run id keeps repeated runs apart
+    seq 1 "$COUNT" | awk -v run="$run" '{ printf "{\"name\":\"Backfill %d\",\"email\":\"backfill.%s.%d@example.com\",\"address\":\"%d Main St\",\"dateOfBirth\":\"1985-06-15\",\"registeredDate\":\"2024-01-10\"}\n", $1, run, $1, $1 }' \
+      | curl -sS --fail -X POST -H "Content-Type: application/x-ndjson" --data-binary @- "${PATIENT_URL}/patients/import" \
+      | head -c 300
+    echo
+    ;;
+  drain)
+    start_lag=$(lag)
+    start=$(date +%s.%N)
+    echo "lag at start: ${start_lag}"
+    while [[ "$(lag)" -gt 0 ]]; do
+      sleep 1
+    done
+    end=$(date +%s.%N)
+    seconds=$(echo "$end - $start" | bc -l)
+    printf '%10d events  %8.2fs  %10.0f events/s\n' "$start_lag" "$seconds" "$(echo "$start_lag / $seconds" | bc -l)"
+    ;;
+  *)
+    echo "usage: $0 import|drain" >&2
+    exit 1
+    ;;
+esac
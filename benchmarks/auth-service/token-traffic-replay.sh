@@ -0,0 +1,86 @@
+#!/usr/bin/env bash
+# Replays staff traffic through the gateway and counts how many requests reach auth-service.
+#   before: gateway with JWT_LOCAL_VERIFICATION=false -> one /validate per patient request
+#   after:  gateway verifying locally                   -> only /login and one /refresh per access token lifetime
+# auth-service has to write an access log and the shift is compressed by SPEEDUP, so shorten the access token too:
+#   SERVER_TOMCAT_ACCESSLOG_ENABLED=true SERVER_TOMCAT_ACCESSLOG_DIRECTORY=/tmp/auth-access \
+#   JWT_ACCESS_TOKEN_TTL=15s (= 15m / SPEEDUP 60)
+# Gateway with PATIENT_RATE_LIMIT raised (see benchmarks/api-gateway/jwt-validation.sh), then:
+#   TRAFFIC=recorded.txt ./token-traffic-replay.sh    # lines "<seconds since start> <client>", e.g. cut from a gateway log
+#   ./token-traffic-replay.sh                         # synthetic: CLIENTS staff, one request every INTERVAL s for DURATION s
+set -euo pipefail
+
+GATEWAY_URL=${GATEWAY_URL:-http://localhost:4004}
+ACCESS_LOG_DIR=${ACCESS_LOG_DIR:-/tmp/auth-access}
+SPEEDUP=${SPEEDUP:-60}
+CLIENTS=${CLIENTS:-20}
+INTERVAL=${INTERVAL:-10}
+DURATION=${DURATION:-3600}
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+TRAFFIC=${TRAFFIC:-$WORK/traffic.txt}
+if [[ ! -f "$TRAFFIC" ]]; then
+  for ((client = 1; client <= CLIENTS; client++)); do
+    # every client starts at a different second so the requests are spread out
+    for ((t = client % INTERVAL; t < DURATION; t += INTERVAL)); do
+      echo "$t $client"
+    done
+  done | sort -n > "$TRAFFIC"
+fi
+
+json_field() {
+  sed -nE "s/.*\"$1\":\"([^\"]+)\".*/\1/p"
+}
+
+login() {
+  curl -sS -H 'Content-Type: application/json' \
+    -d '{"email":"testuser@test.com","password":"password123"}' "${GATEWAY_URL}/auth/login" > "$WORK/$1.json"
+}
+
+refresh() {
+  local refresh_token
+  refresh_token=$(json_field refreshToken < "$WORK/$1.json")
+  curl -sS --fail -H 'Content-Type: application/json' \
+    -d "{\"refreshToken\":\"${refresh_token}\"}" "${GATEWAY_URL}/auth/refresh" > "$WORK/$1.next" \
+    && mv "$WORK/$1.next" "$WORK/$1.json"
+}
+
+patient_request() {
+  curl -sS -o /dev/null -w '%{http_code}' \
+    -H "Authorization: Bearer $(json_field token < "$WORK/$1.json")" "${GATEWAY_URL}/api/patients"
+}
+
+# one loop per client, its requests in order -> a client never refreshes twice at the same time
+replay_client() {
+  local client=$1 start=$2 offset status
+  login "$client"
+  awk -v c="$client" '$2 == c {print $1}' "$TRAFFIC" | while read -r offset; do
+    sleep "$(echo "$start + $offset / $SPEEDUP - $(date +%s.%N)" | bc -l | sed 's/^-.*/0/')"
+    status=$(patient_request "$client")
+    if [[ "$status" == "401" ]]; then
+      refresh "$client" || login "$client"
+      status=$(patient_request "$client")
+    fi
+    echo "$status" >> "$WORK/status.txt"
+  done
+}
+
+count_auth_requests() {
+  cat "$ACCESS_LOG_DIR"/*.log 2>/dev/null | awk '{print $7}' | sed 's/?.*//' | sort | uniq -c
+}
+
+count_auth_requests > "$WORK/before.txt"
+start=$(date +%s.%N)
+while read -r client; do
+  replay_client "$client" "$start" &
+done < <(awk '{print $2}' "$TRAFFIC" | sort -u)
+wait
+sleep 2 # the access log is written asynchronously
+count_auth_requests > "$WORK/after.txt"
+
+echo "patient requests: $(wc -l < "$WORK/status.txt") ($(grep -cv '^200$' "$WORK/status.txt" || true) not 200)"
+echo "auth-service requests during the replay:"
+# per path: count after - count before
+join -1 2 -2 2 -a 1 -e 0 -o 0,1.1,2.1 <(sort -k2 "$WORK/after.txt") <(sort -k2 "$WORK/before.txt") \
+  | awk '{printf "  %-12s %8d\n", $1, $2 - $3; total += $2 - $3} END {printf "  %-12s %8d\n", "total", total}'
@@ -0,0 +1,27 @@
+#!/usr/bin/env bash
+# Patient export benchmark, end to end (PostgreSQL -> patient-service -> client), reports rows/second.
+# Seed the table first (patient-search.sql adds 1M patients, or change generate_series for 10M), then:
+#   ./patient-export.sh                                  # direct to patient-service
+#   BASE_URL=http://localhost:4004/api TOKEN=... ./patient-export.sh   # through the gateway
+# Watch the patient-service heap while it runs (e.g. /actuator/metrics/jvm.memory.used), it should stay flat.
+set -euo pipefail
+
+BASE_URL=${BASE_URL:-http://localhost:4000}
+AUTH=()
+if [[ -n "${TOKEN:-}" ]]; then
+  AUTH=(-H "Authorization: Bearer ${TOKEN}")
+fi
+
+for format in ndjson csv; do
+  start=$(date +%s.%N)
+  # count lines as they stream in, nothing is written to disk
+  lines=$(curl -sS --fail "${AUTH[@]}" "${BASE_URL}/patients/export?format=${format}" | wc -l)
+  end=$(date +%s.%N)
+
+  rows=$lines
+  if [[ "$format" == "csv" ]]; then
+    rows=$((lines - 1)) # header
+  fi
+  seconds=$(echo "$end - $start" | bc -l)
+  printf '%-6s %10d rows  %8.2fs  %10.0f rows/s\n' "$format" "$rows" "$seconds" "$(echo "$rows / $seconds" | bc -l)"
+done
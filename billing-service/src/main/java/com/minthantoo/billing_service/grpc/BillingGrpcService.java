@@ -1,27 +1,63 @@
 package com.minthantoo.billing_service.grpc;
 
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc.BillingServiceImplBase;
+import com.minthantoo.billing_service.model.BillingAccount;
+import com.minthantoo.billing_service.service.BillingAccountService;
 import io.grpc.stub.StreamObserver;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 @GrpcService
 public class BillingGrpcService extends BillingServiceImplBase {
     private static final Logger log = LoggerFactory.getLogger(BillingGrpcService.class);
 
+    private final BillingAccountService billingAccountService;
+
+    public BillingGrpcService(BillingAccountService billingAccountService) {
+        this.billingAccountService = billingAccountService;
+    }
+
     @Override
     public void createBillingAccount(billing.BillingRequest billingRequest, StreamObserver<BillingResponse> responseObserver) {
         log.info("createBillingAccount request received {}", billingRequest.toString());
 
-        // Business logic - e.g save to database, perform calculation etc
-        BillingResponse response = BillingResponse.newBuilder()
-                .setAccountId("12345")
-                .setStatus("ACTIVE")
-                .build();
+        // a repeated request for the same patient gets the account that already exists
+        BillingAccount account = billingAccountService.createAccount(
+                billingRequest.getPatientId(), billingRequest.getName(), billingRequest.getEmail());
 
-        responseObserver.onNext(response); // send response
+        responseObserver.onNext(toResponse(account)); // send response
         responseObserver.onCompleted();    // mark as done
     }
+
+    // one round trip for many accounts, responses are in the same order as the requests
+    @Override
+    public void createBillingAccounts(BillingBatchRequest batchRequest, StreamObserver<BillingBatchResponse> responseObserver) {
+        log.info("createBillingAccounts request received for {} accounts", batchRequest.getRequestsCount());
+
+        List<BillingAccount> accounts = billingAccountService.createAccounts(batchRequest.getRequestsList().stream()
+                .map(request -> new BillingAccountService.AccountRequest(request.getPatientId(), request.getName(), request.getEmail()))
+                .toList());
+
+        BillingBatchResponse.Builder response = BillingBatchResponse.newBuilder();
+        for (BillingAccount account : accounts) {
+            response.addResponses(toResponse(account));
+        }
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+    }
+
+    private static BillingResponse toResponse(BillingAccount account) {
+        return BillingResponse.newBuilder()
+                .setAccountId(account.accountId().toString())
+                .setStatus(account.status())
+                .setPatientId(account.patientId())
+                .build();
+    }
 }
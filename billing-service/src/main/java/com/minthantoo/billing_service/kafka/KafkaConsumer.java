@@ -2,25 +2,46 @@ package com.minthantoo.billing_service.kafka;
 
 import billing.events.BillingAccountEvent;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.minthantoo.billing_service.service.BillingAccountService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 public class KafkaConsumer {
     private static final Logger log = LoggerFactory.getLogger(KafkaConsumer.class);
 
-    @KafkaListener(topics = "billing-account", groupId = "billing-service") // used service name as groupId
-    public void consumeEvent(byte[] event) {
-        try {
-            BillingAccountEvent billingAccountEvent = BillingAccountEvent.parseFrom(event);
-            log.info("Received billing account event: [PatientId={}, PatientName={}, PatientEmail={}]",
-                    billingAccountEvent.getPatientId(),
-                    billingAccountEvent.getName(),
-                    billingAccountEvent.getEmail());
-        } catch(InvalidProtocolBufferException e) {
-            log.error("Error parsing billing account event {}", e.getMessage());
+    private final BillingAccountService billingAccountService;
+
+    public KafkaConsumer(BillingAccountService billingAccountService) {
+        this.billingAccountService = billingAccountService;
+    }
+
+    // events come from patient-service's fallback when the gRPC call failed, so they can be replays of
+    // accounts that were created in the meantime -> createAccounts is idempotent.
+    // Batch listener -> one insert batch + one select per poll instead of per event.
+    // If the database is down the exception goes back to the container and the whole poll is retried.
+    @KafkaListener(topics = "billing-account", groupId = "billing-service", batch = "true") // used service name as groupId
+    public void consumeEvents(List<byte[]> events) {
+        List<BillingAccountService.AccountRequest> requests = new ArrayList<>(events.size());
+        for (byte[] event : events) {
+            try {
+                BillingAccountEvent billingAccountEvent = BillingAccountEvent.parseFrom(event);
+                log.info("Received billing account event: [PatientId={}, PatientName={}, PatientEmail={}]",
+                        billingAccountEvent.getPatientId(),
+                        billingAccountEvent.getName(),
+                        billingAccountEvent.getEmail());
+                requests.add(new BillingAccountService.AccountRequest(
+                        billingAccountEvent.getPatientId(), billingAccountEvent.getName(), billingAccountEvent.getEmail()));
+            } catch (InvalidProtocolBufferException e) {
+                log.error("Error parsing billing account event {}", e.getMessage());
+            }
         }
+
+        billingAccountService.createAccounts(requests);
     }
 }
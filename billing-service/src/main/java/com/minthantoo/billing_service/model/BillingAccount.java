@@ -0,0 +1,14 @@
+package com.minthantoo.billing_service.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// One billing account per patient, patientId is the primary key of billing_account
+public record BillingAccount(String patientId,
+                             UUID accountId,
+                             String name,
+                             String email,
+                             String status,
+                             Instant createdAt) {
+    public static final String STATUS_ACTIVE = "ACTIVE";
+}
@@ -0,0 +1,66 @@
+package com.minthantoo.billing_service.repository;
+
+import com.minthantoo.billing_service.model.BillingAccount;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+// Plain JDBC on purpose -> the insert needs ON CONFLICT, which JPA can't express
+@Repository
+public class BillingAccountRepository {
+    // the primary key on patient_id decides who wins, concurrent inserts of the same patient don't fail,
+    // the losers just insert nothing (works on PostgreSQL and on H2 in PostgreSQL mode)
+    private static final String INSERT_IF_ABSENT = """
+            INSERT INTO billing_account (patient_id, account_id, name, email, status, created_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String FIND_BY_PATIENT_IDS = """
+            SELECT patient_id, account_id, name, email, status, created_at
+            FROM billing_account
+            WHERE patient_id IN (:patientIds)
+            """;
+
+    private static final RowMapper<BillingAccount> ROW_MAPPER = (rs, rowNum) -> new BillingAccount(
+            rs.getString("patient_id"),
+            rs.getObject("account_id", UUID.class),
+            rs.getString("name"),
+            rs.getString("email"),
+            rs.getString("status"),
+            rs.getTimestamp("created_at").toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public BillingAccountRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    // one round trip for the whole list, rows whose patient already has an account are skipped by the database
+    public void insertIfAbsent(List<BillingAccount> accounts) {
+        jdbcTemplate.batchUpdate(INSERT_IF_ABSENT, accounts, accounts.size(), (statement, account) -> {
+            statement.setString(1, account.patientId());
+            statement.setObject(2, account.accountId());
+            statement.setString(3, account.name());
+            statement.setString(4, account.email());
+            statement.setString(5, account.status());
+            statement.setTimestamp(6, Timestamp.from(account.createdAt()));
+        });
+    }
+
+    public List<BillingAccount> findByPatientIds(Collection<String> patientIds) {
+        if (patientIds.isEmpty()) {
+            return List.of();
+        }
+        return namedJdbcTemplate.query(FIND_BY_PATIENT_IDS, new MapSqlParameterSource("patientIds", patientIds), ROW_MAPPER);
+    }
+}
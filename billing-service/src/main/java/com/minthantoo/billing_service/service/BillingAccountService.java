@@ -0,0 +1,79 @@
+package com.minthantoo.billing_service.service;
+
+import com.minthantoo.billing_service.model.BillingAccount;
+import com.minthantoo.billing_service.repository.BillingAccountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Idempotent account creation, shared by the gRPC service and the Kafka consumer.
+// patient-service can ask for the same patient more than once (gRPC retries, fallback replays through Kafka,
+// at-least-once delivery), so creating an account that already exists just returns the existing one.
+// No "check then insert" -> insert with ON CONFLICT DO NOTHING, then read the rows back.
+// Whoever inserted first wins, everybody else (including a concurrent request on another instance) gets the same account.
+@Service
+public class BillingAccountService {
+    private static final Logger log = LoggerFactory.getLogger(BillingAccountService.class);
+
+    public record AccountRequest(String patientId, String name, String email) {}
+
+    private final BillingAccountRepository billingAccountRepository;
+
+    public BillingAccountService(BillingAccountRepository billingAccountRepository) {
+        this.billingAccountRepository = billingAccountRepository;
+    }
+
+    public BillingAccount createAccount(String patientId, String name, String email) {
+        return createAccounts(List.of(new AccountRequest(patientId, name, email))).get(0);
+    }
+
+    // one insert batch + one select for the whole list, accounts are returned in the same order as the requests
+    public List<BillingAccount> createAccounts(List<AccountRequest> requests) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+
+        // the same patient twice in one batch -> insert once, the first request's name/email wins
+        Instant now = Instant.now();
+        Map<String, BillingAccount> candidates = new LinkedHashMap<>();
+        for (AccountRequest request : requests) {
+            candidates.computeIfAbsent(request.patientId(), patientId -> new BillingAccount(
+                    patientId, UUID.randomUUID(), request.name(), request.email(), BillingAccount.STATUS_ACTIVE, now));
+        }
+
+        billingAccountRepository.insertIfAbsent(new ArrayList<>(candidates.values()));
+
+        Map<String, BillingAccount> stored = new LinkedHashMap<>();
+        for (BillingAccount account : billingAccountRepository.findByPatientIds(candidates.keySet())) {
+            stored.put(account.patientId(), account);
+        }
+
+        // our account id came back -> we created it, a different one -> the account already existed
+        int created = 0;
+        List<BillingAccount> accounts = new ArrayList<>(requests.size());
+        for (AccountRequest request : requests) {
+            BillingAccount account = stored.get(request.patientId());
+            if (account == null) {
+                // only possible if the row was deleted between our insert and select
+                throw new IllegalStateException("Billing account for patient " + request.patientId() + " disappeared");
+            }
+            accounts.add(account);
+        }
+        for (BillingAccount candidate : candidates.values()) {
+            if (candidate.accountId().equals(stored.get(candidate.patientId()).accountId())) {
+                created++;
+            }
+        }
+
+        log.info("Billing accounts requested: {}, created: {}, already existed: {}",
+                requests.size(), created, candidates.size() - created);
+        return accounts;
+    }
+}
@@ -0,0 +1,10 @@
+-- One account per patient, the primary key is what makes account creation idempotent (see BillingAccountService)
+CREATE TABLE IF NOT EXISTS billing_account
+(
+    patient_id VARCHAR(255) PRIMARY KEY,
+    account_id UUID UNIQUE              NOT NULL,
+    name       VARCHAR(255)             NOT NULL,
+    email      VARCHAR(255)             NOT NULL,
+    status     VARCHAR(32)              NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,112 @@
+package com.minthantoo.billing_service.benchmark;
+
+import com.minthantoo.billing_service.model.BillingAccount;
+import com.minthantoo.billing_service.repository.BillingAccountRepository;
+import com.minthantoo.billing_service.service.BillingAccountService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Account creation throughput in accounts/second with replay traffic, where most requests are for patients
+// that already have an account (gRPC retries + fallback events replayed from Kafka).
+// Several threads hit the same hot patients at the same time, so the ON CONFLICT path is exercised concurrently.
+// single -> one createAccount per request (gRPC CreateBillingAccount), batch -> createAccounts per BATCH requests
+// (CreateBillingAccounts / one Kafka poll).
+// Runs against an in-memory H2 in PostgreSQL mode, so absolute numbers are only comparable between the params.
+// Run main() from the IDE, or: mvn test-compile, then run this class with the test classpath.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class BillingAccountStoreBenchmark {
+    private static final int EXISTING_ACCOUNTS = 10_000;
+    private static final int BATCH = 100;
+
+    @Param({"single", "batch"})
+    public String mode;
+
+    // share of requests for patients that already have an account
+    @Param({"0.0", "0.9"})
+    public double duplicateRatio;
+
+    private HikariDataSource dataSource;
+    private BillingAccountService billingAccountService;
+    private String[] existingPatientIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:billing-benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(8);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("DELETE FROM billing_account");
+        billingAccountService = new BillingAccountService(new BillingAccountRepository(jdbcTemplate));
+
+        existingPatientIds = new String[EXISTING_ACCOUNTS];
+        List<BillingAccountService.AccountRequest> requests = new ArrayList<>(EXISTING_ACCOUNTS);
+        for (int i = 0; i < EXISTING_ACCOUNTS; i++) {
+            existingPatientIds[i] = UUID.randomUUID().toString();
+            requests.add(request(existingPatientIds[i]));
+        }
+        billingAccountService.createAccounts(requests);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    // one operation = one account request
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object createAccounts() {
+        List<BillingAccountService.AccountRequest> requests = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            requests.add(request(nextPatientId()));
+        }
+
+        if (mode.equals("batch")) {
+            return billingAccountService.createAccounts(requests);
+        }
+
+        BillingAccount last = null;
+        for (BillingAccountService.AccountRequest request : requests) {
+            last = billingAccountService.createAccount(request.patientId(), request.name(), request.email());
+        }
+        return last;
+    }
+
+    private String nextPatientId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < duplicateRatio) {
+            return existingPatientIds[random.nextInt(existingPatientIds.length)];
+        }
+        return UUID.randomUUID().toString();
+    }
+
+    private static BillingAccountService.AccountRequest request(String patientId) {
+        return new BillingAccountService.AccountRequest(patientId, "Patient " + patientId, patientId + "@example.com");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BillingAccountStoreBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
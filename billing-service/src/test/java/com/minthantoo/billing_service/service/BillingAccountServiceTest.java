@@ -0,0 +1,154 @@
+package com.minthantoo.billing_service.service;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.events.BillingAccountEvent;
+import com.minthantoo.billing_service.grpc.BillingGrpcService;
+import com.minthantoo.billing_service.kafka.KafkaConsumer;
+import com.minthantoo.billing_service.model.BillingAccount;
+import com.minthantoo.billing_service.repository.BillingAccountRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Insert-if-absent account creation against H2 in PostgreSQL mode (same schema.sql and ON CONFLICT as in production).
+class BillingAccountServiceTest {
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private BillingAccountService service;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:billing-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(16);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        service = new BillingAccountService(new BillingAccountRepository(jdbcTemplate));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void secondRequestForThePatientGetsTheExistingAccount() {
+        BillingAccount first = service.createAccount("patient-1", "John Doe", "john@example.com");
+        BillingAccount second = service.createAccount("patient-1", "Johnny", "johnny@example.com");
+
+        assertEquals(first, second);
+        assertEquals("John Doe", second.name());
+        assertEquals(1, rows("patient-1"));
+    }
+
+    @Test
+    void duplicatesInOneBatchCreateOneAccount() {
+        BillingAccount existing = service.createAccount("patient-0", "Jane Roe", "jane@example.com");
+
+        List<BillingAccount> accounts = service.createAccounts(List.of(
+                new BillingAccountService.AccountRequest("patient-1", "John Doe", "john@example.com"),
+                new BillingAccountService.AccountRequest("patient-0", "Jane Roe", "jane@example.com"),
+                new BillingAccountService.AccountRequest("patient-1", "Johnny", "johnny@example.com")));
+
+        // same order as the requests, the first request of a patient wins
+        assertEquals(List.of("patient-1", "patient-0", "patient-1"), accounts.stream().map(BillingAccount::patientId).toList());
+        assertEquals(existing, accounts.get(1));
+        assertEquals(accounts.get(0), accounts.get(2));
+        assertEquals("John Doe", accounts.get(2).name());
+        assertNotEquals(existing.accountId(), accounts.get(0).accountId());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing_account", Integer.class));
+    }
+
+    @Test
+    void grpcAndKafkaRacingOnTheSamePatientCreateOneAccount() {
+        BillingGrpcService grpcService = new BillingGrpcService(service);
+        KafkaConsumer kafkaConsumer = new KafkaConsumer(service);
+        BillingRequest grpcRequest = BillingRequest.newBuilder()
+                .setPatientId("patient-1").setName("John Doe").setEmail("john@example.com").build();
+        byte[] event = BillingAccountEvent.newBuilder()
+                .setPatientId("patient-1").setName("John Doe").setEmail("john@example.com").build().toByteArray();
+
+        // 10 gRPC calls (a client retrying) and 10 replayed Kafka polls, all released at once
+        int callers = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<BillingResponse>> grpcResponses = new ArrayList<>();
+        List<CompletableFuture<Void>> kafkaPolls = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers / 2; i++) {
+                CompletableFuture<BillingResponse> response = new CompletableFuture<>();
+                grpcResponses.add(response);
+                CompletableFuture.runAsync(() -> {
+                    await(start);
+                    grpcService.createBillingAccount(grpcRequest, new StreamObserver<>() {
+                        @Override
+                        public void onNext(BillingResponse value) {
+                            response.complete(value);
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            response.completeExceptionally(t);
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                        }
+                    });
+                }, executor).whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        response.completeExceptionally(e);
+                    }
+                });
+                kafkaPolls.add(CompletableFuture.runAsync(() -> {
+                    await(start);
+                    kafkaConsumer.consumeEvents(List.of(event, event));
+                }, executor));
+            }
+            start.countDown();
+
+            kafkaPolls.forEach(CompletableFuture::join);
+            Set<String> accountIds = grpcResponses.stream()
+                    .map(response -> response.join().getAccountId())
+                    .collect(Collectors.toSet());
+
+            assertEquals(1, rows("patient-1"));
+            String stored = jdbcTemplate.queryForObject(
+                    "SELECT account_id FROM billing_account WHERE patient_id = ?", String.class, "patient-1");
+            assertEquals(Set.of(stored), accountIds);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int rows(String patientId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing_account WHERE patient_id = ?", Integer.class, patientId);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.minthantoo.patient_service.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Redis pub/sub subscriptions that keep the L1 caches of all instances coherent.
+// Not a container bean on purpose -> a bean would be started with the context, and a Redis outage at boot would
+// stop patient-service from starting. Here we subscribe once the app is up and keep retrying while Redis is unreachable.
+// Until then, L1 copies are still bounded by the L1 TTL and the cache generation re-read interval.
+@Component
+public class CacheInvalidationSubscriber {
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationSubscriber.class);
+
+    private final RedisConnectionFactory connectionFactory;
+    private final TwoLevelCacheManager cacheManager;
+    private final PatientCacheVersion patientCacheVersion;
+    private final Duration retryInterval;
+    private volatile RedisMessageListenerContainer container;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-invalidation-subscriber");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CacheInvalidationSubscriber(RedisConnectionFactory connectionFactory,
+                                       TwoLevelCacheManager cacheManager,
+                                       PatientCacheVersion patientCacheVersion,
+                                       @Value("${patients.cache.subscribe-retry:10s}") Duration retryInterval) {
+        this.connectionFactory = connectionFactory;
+        this.cacheManager = cacheManager;
+        this.patientCacheVersion = patientCacheVersion;
+        this.retryInterval = retryInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        scheduler.execute(this::tryStart);
+    }
+
+    private void tryStart() {
+        // a container that failed to subscribe is thrown away, every attempt starts from a clean one
+        RedisMessageListenerContainer attempt = newContainer();
+        try {
+            attempt.start();
+            container = attempt;
+            log.info("Subscribed to cache invalidation channels");
+        } catch (Exception e) {
+            log.warn("Could not subscribe to cache invalidation channels, retrying in {}: {}", retryInterval, e.getMessage());
+            destroyQuietly(attempt);
+            scheduler.schedule(this::tryStart, retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private RedisMessageListenerContainer newContainer() {
+        RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.addMessageListener(
+                (message, pattern) -> cacheManager.onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(TwoLevelCacheManager.INVALIDATION_CHANNEL));
+        listenerContainer.addMessageListener(
+                (message, pattern) -> patientCacheVersion.onVersionMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(PatientCacheVersion.VERSION_CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        return listenerContainer;
+    }
+
+    private void destroyQuietly(RedisMessageListenerContainer listenerContainer) {
+        try {
+            listenerContainer.destroy();
+        } catch (Exception e) {
+            log.debug("Error while closing cache invalidation listener container: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        if (container != null) {
+            destroyQuietly(container);
+        }
+    }
+}
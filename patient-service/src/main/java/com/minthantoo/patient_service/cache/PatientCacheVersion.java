@@ -0,0 +1,108 @@
+package com.minthantoo.patient_service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Generation stamp for the "patients" cache.
+// Every cached page key starts with the current generation, e.g. "7-1-10-asc-name".
+// A write (create/update/delete) bumps the generation -> all old pages are simply never looked up again
+// and expire by TTL on their own, so we don't have to find and delete every page key that might contain the patient.
+// The counter lives in Redis so every patient-service instance sees the same generation.
+// Each instance keeps a local copy so an L1 cache hit needs no Redis call at all:
+// bumps are broadcast over pub/sub, and the copy is re-read from Redis every refresh interval in case a message was missed.
+// The same generation is the ETag of GET /patients, the time of the bump its Last-Modified.
+@Component
+public class PatientCacheVersion {
+    public static final String VERSION_KEY = "patients::version";
+    public static final String VERSION_AT_KEY = "patients::version-at";
+    public static final String VERSION_CHANNEL = "patients::version";
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final long refreshNanos;
+    private final AtomicReference<Snapshot> local = new AtomicReference<>();
+
+    // changedAt -> epoch millis of the bump, -1 when unknown (nothing was written since Redis was empty)
+    public record Stamp(long version, long changedAt) {}
+
+    private record Snapshot(Stamp stamp, long readAt) {}
+
+    public PatientCacheVersion(StringRedisTemplate redisTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${patients.cache.version-refresh:5s}") Duration refresh) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.refreshNanos = refresh.toNanos();
+    }
+
+    // used in the @Cacheable key of PatientService.getPatients
+    public String current() {
+        return Long.toString(stamp().version());
+    }
+
+    public Stamp stamp() {
+        Snapshot snapshot = local.get();
+        if (snapshot != null && System.nanoTime() - snapshot.readAt() < refreshNanos) {
+            return snapshot.stamp();
+        }
+
+        List<String> stored = redisTemplate.opsForValue().multiGet(List.of(VERSION_KEY, VERSION_AT_KEY));
+        return remember(new Stamp(parse(stored, 0, 0), parse(stored, 1, -1)));
+    }
+
+    // call after the write is committed, otherwise a reader could cache the old data under the new generation
+    public void bump(String reason) {
+        Long version = redisTemplate.opsForValue().increment(VERSION_KEY);
+        if (version != null) {
+            long now = System.currentTimeMillis();
+            // not atomic with the INCR, a reader in between sees the new version with the previous time -> only
+            // Last-Modified is a bit early for that moment, the ETag is what clients and the gateway compare first
+            redisTemplate.opsForValue().set(VERSION_AT_KEY, Long.toString(now));
+            remember(new Stamp(version, now));
+            redisTemplate.convertAndSend(VERSION_CHANNEL, version + ":" + now);
+        }
+        meterRegistry.counter("custom.redis.cache.evict", "cache", "patients", "reason", reason).increment();
+    }
+
+    // pub/sub listener, registered in CacheInvalidationSubscriber.
+    // "version:changedAt", instances that weren't updated yet still publish only "version"
+    public void onVersionMessage(String message) {
+        try {
+            int separator = message.indexOf(':');
+            if (separator < 0) {
+                remember(new Stamp(Long.parseLong(message), -1));
+            } else {
+                remember(new Stamp(Long.parseLong(message.substring(0, separator)),
+                        Long.parseLong(message.substring(separator + 1))));
+            }
+        } catch (NumberFormatException ignored) {
+            // not ours
+        }
+    }
+
+    // messages and Redis reads can arrive out of order, the generation only ever goes up
+    private Stamp remember(Stamp stamp) {
+        long now = System.nanoTime();
+        return local.accumulateAndGet(new Snapshot(stamp, now), (current, fresh) -> {
+            if (current == null || fresh.stamp().version() > current.stamp().version()) {
+                return fresh;
+            }
+            Stamp known = current.stamp();
+            if (fresh.stamp().version() == known.version() && fresh.stamp().changedAt() > known.changedAt()) {
+                known = fresh.stamp();
+            }
+            return new Snapshot(known, now);
+        }).stamp();
+    }
+
+    private static long parse(List<String> values, int index, long fallback) {
+        String value = values == null ? null : values.get(index);
+        return value == null ? fallback : Long.parseLong(value);
+    }
+}
@@ -0,0 +1,154 @@
+package com.minthantoo.patient_service.cache;
+
+import com.google.protobuf.CodedInputStream;
+import com.minthantoo.patient_service.dto.PagedPatientResponseDTO;
+import com.minthantoo.patient_service.dto.PatientResponseDTO;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import patient.cache.PatientCacheEntry;
+import patient.cache.PatientPageCacheEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+// Binary cache value format for patient DTOs, instead of JSON with class names in every object.
+// Layout -> [1 byte type][1 byte codec][protobuf bytes]
+//           codec LZ4 -> [1 byte type][1 byte codec][4 bytes original length][lz4 block]
+// Values smaller than the threshold are not compressed, LZ4 only pays off on bigger pages.
+public class ProtobufPatientRedisSerializer implements RedisSerializer<Object> {
+    private static final byte TYPE_PATIENT = 1;
+    private static final byte TYPE_PATIENT_PAGE = 2;
+
+    private static final byte CODEC_NONE = 0;
+    private static final byte CODEC_LZ4 = 1;
+
+    private static final int HEADER_SIZE = 2;
+
+    private final int compressThreshold;
+    private final LZ4Compressor compressor;
+    private final LZ4FastDecompressor decompressor;
+
+    // compressThreshold in bytes, 0 or less -> never compress
+    public ProtobufPatientRedisSerializer(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.fastDecompressor();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+
+        byte type;
+        byte[] payload;
+        if (value instanceof PagedPatientResponseDTO page) {
+            type = TYPE_PATIENT_PAGE;
+            payload = toProto(page).toByteArray();
+        } else if (value instanceof PatientResponseDTO patient) {
+            type = TYPE_PATIENT;
+            payload = toProto(patient).toByteArray();
+        } else {
+            throw new SerializationException("Cannot serialize " + value.getClass().getName() + " with the protobuf cache serializer");
+        }
+
+        if (compressThreshold > 0 && payload.length >= compressThreshold) {
+            int maxLength = compressor.maxCompressedLength(payload.length);
+            byte[] out = new byte[HEADER_SIZE + Integer.BYTES + maxLength];
+            out[0] = type;
+            out[1] = CODEC_LZ4;
+            ByteBuffer.wrap(out, HEADER_SIZE, Integer.BYTES).putInt(payload.length);
+            int compressedLength = compressor.compress(payload, 0, payload.length, out, HEADER_SIZE + Integer.BYTES, maxLength);
+            return Arrays.copyOf(out, HEADER_SIZE + Integer.BYTES + compressedLength);
+        }
+
+        byte[] out = new byte[HEADER_SIZE + payload.length];
+        out[0] = type;
+        out[1] = CODEC_NONE;
+        System.arraycopy(payload, 0, out, HEADER_SIZE, payload.length);
+        return out;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_SIZE) {
+            throw new SerializationException("Cache value is too short to be a protobuf patient entry");
+        }
+
+        CodedInputStream payload;
+        try {
+            payload = switch (bytes[1]) {
+                // read straight from the Redis bytes, no copy
+                case CODEC_NONE -> CodedInputStream.newInstance(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+                case CODEC_LZ4 -> {
+                    int originalLength = ByteBuffer.wrap(bytes, HEADER_SIZE, Integer.BYTES).getInt();
+                    yield CodedInputStream.newInstance(decompressor.decompress(bytes, HEADER_SIZE + Integer.BYTES, originalLength));
+                }
+                default -> throw new SerializationException("Unknown cache value codec " + bytes[1]);
+            };
+        } catch (LZ4Exception | IndexOutOfBoundsException e) {
+            throw new SerializationException("Could not decompress patient cache entry", e);
+        }
+
+        try {
+            return switch (bytes[0]) {
+                case TYPE_PATIENT_PAGE -> toDTO(PatientPageCacheEntry.parseFrom(payload));
+                case TYPE_PATIENT -> toDTO(PatientCacheEntry.parseFrom(payload));
+                default -> throw new SerializationException("Unknown cache value type " + bytes[0]);
+            };
+        } catch (IOException e) {
+            throw new SerializationException("Could not read protobuf patient cache entry", e);
+        }
+    }
+
+    private static PatientPageCacheEntry toProto(PagedPatientResponseDTO page) {
+        PatientPageCacheEntry.Builder builder = PatientPageCacheEntry.newBuilder()
+                .setPage(page.getPage())
+                .setSize(page.getSize())
+                .setTotalPages(page.getTotalPages())
+                .setTotalElements(page.getTotalElements());
+        if (page.getPatients() != null) {
+            page.getPatients().forEach(patient -> builder.addPatients(toProto(patient)));
+        }
+        return builder.build();
+    }
+
+    // proto3 strings can't be null, DTO fields are never null for cached patients (all NOT NULL columns)
+    private static PatientCacheEntry toProto(PatientResponseDTO patient) {
+        return PatientCacheEntry.newBuilder()
+                .setId(patient.getId())
+                .setName(patient.getName())
+                .setEmail(patient.getEmail())
+                .setAddress(patient.getAddress())
+                .setDateOfBirth(patient.getDateOfBirth())
+                .build();
+    }
+
+    private static PagedPatientResponseDTO toDTO(PatientPageCacheEntry entry) {
+        List<PatientResponseDTO> patients = entry.getPatientsList().stream()
+                .map(ProtobufPatientRedisSerializer::toDTO)
+                .toList();
+        return new PagedPatientResponseDTO(patients, entry.getPage(), entry.getSize(), entry.getTotalPages(), entry.getTotalElements());
+    }
+
+    private static PatientResponseDTO toDTO(PatientCacheEntry entry) {
+        PatientResponseDTO patient = new PatientResponseDTO();
+        patient.setId(entry.getId());
+        patient.setName(entry.getName());
+        patient.setEmail(entry.getEmail());
+        patient.setAddress(entry.getAddress());
+        patient.setDateOfBirth(entry.getDateOfBirth());
+        return patient;
+    }
+}
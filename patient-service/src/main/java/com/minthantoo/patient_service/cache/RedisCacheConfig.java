@@ -5,12 +5,16 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -22,18 +26,10 @@ import java.time.Duration;
 public class RedisCacheConfig {
     @Bean
     // To control the connection to Redis
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        objectMapper.activateDefaultTyping(
-                LaissezFaireSubTypeValidator.instance,
-                ObjectMapper.DefaultTyping.NON_FINAL,
-                JsonTypeInfo.As.PROPERTY
-        );
-
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
-
+    public RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory,
+                                               @Value("${patients.cache.ttl:1h}") Duration patientsTtl,
+                                               @Value("${patients.cache.value-format:protobuf}") String patientsValueFormat,
+                                               @Value("${patients.cache.compress-threshold:2048}") int compressThreshold) {
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofMinutes(10)) // every cached item will live for 10 minutes in Redis
                 .disableCachingNullValues()
@@ -42,11 +38,55 @@ public class RedisCacheConfig {
                                 new StringRedisSerializer()))
                 .serializeValuesWith(
                         RedisSerializationContext.SerializationPair.fromSerializer(
-                                serializer));
+                                jsonSerializer()));
+
+        // "patients" keys are versioned (PatientCacheVersion), so entries can't go stale and can live longer
+        RedisCacheConfiguration patientsConfig = config.entryTtl(patientsTtl);
+        if ("protobuf".equalsIgnoreCase(patientsValueFormat)) {
+            // compact binary values, the format is part of the key prefix so JSON entries written before a switch are never read as protobuf
+            patientsConfig = patientsConfig
+                    .computePrefixWith(cacheName -> cacheName + ":pb::")
+                    .serializeValuesWith(
+                            RedisSerializationContext.SerializationPair.fromSerializer(
+                                    new ProtobufPatientRedisSerializer(compressThreshold)));
+        }
 
         return RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(config)
+                .withCacheConfiguration("patients", patientsConfig)
+                // hit/miss/put/evict statistics -> Spring Boot publishes them as cache.gets, cache.puts, ... in Micrometer
+                .enableStatistics()
                 .build();
 
     }
+
+    // JSON with class names (default typing), works for any cached type
+    public static GenericJackson2JsonRedisSerializer jsonSerializer() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.activateDefaultTyping(
+                LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.NON_FINAL,
+                JsonTypeInfo.As.PROPERTY
+        );
+
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
+
+    @Bean
+    @Primary
+    // The cache manager @Cacheable uses -> Caffeine L1 in each instance + Redis L2 shared by all instances
+    public TwoLevelCacheManager cacheManager(RedisCacheManager redisCacheManager,
+                                             StringRedisTemplate redisTemplate,
+                                             MeterRegistry meterRegistry,
+                                             @Value("${patients.cache.l1.max-size:1000}") long localMaxSize,
+                                             @Value("${patients.cache.l1.ttl:5m}") Duration localTtl,
+                                             @Value("${patients.cache.load-lock.ttl:10s}") Duration lockTtl,
+                                             @Value("${patients.cache.load-lock.wait:3s}") Duration lockWait,
+                                             @Value("${patients.cache.load-lock.poll-interval:50ms}") Duration pollInterval,
+                                             @Value("${patients.cache.early-refresh.beta:0}") double earlyRefreshBeta) {
+        SingleFlightLoader.Settings singleFlightSettings = new SingleFlightLoader.Settings(lockTtl, lockWait, pollInterval, earlyRefreshBeta);
+        return new TwoLevelCacheManager(redisCacheManager, redisTemplate, meterRegistry, localMaxSize, localTtl, singleFlightSettings);
+    }
 }
@@ -0,0 +1,213 @@
+package com.minthantoo.patient_service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Stampede protection for L1 misses of one cache (used by TwoLevelCache for @Cacheable(sync = true)).
+// 1. inside one instance -> concurrent misses for the same key share one in-flight future (the "leader" loads, the rest wait)
+// 2. across instances -> the leader takes a short Redis lock (SET NX PX), the other instances poll Redis for the result
+//    instead of all hitting the database, and load themselves only if the lock holder takes too long
+// 3. optional probabilistic early refresh (XFetch, off unless patients.cache.early-refresh.beta > 0) -> an entry close
+//    to its Redis TTL is reloaded by one request, so a popular page does not expire for everybody at the same moment.
+//    The valueLoader Spring hands to Cache.get may only be called during that get, on the calling thread (it wraps the
+//    intercepted method invocation), so the refreshing request does the load itself and pays its latency,
+//    there is no background refresh.
+public class SingleFlightLoader {
+    private static final Logger log = LoggerFactory.getLogger(SingleFlightLoader.class);
+
+    // only delete the lock if it is still ours, it may have expired and been taken by another instance
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    public record Settings(Duration lockTtl, Duration lockWait, Duration pollInterval, double earlyRefreshBeta) {}
+
+    private final String cacheName;
+    private final Cache remote;
+    private final String remoteKeyPrefix;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Settings settings;
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private volatile long lastLoadNanos; // how long the last database load took, the "delta" of XFetch
+
+    public SingleFlightLoader(String cacheName,
+                              Cache remote,
+                              String remoteKeyPrefix,
+                              StringRedisTemplate redisTemplate,
+                              MeterRegistry meterRegistry,
+                              Settings settings) {
+        this.cacheName = cacheName;
+        this.remote = remote;
+        this.remoteKeyPrefix = remoteKeyPrefix;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.settings = settings;
+    }
+
+    public Object load(Object key, Callable<?> valueLoader) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            count("coalesced");
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            Object value = loadFromRemoteOrSource(key, valueLoader);
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Object loadFromRemoteOrSource(Object key, Callable<?> valueLoader) {
+        Cache.ValueWrapper cached = remote.get(key);
+        if (cached != null && cached.get() != null) {
+            return shouldRefreshEarly(key) ? refreshEarly(key, cached.get(), valueLoader) : cached.get();
+        }
+
+        String lockKey = remoteKeyPrefix + "lock::" + key;
+        String token = UUID.randomUUID().toString();
+
+        if (tryLock(lockKey, token)) {
+            try {
+                // another instance may have finished loading between our read and taking the lock
+                cached = remote.get(key);
+                if (cached != null && cached.get() != null) {
+                    return cached.get();
+                }
+                count("leader");
+                return loadAndStore(key, valueLoader);
+            } finally {
+                unlock(lockKey, token);
+            }
+        }
+
+        // another instance holds the lock and is loading this key, wait for its result to show up in Redis
+        count("remote-wait");
+        long deadline = System.nanoTime() + settings.lockWait().toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(settings.pollInterval().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            cached = remote.get(key);
+            if (cached != null && cached.get() != null) {
+                return cached.get();
+            }
+        }
+
+        // lock holder is too slow or died, load ourselves rather than fail the request
+        count("leader");
+        return loadAndStore(key, valueLoader);
+    }
+
+    private Object loadAndStore(Object key, Callable<?> valueLoader) {
+        long start = System.nanoTime();
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new Cache.ValueRetrievalException(key, valueLoader, e);
+        }
+        lastLoadNanos = System.nanoTime() - start;
+
+        if (value != null) {
+            remote.put(key, value);
+        }
+        return value;
+    }
+
+    // XFetch: refresh when  -delta * beta * ln(random) >= remaining TTL
+    // the closer the entry is to expiry (and the slower the load), the more likely one request refreshes it early
+    private boolean shouldRefreshEarly(Object key) {
+        long delta = lastLoadNanos;
+        if (settings.earlyRefreshBeta() <= 0 || delta == 0) {
+            return false; // disabled, or this instance hasn't loaded anything yet to estimate the load time
+        }
+
+        Long ttlMillis;
+        try {
+            ttlMillis = redisTemplate.getExpire(remoteKeyPrefix + key, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            return false;
+        }
+        if (ttlMillis == null || ttlMillis <= 0) {
+            return false;
+        }
+
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble(); // (0, 1], ln(0) would be -infinity
+        double gap = -(delta / 1_000_000.0) * settings.earlyRefreshBeta() * Math.log(random);
+        return gap >= ttlMillis;
+    }
+
+    // the other requests for this key (here: coalesced on our future, elsewhere: anyone without the lock) keep
+    // getting the cached value, a failed refresh also answers with it and the entry just expires normally
+    private Object refreshEarly(Object key, Object cachedValue, Callable<?> valueLoader) {
+        String lockKey = remoteKeyPrefix + "lock::" + key;
+        String token = UUID.randomUUID().toString();
+        if (!tryLock(lockKey, token)) {
+            return cachedValue;
+        }
+        try {
+            count("early-refresh");
+            Object value = loadAndStore(key, valueLoader);
+            return value != null ? value : cachedValue;
+        } catch (RuntimeException e) {
+            log.warn("Early refresh of {} {} failed: {}", cacheName, key, e.getMessage());
+            return cachedValue;
+        } finally {
+            unlock(lockKey, token);
+        }
+    }
+
+    private boolean tryLock(String lockKey, String token) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, token, settings.lockTtl()));
+        } catch (Exception e) {
+            // no Redis -> no cross-instance coordination, still coalesced inside this instance
+            log.debug("Could not take cache load lock {}: {}", lockKey, e.getMessage());
+            return true;
+        }
+    }
+
+    private void unlock(String lockKey, String token) {
+        try {
+            redisTemplate.execute(UNLOCK_SCRIPT, List.of(lockKey), token);
+        } catch (Exception e) {
+            log.debug("Could not release cache load lock {}, it expires on its own: {}", lockKey, e.getMessage());
+        }
+    }
+
+    // custom.cache.load{cache=patients, role=leader|coalesced|remote-wait|early-refresh}
+    private void count(String role) {
+        meterRegistry.counter("custom.cache.load", "cache", cacheName, "role", role).increment();
+    }
+}
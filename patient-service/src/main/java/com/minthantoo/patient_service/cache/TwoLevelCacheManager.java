@@ -0,0 +1,127 @@
+package com.minthantoo.patient_service.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Wraps the RedisCacheManager so every cache gets a Caffeine L1 in front of it (see TwoLevelCache).
+// Evictions are published on a Redis pub/sub channel, every instance listens and drops the key from its own L1.
+public class TwoLevelCacheManager implements CacheManager {
+    private static final Logger log = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+    public static final String INVALIDATION_CHANNEL = "cache::invalidate";
+
+    // message = instanceId|cacheName|key, an empty key means clear the whole cache
+    private static final String SEPARATOR = "|";
+
+    private final CacheManager remoteCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final long localMaxSize;
+    private final Duration localTtl;
+    private final SingleFlightLoader.Settings singleFlightSettings;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                StringRedisTemplate redisTemplate,
+                                MeterRegistry meterRegistry,
+                                long localMaxSize,
+                                Duration localTtl,
+                                SingleFlightLoader.Settings singleFlightSettings) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.localMaxSize = localMaxSize;
+        this.localTtl = localTtl;
+        this.singleFlightSettings = singleFlightSettings;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+
+        return caches.computeIfAbsent(name, n -> new TwoLevelCache(n, createLocalCache(n), remote, createLoader(n, remote), this));
+    }
+
+    private SingleFlightLoader createLoader(String name, Cache remote) {
+        // same prefix RedisCache puts in front of its keys, e.g. "patients:pb::"
+        String keyPrefix = remote instanceof RedisCache redisCache
+                ? redisCache.getCacheConfiguration().getKeyPrefixFor(name)
+                : name + "::";
+        return new SingleFlightLoader(name, remote, keyPrefix, redisTemplate, meterRegistry, singleFlightSettings);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> createLocalCache(String name) {
+        // size bound keeps memory predictable (W-TinyLFU keeps the hot pages), TTL bounds how long an L1 copy lives
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+
+        // cache.gets{cache=patients.l1,result=hit|miss}, cache.evictions, cache.size ...
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name + ".l1");
+        return local;
+    }
+
+    void publishEvict(String cacheName, Object key) {
+        publish(cacheName, String.valueOf(key));
+    }
+
+    void publishClear(String cacheName) {
+        publish(cacheName, "");
+    }
+
+    private void publish(String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, instanceId + SEPARATOR + cacheName + SEPARATOR + key);
+        } catch (Exception e) {
+            // the other instances' L1 copies still expire by the L1 TTL
+            log.warn("Could not publish cache invalidation for {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    // pub/sub listener, registered in CacheInvalidationSubscriber
+    public void onInvalidation(String message) {
+        String[] parts = message.split("\\|", 3);
+        if (parts.length != 3 || instanceId.equals(parts[0])) {
+            return; // malformed, or our own message (local copy is already gone)
+        }
+
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+
+        if (parts[2].isEmpty()) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(parts[2]);
+        }
+    }
+}
@@ -1,19 +1,33 @@
 package com.minthantoo.patient_service.controller;
 
+import com.minthantoo.patient_service.cache.PatientCacheVersion;
+import com.minthantoo.patient_service.dto.CursorPagedPatientResponseDTO;
+import com.minthantoo.patient_service.dto.PatientImportResultDTO;
 import com.minthantoo.patient_service.dto.PagedPatientResponseDTO;
 import com.minthantoo.patient_service.dto.PatientRequestDTO;
 import com.minthantoo.patient_service.dto.PatientResponseDTO;
 import com.minthantoo.patient_service.dto.validators.CreatePatientValidationGroup;
+import com.minthantoo.patient_service.exporter.PatientExportWriter;
+import com.minthantoo.patient_service.importer.PatientRecordReader;
+import com.minthantoo.patient_service.service.PatientExportService;
+import com.minthantoo.patient_service.service.PatientImportService;
 import com.minthantoo.patient_service.service.PatientService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.groups.Default;
 import org.apache.coyote.Response;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
 
@@ -23,24 +37,75 @@ import java.util.UUID;
 @Tag(name = "Patient", description = "API for managing Patients")
 public class PatientController {
     private final PatientService patientService;
-
-    public PatientController(PatientService patientService) {
+    private final PatientImportService patientImportService;
+    private final PatientExportService patientExportService;
+    private final PatientCacheVersion patientCacheVersion;
+
+    public PatientController(PatientService patientService,
+                             PatientImportService patientImportService,
+                             PatientExportService patientExportService,
+                             PatientCacheVersion patientCacheVersion) {
         this.patientService = patientService;
+        this.patientImportService = patientImportService;
+        this.patientExportService = patientExportService;
+        this.patientCacheVersion = patientCacheVersion;
     }
 
     // Pagination -> http://localhost:4004/api/patients?page=1&size=10
+    // Keyset pagination -> http://localhost:4004/api/patients?cursor=&size=10 for the first page,
+    // then pass the returned nextCursor as cursor. Add includeTotal=true to get an estimated total.
+    // Conditional GET -> the ETag is the patients cache generation (PatientCacheVersion), it changes with every write.
+    // A client (or the gateway) sending it back as If-None-Match gets a 304 without any query or cache lookup.
+    // Weak, because the same generation can still give slightly different bytes (estimated totals).
     @GetMapping
     @Operation(summary = "Get Patients")
     //  return a ResponseEntity type with a list of PatientResponseDTO
-    public ResponseEntity<PagedPatientResponseDTO> getPatients(
+    public ResponseEntity<?> getPatients(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "asc") String sort,
             @RequestParam(defaultValue = "name") String sortField,
-            @RequestParam(defaultValue = "") String searchValue
+            @RequestParam(defaultValue = "") String searchValue,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            WebRequest webRequest
     ) {
+        // read before the data -> a write in between makes the data newer than its tag, never older
+        PatientCacheVersion.Stamp stamp = currentStamp();
+        if (stamp != null && webRequest.checkNotModified(etag(stamp), stamp.changedAt())) {
+            return null; // 304, headers are already set
+        }
+
+        // cursor param present (even empty) -> keyset mode
+        if (cursor != null) {
+            CursorPagedPatientResponseDTO patients = patientService.getPatientsByCursor(cursor, size, sort, sortField, searchValue, includeTotal);
+            return conditional(stamp).body(patients);
+        }
+
         PagedPatientResponseDTO patients = patientService.getPatients(page, size, sort, sortField, searchValue);
-        return ResponseEntity.ok().body(patients);
+        return conditional(stamp).body(patients);
+    }
+
+    // Redis down -> no validators, the page is still served
+    private PatientCacheVersion.Stamp currentStamp() {
+        try {
+            return patientCacheVersion.stamp();
+        } catch (DataAccessException e) {
+            return null;
+        }
+    }
+
+    private static String etag(PatientCacheVersion.Stamp stamp) {
+        return "W/\"patients-" + stamp.version() + "\"";
+    }
+
+    // no-cache -> clients may keep the page but have to revalidate it, which is cheap with the ETag
+    private static ResponseEntity.BodyBuilder conditional(PatientCacheVersion.Stamp stamp) {
+        if (stamp == null) {
+            return ResponseEntity.ok();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().eTag(etag(stamp)).cacheControl(CacheControl.noCache());
+        return stamp.changedAt() > 0 ? builder.lastModified(stamp.changedAt()) : builder;
     }
 
     @PostMapping
@@ -51,6 +116,33 @@ public class PatientController {
         return ResponseEntity.ok().body(patientResponseDTO);
     }
 
+    // Bulk import -> body is the file itself, not multipart
+    // curl -X POST -H "Content-Type: text/csv" --data-binary @patients.csv http://localhost:4004/api/patients/import
+    // the body is read as a stream, so a file of any size is fine. Rows with errors are listed in the response, the rest is imported
+    @PostMapping(value = "/import", consumes = {PatientRecordReader.NDJSON, PatientRecordReader.CSV})
+    @Operation(summary = "Bulk import Patients from NDJSON or CSV")
+    public ResponseEntity<PatientImportResultDTO> importPatients(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) throws IOException {
+        PatientImportResultDTO result = patientImportService.importPatients(contentType, body);
+
+        return ResponseEntity.ok().body(result);
+    }
+
+    // Bulk export -> http://localhost:4004/api/patients/export?format=csv (or ndjson, default), searchValue filters by name
+    // written straight to the response while the rows are read, so the size of the table doesn't matter
+    @GetMapping("/export")
+    @Operation(summary = "Export Patients as NDJSON or CSV")
+    public void exportPatients(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "") String searchValue,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType(PatientExportWriter.contentType(format)); // also rejects an unknown format before anything is written
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"patients." + format.toLowerCase() + "\"");
+
+        patientExportService.exportPatients(format, searchValue, response.getOutputStream());
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Update a Patient")
     public ResponseEntity<PatientResponseDTO> updatePatient(@PathVariable UUID id, @Validated({Default.class}) @RequestBody PatientRequestDTO patientRequestDTO) {
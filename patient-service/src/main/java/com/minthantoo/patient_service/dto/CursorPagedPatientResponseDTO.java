@@ -0,0 +1,68 @@
+package com.minthantoo.patient_service.dto;
+
+import java.util.List;
+
+public class CursorPagedPatientResponseDTO {
+    private List<PatientResponseDTO> patients;
+    private int size;
+    private String nextCursor; // null when there is no next page
+    private boolean hasNext;
+    private Long totalElements; // only filled when the client asks for it, and it is an estimate
+
+    // no-args constructor
+    public CursorPagedPatientResponseDTO() {}
+
+    public CursorPagedPatientResponseDTO(
+            List<PatientResponseDTO> patients,
+            int size,
+            String nextCursor,
+            boolean hasNext,
+            Long totalElements
+    ) {
+        this.patients = patients;
+        this.size = size;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+        this.totalElements = totalElements;
+    }
+
+    public List<PatientResponseDTO> getPatients() {
+        return patients;
+    }
+
+    public void setPatients(List<PatientResponseDTO> patients) {
+        this.patients = patients;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(Long totalElements) {
+        this.totalElements = totalElements;
+    }
+}
@@ -0,0 +1,40 @@
+package com.minthantoo.patient_service.dto;
+
+public class PatientImportErrorDTO {
+    private long line; // line number in the uploaded file, the CSV header is line 1
+    private String email; // null when the line couldn't be parsed
+    private String message;
+
+    // no-args constructor
+    public PatientImportErrorDTO() {}
+
+    public PatientImportErrorDTO(long line, String email, String message) {
+        this.line = line;
+        this.email = email;
+        this.message = message;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
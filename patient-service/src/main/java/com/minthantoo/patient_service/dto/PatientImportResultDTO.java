@@ -0,0 +1,68 @@
+package com.minthantoo.patient_service.dto;
+
+import java.util.List;
+
+public class PatientImportResultDTO {
+    private long received; // data rows in the file
+    private long imported;
+    private long failed;
+    private List<PatientImportErrorDTO> errors; // first N errors only, see errorsTruncated
+    private boolean errorsTruncated;
+
+    // no-args constructor
+    public PatientImportResultDTO() {}
+
+    public PatientImportResultDTO(
+            long received,
+            long imported,
+            long failed,
+            List<PatientImportErrorDTO> errors,
+            boolean errorsTruncated
+    ) {
+        this.received = received;
+        this.imported = imported;
+        this.failed = failed;
+        this.errors = errors;
+        this.errorsTruncated = errorsTruncated;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public List<PatientImportErrorDTO> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<PatientImportErrorDTO> errors) {
+        this.errors = errors;
+    }
+
+    public boolean isErrorsTruncated() {
+        return errorsTruncated;
+    }
+
+    public void setErrorsTruncated(boolean errorsTruncated) {
+        this.errorsTruncated = errorsTruncated;
+    }
+}
@@ -1,5 +1,7 @@
 package com.minthantoo.patient_service.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 public class PatientResponseDTO {
     private String id;
     private String name;
@@ -7,6 +9,10 @@ public class PatientResponseDTO {
     private String address;
     private String dateOfBirth;
 
+    // only set in the create response -> ACTIVE, or PENDING while the billing account is still being created
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String billingStatus;
+
     public String getId() {
         return id;
     }
@@ -46,4 +52,12 @@ public class PatientResponseDTO {
     public void setDateOfBirth(String dateOfBirth) {
         this.dateOfBirth = dateOfBirth;
     }
+
+    public String getBillingStatus() {
+        return billingStatus;
+    }
+
+    public void setBillingStatus(String billingStatus) {
+        this.billingStatus = billingStatus;
+    }
 }
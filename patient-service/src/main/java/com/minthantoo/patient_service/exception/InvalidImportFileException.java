@@ -0,0 +1,7 @@
+package com.minthantoo.patient_service.exception;
+
+public class InvalidImportFileException extends RuntimeException {
+  public InvalidImportFileException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package com.minthantoo.patient_service.exception;
+
+public class UnsupportedExportFormatException extends RuntimeException {
+  public UnsupportedExportFormatException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,117 @@
+package com.minthantoo.patient_service.exporter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.minthantoo.patient_service.exception.UnsupportedExportFormatException;
+import com.minthantoo.patient_service.model.Patient;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Writes patients one at a time straight to the response, nothing is collected in between.
+// Same field names as the import (PatientRecordReader), so an export can be imported again (the id column is ignored there).
+// ndjson -> one JSON object per line, written with a JsonGenerator (no DTO per row)
+// csv -> header line, then one patient per line, fields with a comma/quote/line break are quoted
+public abstract class PatientExportWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static PatientExportWriter open(String format, OutputStream out, JsonFactory jsonFactory) throws IOException {
+        return switch (format.toLowerCase()) {
+            case "ndjson" -> new NdjsonWriter(out, jsonFactory);
+            case "csv" -> new CsvWriter(out);
+            default -> throw new UnsupportedExportFormatException("Unsupported export format: " + format + ", use ndjson or csv");
+        };
+    }
+
+    public static String contentType(String format) {
+        return switch (format.toLowerCase()) {
+            case "ndjson" -> "application/x-ndjson";
+            case "csv" -> "text/csv";
+            default -> throw new UnsupportedExportFormatException("Unsupported export format: " + format + ", use ndjson or csv");
+        };
+    }
+
+    public abstract void write(Patient patient) throws IOException;
+
+    // flushes, the response stream itself is closed by the servlet container
+    @Override
+    public abstract void close() throws IOException;
+
+    private static class NdjsonWriter extends PatientExportWriter {
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out, JsonFactory jsonFactory) throws IOException {
+            this.generator = jsonFactory.createGenerator(new BufferedOutputStream(out, BUFFER_SIZE));
+            this.generator.setRootValueSeparator(new SerializedString("\n"));
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void write(Patient patient) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("id", patient.getId().toString());
+            generator.writeStringField("name", patient.getName());
+            generator.writeStringField("email", patient.getEmail());
+            generator.writeStringField("address", patient.getAddress());
+            generator.writeStringField("dateOfBirth", patient.getDateOfBirth().toString());
+            generator.writeStringField("registeredDate", patient.getRegisteredDate().toString());
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeRaw('\n');
+            generator.close(); // flushes the buffer, doesn't close the response (AUTO_CLOSE_TARGET off)
+        }
+    }
+
+    private static class CsvWriter extends PatientExportWriter {
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.writer = new OutputStreamWriter(new BufferedOutputStream(out, BUFFER_SIZE), StandardCharsets.UTF_8);
+            this.writer.write("id,name,email,address,dateOfBirth,registeredDate\n");
+        }
+
+        @Override
+        public void write(Patient patient) throws IOException {
+            writer.write(patient.getId().toString());
+            writer.write(',');
+            writeField(patient.getName());
+            writer.write(',');
+            writeField(patient.getEmail());
+            writer.write(',');
+            writeField(patient.getAddress());
+            writer.write(',');
+            writer.write(patient.getDateOfBirth().toString());
+            writer.write(',');
+            writer.write(patient.getRegisteredDate().toString());
+            writer.write('\n');
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+    }
+}
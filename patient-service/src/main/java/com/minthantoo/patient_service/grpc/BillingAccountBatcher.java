@@ -0,0 +1,126 @@
+package com.minthantoo.patient_service.grpc;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Client side micro-batching for billing account creation.
+// Callers submit one request and get a future for its own response. A dispatcher thread collects requests until
+// it has maxBatchSize of them or maxDelay has passed since the first one, and sends them as one CreateBillingAccounts call.
+// Under low load a request waits at most maxDelay, under high load the batches fill up and we do far fewer round trips.
+// Sending is asynchronous, up to maxInFlight batches are on the wire at the same time. When all of them are in flight
+// the dispatcher waits, and new requests keep filling the next batch meanwhile (backpressure).
+public class BillingAccountBatcher {
+    private static final Logger log = LoggerFactory.getLogger(BillingAccountBatcher.class);
+
+    private record Pending(BillingRequest request, CompletableFuture<BillingResponse> future) {}
+
+    private final Function<List<BillingRequest>, CompletableFuture<List<BillingResponse>>> sendBatch;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Semaphore inFlight;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    // sendBatch must complete with one response per request, in the same order
+    public BillingAccountBatcher(Function<List<BillingRequest>, CompletableFuture<List<BillingResponse>>> sendBatch,
+                                 int maxBatchSize,
+                                 Duration maxDelay,
+                                 int maxInFlight) {
+        this.sendBatch = sendBatch;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.inFlight = new Semaphore(maxInFlight);
+
+        this.dispatcher = new Thread(this::dispatchLoop, "billing-batch-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public CompletableFuture<BillingResponse> submit(BillingRequest request) {
+        CompletableFuture<BillingResponse> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Billing batcher is shut down"));
+            return future;
+        }
+        queue.add(new Pending(request, future));
+        return future;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                Pending first = queue.take();
+                List<Pending> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    // grab whatever is already queued without waiting, then wait for the rest until the deadline
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                inFlight.acquire();
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Billing batch dispatcher error: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        CompletableFuture<List<BillingResponse>> responses;
+        try {
+            responses = sendBatch.apply(batch.stream().map(Pending::request).toList());
+        } catch (Exception e) {
+            responses = CompletableFuture.failedFuture(e);
+        }
+
+        responses.whenComplete((result, error) -> {
+            inFlight.release();
+            if (error == null && result.size() != batch.size()) {
+                error = new IllegalStateException("Expected " + batch.size() + " billing responses, got " + result.size());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (error == null) {
+                    batch.get(i).future().complete(result.get(i));
+                } else {
+                    batch.get(i).future().completeExceptionally(error);
+                }
+            }
+        });
+    }
+
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+
+        List<Pending> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        leftover.forEach(pending -> pending.future().completeExceptionally(new IllegalStateException("Billing batcher is shut down")));
+    }
+}
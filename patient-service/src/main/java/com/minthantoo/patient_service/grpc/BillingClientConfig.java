@@ -0,0 +1,19 @@
+package com.minthantoo.patient_service.grpc;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class BillingClientConfig {
+    // every batch goes through BillingServiceGrpcClient.createBillingAccounts -> deadline, retry, circuit breaker, metrics
+    @Bean(destroyMethod = "shutdown")
+    public BillingAccountBatcher billingAccountBatcher(BillingServiceGrpcClient billingServiceGrpcClient,
+                                                       @Value("${billing.batch.max-size:100}") int maxBatchSize,
+                                                       @Value("${billing.batch.max-delay:5ms}") Duration maxDelay,
+                                                       @Value("${billing.batch.max-in-flight:4}") int maxInFlight) {
+        return new BillingAccountBatcher(billingServiceGrpcClient::createBillingAccounts, maxBatchSize, maxDelay, maxInFlight);
+    }
+}
@@ -1,62 +1,208 @@
 package com.minthantoo.patient_service.grpc;
 
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
 import billing.BillingRequest;
 import billing.BillingResponse;
 import billing.BillingServiceGrpc;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.minthantoo.patient_service.kafka.KafkaTopics;
 import com.minthantoo.patient_service.kafka.kafkaProducer;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
+import com.minthantoo.patient_service.model.OutboxEvent;
+import com.minthantoo.patient_service.outbox.OutboxRelay;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Non-blocking billing-service client, only the batch call (CreateBillingAccounts) is used, see BillingAccountBatcher.
+// - future stub -> no thread waits for the response, the returned CompletableFuture completes on the gRPC callback thread
+// - every call has a deadline, a hung billing-service fails the call (DEADLINE_EXCEEDED) instead of holding it forever
+// - a small pool of channels (each its own HTTP/2 connection) used round robin, so calls aren't all multiplexed on one connection
+// - keepalive pings detect dead connections (e.g. dropped by a load balancer) before a call runs into them
+// - retry + circuit breaker from the resilience4j registries (same "billingRetry"/"billingService" config as before),
+//   applied to the async call, and the fallback queues the request for Kafka (outbox) and answers PENDING.
+//   The fallback writes to the database, it runs on a small bounded pool instead of the gRPC callback thread
+// - metrics -> custom.grpc.client.latency{method,status} histogram and custom.grpc.client.inflight{method}
 @Service
 public class BillingServiceGrpcClient {
     private static final Logger log = LoggerFactory.getLogger(BillingServiceGrpcClient.class);
-    private final BillingServiceGrpc.BillingServiceBlockingStub blockingStub;
+    private static final String CREATE_ACCOUNTS = "CreateBillingAccounts";
+
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final List<BillingServiceGrpc.BillingServiceFutureStub> stubs = new ArrayList<>();
+    private final AtomicInteger nextStub = new AtomicInteger();
+    private final Duration batchDeadline;
+    private final CircuitBreaker circuitBreaker;
+    private final Retry retry;
+    private final MeterRegistry meterRegistry;
     private final kafkaProducer kafkaProducer;
+    private final OutboxRelay outboxRelay;
+    private final AtomicInteger inFlightBatch = new AtomicInteger();
+
+    // fallback inserts run here, a full queue fails the call (the caller retries it) instead of blocking anybody
+    private final ExecutorService fallbackExecutor;
+
+    // retry waits happen on this scheduler, not on a sleeping thread
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "billing-grpc-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // constructor
     public BillingServiceGrpcClient(
             @Value("${billing.service.address:localhost}") String serverAddress,
             @Value("${billing.service.grpc.port:9001}") int serverPort,
-            kafkaProducer kafkaProducer) {
-        log.info("Connecting to Billing Service Service GRPC service at {}:{}", serverAddress, serverPort);
+            @Value("${billing.grpc.channels:2}") int channelCount,
+            @Value("${billing.grpc.batch-deadline:5s}") Duration batchDeadline,
+            @Value("${billing.grpc.keepalive-time:30s}") Duration keepAliveTime,
+            @Value("${billing.grpc.keepalive-timeout:10s}") Duration keepAliveTimeout,
+            @Value("${billing.grpc.fallback-threads:2}") int fallbackThreads,
+            @Value("${billing.grpc.fallback-queue-capacity:1000}") int fallbackQueueCapacity,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            RetryRegistry retryRegistry,
+            MeterRegistry meterRegistry,
+            kafkaProducer kafkaProducer,
+            OutboxRelay outboxRelay) {
+        log.info("Connecting to Billing Service Service GRPC service at {}:{} with {} channels", serverAddress, serverPort, channelCount);
 
-        ManagedChannel channel = ManagedChannelBuilder
-                .forAddress(serverAddress, serverPort)
-                .usePlaintext()
-                .build();
+        for (int i = 0; i < channelCount; i++) {
+            ManagedChannel channel = ManagedChannelBuilder
+                    .forAddress(serverAddress, serverPort)
+                    .usePlaintext()
+                    .keepAliveTime(keepAliveTime.toMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveTimeout(keepAliveTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveWithoutCalls(true)
+                    .build();
+            channels.add(channel);
+            stubs.add(BillingServiceGrpc.newFutureStub(channel));
+        }
 
-        blockingStub = BillingServiceGrpc.newBlockingStub(channel);
+        this.batchDeadline = batchDeadline;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("billingService");
+        this.retry = retryRegistry.retry("billingRetry");
+        this.meterRegistry = meterRegistry;
         this.kafkaProducer = kafkaProducer;
+        this.outboxRelay = outboxRelay;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.fallbackExecutor = new ThreadPoolExecutor(
+                fallbackThreads, fallbackThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(fallbackQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "billing-fallback-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        meterRegistry.gauge("custom.grpc.client.inflight", Tags.of("method", CREATE_ACCOUNTS), inFlightBatch);
     }
 
-    // use circuit breaker in case billing-service fails
-    @CircuitBreaker(name = "billingService", fallbackMethod = "billingFallback")
-    @Retry(name = "billingRetry") // @Retry will retry 3 times  before circuit breaker kicks in
-    public BillingResponse createBillingAccount(String patientId, String name, String email) {
-        BillingRequest request = BillingRequest.newBuilder().setPatientId(patientId).setName(name).setEmail(email).build();
+    // used by BillingAccountBatcher, responses are in the same order as the requests
+    public CompletableFuture<List<BillingResponse>> createBillingAccounts(List<BillingRequest> requests) {
+        BillingBatchRequest request = BillingBatchRequest.newBuilder().addAllRequests(requests).build();
+
+        return resilient(() -> call(CREATE_ACCOUNTS, inFlightBatch,
+                        stub -> stub.withDeadlineAfter(batchDeadline.toMillis(), TimeUnit.MILLISECONDS).createBillingAccounts(request)))
+                .thenApply(BillingBatchResponse::getResponsesList)
+                .thenApply(responses -> {
+                    log.info("Received {} billing responses via GRPC", responses.size());
+                    return responses;
+                })
+                .exceptionallyAsync(t -> billingBatchFallback(requests, unwrap(t)), fallbackExecutor);
+    }
 
-        BillingResponse response = blockingStub.createBillingAccount(request);
-        log.info("Received response from billing service via GRPC: {}", response);
-        return response;
+    // Retry(CircuitBreaker(call)) -> same order as the annotations had, every attempt is recorded by the breaker
+    // and an open breaker fails the attempt right away (CallNotPermittedException) without calling billing-service
+    private <T> CompletableFuture<T> resilient(Supplier<CompletableFuture<T>> call) {
+        return retry.executeCompletionStage(retryScheduler,
+                () -> circuitBreaker.executeCompletionStage(call::get)).toCompletableFuture();
     }
 
-    public BillingResponse billingFallback(String patientId, String name, String email, Throwable t) {
-        log.warn("[CIRCUIT BREAKER]: Billing service is unavailable. Triggered " + "fallback: {}", t.getMessage());
+    private <T> CompletableFuture<T> call(String method,
+                                          AtomicInteger inFlight,
+                                          Function<BillingServiceGrpc.BillingServiceFutureStub, ListenableFuture<T>> rpc) {
+        BillingServiceGrpc.BillingServiceFutureStub stub = stubs.get(Math.floorMod(nextStub.getAndIncrement(), stubs.size()));
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
 
-        // saving patient information in kafka so that kafka can send it back to createBillingAccount method when billing-service works again
-        kafkaProducer.sendBillingAccountEvent(patientId, name, email);
+        CompletableFuture<T> future;
+        try {
+            future = GrpcFutures.toCompletableFuture(rpc.apply(stub));
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        return future.whenComplete((result, error) -> {
+            inFlight.decrementAndGet();
+            String status = error == null ? "OK" : Status.fromThrowable(unwrap(error)).getCode().name();
+            Timer.builder("custom.grpc.client.latency")
+                    .tag("method", method)
+                    .tag("status", status)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+    }
 
+    public List<BillingResponse> billingBatchFallback(List<BillingRequest> requests, Throwable t) {
+        log.warn("[CIRCUIT BREAKER]: Billing service is unavailable for a batch of {}. Triggered fallback: {}", requests.size(), t.getMessage());
+
+        // one batched insert for the whole batch
+        outboxRelay.publishAll(requests.stream()
+                .map(request -> billingAccountRequestedEvent(request.getPatientId(), request.getName(), request.getEmail()))
+                .toList());
+
+        return requests.stream().map(request -> pendingResponse(request.getPatientId())).toList();
+    }
+
+    private OutboxEvent billingAccountRequestedEvent(String patientId, String name, String email) {
+        return new OutboxEvent(patientId, OutboxEvent.BILLING_ACCOUNT_CREATE_REQUESTED, KafkaTopics.BILLING_ACCOUNT,
+                kafkaProducer.buildBillingAccountEvent(patientId, name, email).toByteArray());
+    }
+
+    private static BillingResponse pendingResponse(String patientId) {
         return BillingResponse.newBuilder()
                 .setAccountId("")
                 .setStatus("PENDING")
+                .setPatientId(patientId)
                 .build();
     }
-}
 
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
 
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        fallbackExecutor.shutdown();
+        channels.forEach(ManagedChannel::shutdown);
+    }
+}
@@ -0,0 +1,37 @@
+package com.minthantoo.patient_service.grpc;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.CompletableFuture;
+
+// gRPC future stubs return Guava ListenableFutures, the rest of the code (and resilience4j) works with CompletableFuture
+public final class GrpcFutures {
+    private GrpcFutures() {}
+
+    public static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenable) {
+        CompletableFuture<T> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                listenable.cancel(mayInterruptIfRunning); // cancels the RPC too
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        // directExecutor -> completes on the gRPC callback thread, callers must not block in their callbacks
+        Futures.addCallback(listenable, new FutureCallback<>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+}
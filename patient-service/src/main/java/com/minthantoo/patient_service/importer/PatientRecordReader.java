@@ -0,0 +1,172 @@
+package com.minthantoo.patient_service.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.minthantoo.patient_service.dto.PatientRequestDTO;
+import com.minthantoo.patient_service.exception.InvalidImportFileException;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Reads an import file one line at a time, so only the current line is ever in memory.
+// NDJSON -> one PatientRequestDTO JSON object per line
+// CSV -> header line with the PatientRequestDTO field names (any order), then one patient per line.
+//        Fields may be quoted ("12 Main St, Springfield"), "" inside quotes is a quote. Quoted line breaks are not supported.
+// A line that can't be parsed comes back as a record with an error instead of stopping the import.
+public class PatientRecordReader implements Closeable {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String CSV = "text/csv";
+
+    private static final List<String> CSV_COLUMNS = List.of("name", "email", "address", "dateOfBirth", "registeredDate");
+
+    // patient is null when error is set
+    public record Record(long line, PatientRequestDTO patient, String error) {}
+
+    private final BufferedReader reader;
+    private final ObjectMapper objectMapper; // null for CSV
+    private Map<String, Integer> csvColumns; // column name -> index, null for NDJSON
+    private long lineNumber;
+
+    private PatientRecordReader(InputStream in, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.objectMapper = objectMapper;
+    }
+
+    public static PatientRecordReader open(String contentType, InputStream in, ObjectMapper objectMapper) throws IOException {
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (Exception e) {
+            throw new InvalidImportFileException("Unsupported content type: " + contentType);
+        }
+
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(NDJSON))) {
+            return new PatientRecordReader(in, objectMapper);
+        }
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(CSV))) {
+            PatientRecordReader csvReader = new PatientRecordReader(in, null);
+            csvReader.readCsvHeader();
+            return csvReader;
+        }
+        throw new InvalidImportFileException("Unsupported content type: " + contentType + ", use " + NDJSON + " or " + CSV);
+    }
+
+    // null at the end of the file, blank lines are skipped
+    public Record next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isBlank());
+
+        return csvColumns == null ? parseJson(line) : parseCsv(line);
+    }
+
+    private Record parseJson(String line) {
+        try {
+            return new Record(lineNumber, objectMapper.readValue(line, PatientRequestDTO.class), null);
+        } catch (JsonProcessingException e) {
+            return new Record(lineNumber, null, "Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private void readCsvHeader() throws IOException {
+        String header = reader.readLine();
+        lineNumber++;
+        if (header == null) {
+            throw new InvalidImportFileException("CSV file is empty, expected a header line");
+        }
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1); // BOM from Excel exports
+        }
+
+        List<String> names = splitCsv(header);
+        if (names == null) {
+            throw new InvalidImportFileException("CSV header has an unterminated quote");
+        }
+
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String column : CSV_COLUMNS) {
+            if (!columns.containsKey(column.toLowerCase(Locale.ROOT))) {
+                throw new InvalidImportFileException("CSV header is missing column " + column + ", expected " + String.join(",", CSV_COLUMNS));
+            }
+        }
+        this.csvColumns = columns;
+    }
+
+    private Record parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields == null) {
+            return new Record(lineNumber, null, "Invalid CSV: unterminated quote");
+        }
+
+        PatientRequestDTO patient = new PatientRequestDTO();
+        patient.setName(csvField(fields, "name"));
+        patient.setEmail(csvField(fields, "email"));
+        patient.setAddress(csvField(fields, "address"));
+        patient.setDateOfBirth(csvField(fields, "dateOfBirth"));
+        patient.setRegisteredDate(csvField(fields, "registeredDate"));
+        return new Record(lineNumber, patient, null);
+    }
+
+    // missing trailing columns are null, validation reports them as required
+    private String csvField(List<String> fields, String column) {
+        int index = csvColumns.get(column.toLowerCase(Locale.ROOT));
+        return index < fields.size() ? fields.get(index) : null;
+    }
+
+    // null when a quote is not closed
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,11 @@
+package com.minthantoo.patient_service.kafka;
+
+// topics patient-service publishes to
+public final class KafkaTopics {
+    public static final String PATIENT_CREATED = "patient.created";
+    public static final String PATIENT_UPDATED = "patient.updated";
+    public static final String PATIENT_DELETED = "patient.deleted";
+    public static final String BILLING_ACCOUNT = "billing-account";
+
+    private KafkaTopics() {}
+}
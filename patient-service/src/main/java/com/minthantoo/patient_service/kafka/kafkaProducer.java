@@ -2,16 +2,19 @@ package com.minthantoo.patient_service.kafka;
 
 import billing.events.BillingAccountEvent;
 import com.minthantoo.patient_service.model.Patient;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 import patient.events.PatientEvent;
 
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+// Events are not sent from here directly anymore, they are written to the outbox table in the same transaction
+// as the change (OutboxRelay.publish) and the relay sends them. This class builds the payloads and does the actual send.
 @Service
 public class kafkaProducer {
-
-    private static final Logger log = LoggerFactory.getLogger(kafkaProducer.class);
     // sending key(string) - value(byte array) pair
     private final KafkaTemplate<String, byte[]> kafkaTemplate;
 
@@ -19,35 +22,30 @@ public class kafkaProducer {
         this.kafkaTemplate = kafkaTemplate;
     }
 
-    // sending patient's info
-    // call this method in PatientService.java
-    public void sendPatientCreatedEvent(Patient patient) {
-        PatientEvent event = PatientEvent.newBuilder()
+    // patient's info, converted to byte array to keep the size of the event down
+    public PatientEvent buildPatientEvent(Patient patient, String eventType) {
+        return PatientEvent.newBuilder()
                 .setPatientId(patient.getId().toString())
                 .setName(patient.getName())
                 .setEmail(patient.getEmail())
+                .setEventType(eventType)
                 .build();
-
-        try {
-            kafkaTemplate.send("patient.created", event.toByteArray()); // converted to byte array to keep the size of the event down
-        } catch (Exception e) {
-            log.error("Error sending PatientCreated event: {}", event);
-        }
     }
 
-    public void sendBillingAccountEvent(String patientId, String name, String email) {
-        BillingAccountEvent event = BillingAccountEvent.newBuilder()
+    public BillingAccountEvent buildBillingAccountEvent(String patientId, String name, String email) {
+        return BillingAccountEvent.newBuilder()
                 .setPatientId(patientId)
                 .setName(name)
                 .setEmail(email)
                 .setEventType("BILLING_ACCOUNT_CREATE_REQUESTED")
                 .build();
-
-        try {
-            kafkaTemplate.send("billing-account", event.toByteArray());
-        }  catch (Exception e) {
-            log.error("Error sending BillingAccountCreated event: {}", e.getMessage());
-        }
     }
 
+    // keyed by patient id so the events of one patient land on the same partition in order
+    // the record timestamp is the time of the change (outbox createdAt), not the send time -> a retried old event
+    // still looks old to consumers comparing timestamps (appointment-service cached_patient)
+    // returns the future so the caller only marks the event as sent once Kafka acked it
+    public CompletableFuture<SendResult<String, byte[]>> send(String topic, String key, byte[] payload, Instant changedAt) {
+        return kafkaTemplate.send(new ProducerRecord<>(topic, null, changedAt.toEpochMilli(), key, payload));
+    }
 }
@@ -0,0 +1,163 @@
+package com.minthantoo.patient_service.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// A unit of work that has to happen after a patient write, saved in the same transaction as the patient row
+// so it can't get lost (or happen for a rolled back write).
+// Rows with a topic are Kafka events (sent by OutboxRelay), rows without a topic are billing account requests (gRPC, OutboxWorker).
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent implements Persistable<UUID> {
+    public static final String BILLING_ACCOUNT_CREATE = "BILLING_ACCOUNT_CREATE";
+    public static final String PATIENT_CREATED = "PATIENT_CREATED";
+    public static final String PATIENT_UPDATED = "PATIENT_UPDATED";
+    public static final String PATIENT_DELETED = "PATIENT_DELETED";
+    public static final String BILLING_ACCOUNT_CREATE_REQUESTED = "BILLING_ACCOUNT_CREATE_REQUESTED";
+
+    public enum Status { PENDING, PROCESSING, SENT, FAILED }
+
+    @Id
+    private UUID id;
+
+    @Column(nullable = false)
+    private String aggregateId; // patient id, also used as the Kafka key so events of one patient stay in order
+
+    @Column(nullable = false)
+    private String eventType;
+
+    private String topic;
+
+    @Column(nullable = false)
+    private byte[] payload; // protobuf bytes
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt; // PENDING -> earliest retry time, PROCESSING -> when the worker's claim expires
+
+    private Instant processedAt;
+
+    // the id is assigned here, not by the database -> without this Spring Data would treat every new event as existing
+    // and do merge (a SELECT per row) instead of a plain (batchable) INSERT
+    @Transient
+    private boolean isNew = true;
+
+    public OutboxEvent() {}
+
+    public OutboxEvent(String aggregateId, String eventType, String topic, byte[] payload) {
+        Instant now = Instant.now();
+        this.id = UUID.randomUUID();
+        this.aggregateId = aggregateId;
+        this.eventType = eventType;
+        this.topic = topic;
+        this.payload = payload;
+        this.status = Status.PENDING;
+        this.attempts = 0;
+        this.createdAt = now;
+        this.nextAttemptAt = now;
+    }
+
+    @Override
+    public UUID getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(String aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Instant nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public Instant getProcessedAt() {
+        return processedAt;
+    }
+
+    public void setProcessedAt(Instant processedAt) {
+        this.processedAt = processedAt;
+    }
+}
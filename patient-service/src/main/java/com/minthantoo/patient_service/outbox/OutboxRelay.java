@@ -0,0 +1,227 @@
+package com.minthantoo.patient_service.outbox;
+
+import com.minthantoo.patient_service.kafka.kafkaProducer;
+import com.minthantoo.patient_service.model.OutboxEvent;
+import com.minthantoo.patient_service.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Sends the Kafka events of the outbox table (patient created/updated/deleted, billing-account fallback).
+// Write side -> publish() saves the event in the caller's transaction, so an event exists exactly when the change committed.
+// Relay side -> one thread per instance claims a batch of due rows (FOR UPDATE SKIP LOCKED, then PROCESSING until
+// claim-timeout) and commits, sends the whole batch without waiting in between (the producer groups the records,
+// see linger.ms / batch.size), waits for the acks and marks the batch as sent with one UPDATE. No transaction or row
+// lock is held while waiting for Kafka. It runs right after a commit and on a timer for retries/leftovers.
+// Events of one patient go out in order, a patient's next event is only picked once the earlier one is sent (or FAILED).
+// Delivery is at least once, a crash between the ack and the UPDATE sends the batch again once the claim expired.
+@Component
+public class OutboxRelay {
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final kafkaProducer kafkaProducer;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration sendTimeout;
+    private final Duration claimTimeout;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration retention;
+    private final AtomicBoolean runRequested = new AtomicBoolean();
+
+    // a single relay thread, a queued run already covers every commit that happens before it starts
+    private final ExecutorService relayExecutor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1),
+            runnable -> {
+                Thread thread = new Thread(runnable, "outbox-relay");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       kafkaProducer kafkaProducer,
+                       MeterRegistry meterRegistry,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${patients.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${patients.outbox.relay.max-batches-per-run:20}") int maxBatchesPerRun,
+                       @Value("${patients.outbox.relay.send-timeout:30s}") Duration sendTimeout,
+                       @Value("${patients.outbox.claim-timeout:1m}") Duration claimTimeout,
+                       @Value("${patients.outbox.max-attempts:10}") int maxAttempts,
+                       @Value("${patients.outbox.retry-backoff:5s}") Duration retryBackoff,
+                       @Value("${patients.outbox.retention:7d}") Duration retention) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaProducer = kafkaProducer;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.sendTimeout = sendTimeout;
+        // a claim running out while we still wait for acks would let another relay send the batch a second time
+        this.claimTimeout = claimTimeout.compareTo(sendTimeout) > 0 ? claimTimeout : sendTimeout.multipliedBy(2);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+        this.retention = retention;
+    }
+
+    // call inside the transaction of the change the event is about
+    public OutboxEvent publish(OutboxEvent event) {
+        return publishAll(List.of(event)).get(0);
+    }
+
+    // the inserts are JDBC batched (hibernate.jdbc.batch_size)
+    public List<OutboxEvent> publishAll(List<OutboxEvent> events) {
+        List<OutboxEvent> saved = outboxEventRepository.saveAll(events);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    requestRun();
+                }
+            });
+        } else {
+            requestRun();
+        }
+        return saved;
+    }
+
+    @Scheduled(fixedDelayString = "${patients.outbox.relay.poll-interval:1s}")
+    public void poll() {
+        requestRun();
+    }
+
+    @Scheduled(fixedDelayString = "${patients.outbox.purge-interval:1h}")
+    public void purgeSentEvents() {
+        try {
+            int deleted = outboxEventRepository.deleteSentBefore(Instant.now().minus(retention));
+            if (deleted > 0) {
+                log.info("Purged {} sent outbox events", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("Could not purge sent outbox events: {}", e.getMessage());
+        }
+    }
+
+    // many commits at once -> still only one queued run
+    private void requestRun() {
+        if (!runRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            relayExecutor.execute(this::run);
+        } catch (RejectedExecutionException e) {
+            runRequested.set(false); // shutting down, the next instance/poll picks the rows up
+        }
+    }
+
+    private void run() {
+        runRequested.set(false);
+        try {
+            // keep going while there is something to send (a sent batch can unblock the next events of its patients),
+            // but give the timer a turn now and then
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                if (relayBatch() == 0) {
+                    return;
+                }
+            }
+            requestRun();
+        } catch (Exception e) {
+            log.warn("Outbox relay run failed: {}", e.getMessage());
+        }
+    }
+
+    // one claim + send + mark round, returns the number of events it claimed (package-private for tests)
+    int relayBatch() {
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            List<OutboxEvent> locked = outboxEventRepository.lockDueEvents(now, PageRequest.of(0, batchSize));
+            if (!locked.isEmpty()) {
+                outboxEventRepository.claimAll(locked.stream().map(OutboxEvent::getId).toList(), now.plus(claimTimeout));
+            }
+            return locked;
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<?>> acks = new ArrayList<>(batch.size());
+        for (OutboxEvent event : batch) {
+            try {
+                acks.add(kafkaProducer.send(event.getTopic(), event.getAggregateId(), event.getPayload(), event.getCreatedAt()));
+            } catch (Exception e) {
+                acks.add(CompletableFuture.failedFuture(e));
+            }
+        }
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        List<UUID> sent = new ArrayList<>(batch.size());
+        Map<OutboxEvent, Exception> failed = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            try {
+                acks.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                sent.add(event.getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.put(event, e);
+            } catch (Exception e) {
+                failed.put(event, e);
+            }
+        }
+
+        // if this fails the rows stay claimed and are sent again once the claim expired
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!sent.isEmpty()) {
+                outboxEventRepository.markSent(sent, Instant.now());
+            }
+            failed.forEach(this::retryLater);
+        });
+        meterRegistry.counter("custom.outbox.relay", "result", "sent").increment(sent.size());
+        meterRegistry.counter("custom.outbox.relay", "result", "failed").increment(failed.size());
+        return batch.size();
+    }
+
+    private void retryLater(OutboxEvent event, Exception e) {
+        int attempts = event.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            outboxEventRepository.reschedule(event.getId(), OutboxEvent.Status.FAILED, attempts, Instant.now());
+            log.error("Giving up on outbox event {} ({}) after {} attempts: {}", event.getId(), event.getEventType(), attempts, e.getMessage());
+        } else {
+            outboxEventRepository.reschedule(event.getId(), OutboxEvent.Status.PENDING, attempts,
+                    Instant.now().plus(retryBackoff.multipliedBy(attempts)));
+            log.warn("Outbox event {} ({}) not sent, attempt {}: {}", event.getId(), event.getEventType(), attempts, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,192 @@
+package com.minthantoo.patient_service.outbox;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import com.minthantoo.patient_service.grpc.BillingAccountBatcher;
+import com.minthantoo.patient_service.model.OutboxEvent;
+import com.minthantoo.patient_service.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the billing account requests of the outbox table (rows without a topic) off the request thread.
+// The gRPC calls are micro-batched by BillingAccountBatcher, so a worker isn't blocked while a call is in flight.
+// PatientService saves the patient and the request in one transaction, and right after the commit
+// the row is handed to a bounded worker pool. Anything the pool couldn't take (full, instance restarted, call failed)
+// is picked up again by the poller, so every row is eventually processed at least once.
+// The Kafka events of the same table are sent by OutboxRelay.
+// Billing account creation has to be idempotent on patientId for that reason.
+@Component
+public class OutboxWorker {
+    private static final Logger log = LoggerFactory.getLogger(OutboxWorker.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final BillingAccountBatcher billingAccountBatcher;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration claimTimeout;
+    private final Duration retryBackoff;
+    private final ExecutorService workers;
+
+    public OutboxWorker(OutboxEventRepository outboxEventRepository,
+                        BillingAccountBatcher billingAccountBatcher,
+                        MeterRegistry meterRegistry,
+                        @Value("${patients.outbox.worker.threads:4}") int threads,
+                        @Value("${patients.outbox.worker.queue-capacity:1000}") int queueCapacity,
+                        @Value("${patients.outbox.batch-size:100}") int batchSize,
+                        @Value("${patients.outbox.max-attempts:10}") int maxAttempts,
+                        @Value("${patients.outbox.claim-timeout:1m}") Duration claimTimeout,
+                        @Value("${patients.outbox.retry-backoff:5s}") Duration retryBackoff) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.billingAccountBatcher = billingAccountBatcher;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.claimTimeout = claimTimeout;
+        this.retryBackoff = retryBackoff;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        // bounded queue and no caller-runs -> a slow billing-service can never push work back onto request threads
+        this.workers = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "outbox-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // call inside the transaction of the patient write, the task is only handed to the workers once it committed
+    public OutboxEvent submit(OutboxEvent task) {
+        return submitAll(List.of(task)).get(0);
+    }
+
+    public List<OutboxEvent> submitAll(List<OutboxEvent> tasks) {
+        List<OutboxEvent> saved = outboxEventRepository.saveAll(tasks);
+        List<UUID> ids = saved.stream().map(OutboxEvent::getId).toList();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(ids);
+                }
+            });
+        } else {
+            dispatch(ids);
+        }
+        return saved;
+    }
+
+    @Scheduled(fixedDelayString = "${patients.outbox.poll-interval:1s}")
+    public void pollDueEvents() {
+        List<UUID> due;
+        try {
+            due = outboxEventRepository.findDueIds(Instant.now(), PageRequest.of(0, batchSize));
+        } catch (Exception e) {
+            log.warn("Could not poll outbox events: {}", e.getMessage());
+            return;
+        }
+        dispatch(due);
+    }
+
+    private void dispatch(List<UUID> eventIds) {
+        for (UUID id : eventIds) {
+            try {
+                workers.execute(() -> process(id));
+            } catch (RejectedExecutionException e) {
+                // pool is full, the row stays due and the poller tries again
+                meterRegistry.counter("custom.outbox.events", "result", "rejected").increment();
+                return;
+            }
+        }
+    }
+
+    // the worker thread only claims the row and submits the request, the billing call itself is batched with
+    // the requests of the other workers (BillingAccountBatcher) and the row is updated when its response arrives
+    private void process(UUID id) {
+        Instant now = Instant.now();
+        if (outboxEventRepository.claim(id, now, now.plus(claimTimeout)) == 0) {
+            return; // already done, or another worker/instance has it
+        }
+
+        OutboxEvent event = outboxEventRepository.findById(id).orElse(null);
+        if (event == null) {
+            return;
+        }
+
+        try {
+            if (!OutboxEvent.BILLING_ACCOUNT_CREATE.equals(event.getEventType())) {
+                throw new IllegalStateException("Unknown outbox event type " + event.getEventType());
+            }
+            BillingRequest request = BillingRequest.parseFrom(event.getPayload());
+            // retry + circuit breaker still apply, if billing-service is down the fallback queues the request for Kafka (outbox)
+            billingAccountBatcher.submit(request).whenComplete((response, error) -> {
+                // the response arrives on a gRPC thread, the database update belongs on our own pool
+                try {
+                    workers.execute(() -> complete(event, response, error));
+                } catch (RejectedExecutionException e) {
+                    // pool is full -> no JDBC on the gRPC thread, the row stays PROCESSING and the poller retries it
+                    // once the claim expired (billing is idempotent on patientId)
+                    meterRegistry.counter("custom.outbox.events", "result", "rejected").increment();
+                }
+            });
+        } catch (Exception e) {
+            complete(event, null, e);
+        }
+    }
+
+    private void complete(OutboxEvent event, BillingResponse response, Throwable error) {
+        if (error == null) {
+            log.info("Billing account for patient {} is {}", event.getAggregateId(), response.getStatus());
+            event.setStatus(OutboxEvent.Status.SENT);
+            event.setProcessedAt(Instant.now());
+            meterRegistry.counter("custom.outbox.events", "type", event.getEventType(), "result", "sent").increment();
+        } else {
+            int attempts = event.getAttempts() + 1;
+            event.setAttempts(attempts);
+            if (attempts >= maxAttempts) {
+                event.setStatus(OutboxEvent.Status.FAILED);
+                log.error("Giving up on outbox event {} ({}) after {} attempts: {}", event.getId(), event.getEventType(), attempts, error.getMessage());
+            } else {
+                event.setStatus(OutboxEvent.Status.PENDING);
+                // linear backoff, a billing-service outage shouldn't turn into a retry storm
+                event.setNextAttemptAt(Instant.now().plus(retryBackoff.multipliedBy(attempts)));
+                log.warn("Outbox event {} ({}) failed, attempt {}: {}", event.getId(), event.getEventType(), attempts, error.getMessage());
+            }
+            meterRegistry.counter("custom.outbox.events", "type", event.getEventType(), "result", "failed").increment();
+        }
+
+        try {
+            outboxEventRepository.save(event);
+        } catch (Exception e) {
+            // row stays PROCESSING, the poller retries it once the claim expires
+            log.warn("Could not update outbox event {}: {}", event.getId(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // whatever is still queued stays PENDING/PROCESSING in the table and is picked up after the restart
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,99 @@
+package com.minthantoo.patient_service.pagination;
+
+import com.minthantoo.patient_service.exception.InvalidCursorException;
+import com.minthantoo.patient_service.model.Patient;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Opaque keyset cursor -> remembers the sort key + id of the last patient on the page
+// so the next page can continue with "WHERE (sortField, id) > (lastValue, lastId)" instead of OFFSET.
+// The client just sends it back as is, the format is base64url("v1:sortField:direction:id:value").
+public class PatientCursor {
+    private static final String VERSION = "v1";
+
+    // only fields that are NOT NULL in the patient table can be used, a null key breaks the seek condition
+    public static final Set<String> SORTABLE_FIELDS = Set.of("name", "email", "address", "dateOfBirth", "registeredDate");
+
+    private final String sortField;
+    private final String direction;
+    private final UUID lastId;
+    private final String lastValue;
+
+    private PatientCursor(String sortField, String direction, UUID lastId, String lastValue) {
+        this.sortField = sortField;
+        this.direction = direction;
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+
+    // build the cursor that points right after the given patient
+    public static PatientCursor after(Patient patient, String sortField, String direction) {
+        return new PatientCursor(sortField, direction.toLowerCase(), patient.getId(), sortValueOf(patient, sortField));
+    }
+
+    public static PatientCursor decode(String token) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Cursor is not valid base64: " + token);
+        }
+
+        // value goes last because names and addresses can contain ':'
+        String[] parts = raw.split(":", 5);
+        if (parts.length != 5 || !VERSION.equals(parts[0]) || !SORTABLE_FIELDS.contains(parts[1])) {
+            throw new InvalidCursorException("Cursor format is not recognised: " + token);
+        }
+
+        try {
+            PatientCursor cursor = new PatientCursor(parts[1], parts[2], UUID.fromString(parts[3]), parts[4]);
+            cursor.typedSortValue(); // fail here instead of inside the query when a date was tampered with
+            return cursor;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Cursor contains an invalid sort key or patient id: " + token);
+        }
+    }
+
+    public String encode() {
+        String raw = String.join(":", VERSION, sortField, direction, lastId.toString(), lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // a cursor is only meaningful for the same ordering it was created with
+    public void verifySort(String sortField, String direction) {
+        if (!this.sortField.equals(sortField) || !this.direction.equalsIgnoreCase(direction)) {
+            throw new InvalidCursorException("Cursor was created for sort " + this.sortField + " " + this.direction
+                    + " but request asks for " + sortField + " " + direction);
+        }
+    }
+
+    // Spring Data turns these keys into the seek predicate, values must have the entity attribute types
+    public ScrollPosition toScrollPosition() {
+        return ScrollPosition.forward(Map.of(sortField, typedSortValue(), "id", lastId));
+    }
+
+    private Object typedSortValue() {
+        return switch (sortField) {
+            case "dateOfBirth", "registeredDate" -> LocalDate.parse(lastValue);
+            default -> lastValue;
+        };
+    }
+
+    private static String sortValueOf(Patient patient, String sortField) {
+        return switch (sortField) {
+            case "name" -> patient.getName();
+            case "email" -> patient.getEmail();
+            case "address" -> patient.getAddress();
+            case "dateOfBirth" -> patient.getDateOfBirth().toString();
+            case "registeredDate" -> patient.getRegisteredDate().toString();
+            default -> throw new InvalidCursorException("Sort field is not supported for cursor paging: " + sortField);
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package com.minthantoo.patient_service.repository;
+
+import com.minthantoo.patient_service.model.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, UUID> {
+
+    // billing tasks (no topic) for OutboxWorker
+    // due = pending and past its retry time, or processing but the worker's claim expired (worker died)
+    @Query("""
+            SELECT e.id FROM OutboxEvent e
+            WHERE e.topic IS NULL
+              AND e.status IN (com.minthantoo.patient_service.model.OutboxEvent.Status.PENDING,
+                               com.minthantoo.patient_service.model.OutboxEvent.Status.PROCESSING)
+              AND e.nextAttemptAt <= :now
+            ORDER BY e.nextAttemptAt
+            """)
+    List<UUID> findDueIds(@Param("now") Instant now, Pageable pageable);
+
+    // conditional update -> only one worker (in any instance) gets 1 back, everybody else skips the event
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE OutboxEvent e
+            SET e.status = com.minthantoo.patient_service.model.OutboxEvent.Status.PROCESSING, e.nextAttemptAt = :claimUntil
+            WHERE e.id = :id
+              AND e.status IN (com.minthantoo.patient_service.model.OutboxEvent.Status.PENDING,
+                               com.minthantoo.patient_service.model.OutboxEvent.Status.PROCESSING)
+              AND e.nextAttemptAt <= :now
+            """)
+    int claim(@Param("id") UUID id, @Param("now") Instant now, @Param("claimUntil") Instant claimUntil);
+
+    // Kafka events for OutboxRelay, oldest first
+    // due = pending and past its retry time, or in flight but the relay's claim expired (instance died while sending)
+    // An event waits while an earlier one of the same patient is still unsent (retrying or in flight), otherwise a retry
+    // would land on Kafka after the newer event. FAILED events don't hold the later ones back
+    // SELECT ... FOR UPDATE SKIP LOCKED (lock timeout -2 is Hibernate's SKIP LOCKED) -> relays in other instances
+    // skip the rows this one is claiming instead of waiting for them, so every instance works on a different batch
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("""
+            SELECT e FROM OutboxEvent e
+            WHERE e.topic IS NOT NULL
+              AND e.status IN (com.minthantoo.patient_service.model.OutboxEvent.Status.PENDING,
+                               com.minthantoo.patient_service.model.OutboxEvent.Status.PROCESSING)
+              AND e.nextAttemptAt <= :now
+              AND NOT EXISTS (
+                  SELECT 1 FROM OutboxEvent earlier
+                  WHERE earlier.aggregateId = e.aggregateId
+                    AND earlier.topic IS NOT NULL
+                    AND earlier.status IN (com.minthantoo.patient_service.model.OutboxEvent.Status.PENDING,
+                                           com.minthantoo.patient_service.model.OutboxEvent.Status.PROCESSING)
+                    AND earlier.createdAt < e.createdAt)
+            ORDER BY e.createdAt
+            """)
+    List<OutboxEvent> lockDueEvents(@Param("now") Instant now, Pageable pageable);
+
+    // marks a locked batch as in flight, the relay commits this before it sends so no row lock is held while waiting for acks
+    @Modifying
+    @Query("""
+            UPDATE OutboxEvent e
+            SET e.status = com.minthantoo.patient_service.model.OutboxEvent.Status.PROCESSING, e.nextAttemptAt = :claimUntil
+            WHERE e.id IN :ids
+            """)
+    int claimAll(@Param("ids") Collection<UUID> ids, @Param("claimUntil") Instant claimUntil);
+
+    // one UPDATE for the whole batch instead of one per row
+    @Modifying
+    @Query("""
+            UPDATE OutboxEvent e
+            SET e.status = com.minthantoo.patient_service.model.OutboxEvent.Status.SENT, e.processedAt = :now
+            WHERE e.id IN :ids
+            """)
+    int markSent(@Param("ids") Collection<UUID> ids, @Param("now") Instant now);
+
+    // a send that failed -> back to PENDING for a retry at nextAttemptAt, or FAILED
+    @Modifying
+    @Query("""
+            UPDATE OutboxEvent e
+            SET e.status = :status, e.attempts = :attempts, e.nextAttemptAt = :nextAttemptAt
+            WHERE e.id = :id
+            """)
+    int reschedule(@Param("id") UUID id, @Param("status") OutboxEvent.Status status,
+                   @Param("attempts") int attempts, @Param("nextAttemptAt") Instant nextAttemptAt);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            DELETE FROM OutboxEvent e
+            WHERE e.status = com.minthantoo.patient_service.model.OutboxEvent.Status.SENT
+              AND e.processedAt < :before
+            """)
+    int deleteSentBefore(@Param("before") Instant before);
+}
@@ -1,16 +1,68 @@
 package com.minthantoo.patient_service.repository;
 
 import com.minthantoo.patient_service.model.Patient;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, UUID> {
     boolean existsByEmail(String email);
     boolean existsByEmailAndIdNot(String email, UUID id);
     Page<Patient> findByNameContainingIgnoreCase(String name, Pageable pageable);
+
+    // bulk import -> one query for a whole batch instead of existsByEmail per row
+    @Query("SELECT p.email FROM Patient p WHERE p.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // export -> rows are fetched from the database cursor 1000 at a time while the stream is consumed,
+    // must be used inside a (read-only) transaction and closed. Read-only -> Hibernate keeps no dirty-checking snapshots
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT p FROM Patient p ORDER BY p.id")
+    Stream<Patient> streamAll();
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT p FROM Patient p WHERE upper(p.name) LIKE upper(concat('%', :name, '%')) ORDER BY p.id")
+    Stream<Patient> streamByNameContaining(@Param("name") String name);
+
+    // keyset (seek) paging -> WHERE (sortField, id) > (:lastValue, :lastId) ORDER BY sortField, id LIMIT n
+    // no OFFSET and no COUNT(*), so the cost of a page does not grow with how deep the client is
+    Window<Patient> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+    Window<Patient> findByNameContainingIgnoreCase(String name, ScrollPosition position, Sort sort, Limit limit);
+
+    // PostgreSQL only (pg_trgm), check PatientTrigramIndex.isAvailable() before calling
+    // <% -> fuzzy word match (tolerates typos), ILIKE prefix -> "jo" finds "John", both are served by the trigram GIN indexes
+    // ranking: name prefix hits first, then the best trigram similarity across name/email/address
+    @Query(value = """
+            SELECT * FROM patient p
+            WHERE :q <% p.name OR :q <% p.email OR :q <% p.address
+               OR p.name ILIKE :prefix OR p.email ILIKE :prefix
+            ORDER BY (p.name ILIKE :prefix) DESC,
+                     GREATEST(word_similarity(:q, p.name), word_similarity(:q, p.email), word_similarity(:q, p.address)) DESC,
+                     p.id
+            """,
+            countQuery = """
+            SELECT count(*) FROM patient p
+            WHERE :q <% p.name OR :q <% p.email OR :q <% p.address
+               OR p.name ILIKE :prefix OR p.email ILIKE :prefix
+            """,
+            nativeQuery = true)
+    Page<Patient> searchRanked(@Param("q") String searchValue, @Param("prefix") String prefixPattern, Pageable pageable);
 }
@@ -0,0 +1,122 @@
+package com.minthantoo.patient_service.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Trigram (pg_trgm) GIN indexes for patient search.
+// A trigram index can answer "contains", prefix and fuzzy (typo) matches without scanning the whole table,
+// which a plain b-tree index can't do for LIKE '%x%'.
+// Only PostgreSQL has pg_trgm, so on H2 (local dev / tests) this stays disabled and search falls back to LIKE.
+@Component
+public class PatientTrigramIndex {
+    private static final Logger log = LoggerFactory.getLogger(PatientTrigramIndex.class);
+
+    // CONCURRENTLY -> building the index on an existing big table does not block inserts/updates
+    // IF NOT EXISTS -> after the first start these are no-ops
+    // A CONCURRENTLY build that fails or is interrupted leaves an INVALID index behind, which IF NOT EXISTS would skip
+    // forever -> invalid ones are dropped and built again, see createIndexes
+    private static final Map<String, String> INDEXES = Map.of(
+            "idx_patient_name_trgm",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_patient_name_trgm ON patient USING gin (name gin_trgm_ops)",
+            "idx_patient_email_trgm",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_patient_email_trgm ON patient USING gin (email gin_trgm_ops)",
+            "idx_patient_address_trgm",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_patient_address_trgm ON patient USING gin (address gin_trgm_ops)",
+            // serves the derived findByNameContainingIgnoreCase query (cursor mode), which compiles to upper(name) LIKE upper(?)
+            "idx_patient_upper_name_trgm",
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_patient_upper_name_trgm ON patient USING gin (upper(name) gin_trgm_ops)"
+    );
+
+    private static final String INDEX_VALIDITY = """
+            SELECT c.relname, i.indisvalid
+            FROM pg_index i
+            JOIN pg_class c ON c.oid = i.indexrelid
+            WHERE c.relnamespace = current_schema()::regnamespace AND c.relname = ANY (?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private volatile boolean available = false;
+
+    public PatientTrigramIndex(JdbcTemplate jdbcTemplate,
+                               @Value("${patients.search.trigram.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    // runs after data.sql, so the patient table is there
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        if (!enabled || !isPostgres()) {
+            log.info("Trigram patient search disabled, search falls back to LIKE");
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            Map<String, Boolean> existing = indexValidity();
+            INDEXES.forEach((name, create) -> {
+                if (Boolean.FALSE.equals(existing.get(name))) {
+                    log.warn("Trigram index {} is invalid (an earlier build failed), rebuilding it", name);
+                    jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+                }
+                jdbcTemplate.execute(create);
+            });
+
+            // an index Postgres can't use makes word_similarity scan the whole table, slower than the LIKE fallback
+            Map<String, Boolean> built = indexValidity();
+            List<String> unusable = INDEXES.keySet().stream()
+                    .filter(name -> !Boolean.TRUE.equals(built.get(name)))
+                    .toList();
+            if (!unusable.isEmpty()) {
+                log.warn("Trigram indexes {} are not valid, search falls back to LIKE", unusable);
+                return;
+            }
+            available = true;
+            log.info("Trigram patient search indexes are ready");
+        } catch (Exception e) {
+            // e.g. the db user is not allowed to create extensions, search still works, just slower
+            log.warn("Could not create trigram indexes, search falls back to LIKE: {}", e.getMessage());
+        }
+    }
+
+    // index name -> indisvalid, only indexes that exist
+    private Map<String, Boolean> indexValidity() {
+        Map<String, Boolean> validity = new HashMap<>();
+        jdbcTemplate.query(INDEX_VALIDITY,
+                (ResultSet rs) -> {
+                    validity.put(rs.getString("relname"), rs.getBoolean("indisvalid"));
+                },
+                (Object) INDEXES.keySet().toArray(String[]::new));
+        return validity;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute(
+                (Connection connection) -> connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(product);
+    }
+
+    // user input is used as a LIKE prefix, so % and _ must not act as wildcards
+    public static String toPrefixPattern(String searchValue) {
+        return searchValue
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+}
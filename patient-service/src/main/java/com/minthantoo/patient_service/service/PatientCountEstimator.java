@@ -0,0 +1,39 @@
+package com.minthantoo.patient_service.service;
+
+import com.minthantoo.patient_service.repository.PatientRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+// COUNT(*) on a multi-million-row table is a full scan, so cursor paging does not run it per request.
+// The total is counted at most once per TTL and shared by every request, it can be a little behind after writes.
+@Component
+public class PatientCountEstimator {
+    private final PatientRepository patientRepository;
+    private final long ttlNanos;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    private record Snapshot(long count, long takenAt) {}
+
+    public PatientCountEstimator(PatientRepository patientRepository,
+                                 @Value("${patients.count-estimate.ttl:30s}") Duration ttl) {
+        this.patientRepository = patientRepository;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public long estimate() {
+        Snapshot current = snapshot.get();
+        long now = System.nanoTime();
+
+        if (current != null && now - current.takenAt() < ttlNanos) {
+            return current.count();
+        }
+
+        // a few requests may refresh at the same time right after expiry, that's fine for an estimate
+        Snapshot fresh = new Snapshot(patientRepository.count(), now);
+        snapshot.set(fresh);
+        return fresh.count();
+    }
+}
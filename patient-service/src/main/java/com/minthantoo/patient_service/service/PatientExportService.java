@@ -0,0 +1,76 @@
+package com.minthantoo.patient_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.minthantoo.patient_service.exporter.PatientExportWriter;
+import com.minthantoo.patient_service.model.Patient;
+import com.minthantoo.patient_service.repository.PatientRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Full (or name filtered) export of the patient table (GET /patients/export).
+// The rows come from a database cursor (Stream<Patient>, fetch size 1000) and are written to the response as they arrive,
+// and every patient is detached once written -> memory stays flat however big the table is.
+// It all runs in one REPEATABLE READ transaction, so the file is a consistent snapshot even while patients are being written.
+@Service
+public class PatientExportService {
+    private static final Logger log = LoggerFactory.getLogger(PatientExportService.class);
+
+    private final PatientRepository patientRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public PatientExportService(PatientRepository patientRepository,
+                                EntityManager entityManager,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.patientRepository = patientRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    // returns the number of exported patients
+    public long exportPatients(String format, String searchValue, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        Long exported;
+        try (PatientExportWriter writer = PatientExportWriter.open(format, out, objectMapper.getFactory())) {
+            exported = transactionTemplate.execute(status -> {
+                try (Stream<Patient> patients = searchValue == null || searchValue.isBlank()
+                        ? patientRepository.streamAll()
+                        : patientRepository.streamByNameContaining(searchValue)) {
+                    long count = 0;
+                    Iterator<Patient> iterator = patients.iterator();
+                    while (iterator.hasNext()) {
+                        Patient patient = iterator.next();
+                        writer.write(patient);
+                        entityManager.detach(patient);
+                        count++;
+                    }
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // client went away, nothing to do but stop
+                }
+            });
+        }
+
+        long rows = exported == null ? 0 : exported;
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        log.info("Exported {} patients as {} in {}s ({} rows/s)", rows, format, String.format("%.2f", seconds),
+                seconds > 0 ? Math.round(rows / seconds) : rows);
+        return rows;
+    }
+}
@@ -0,0 +1,250 @@
+package com.minthantoo.patient_service.service;
+
+import billing.BillingRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.minthantoo.patient_service.cache.PatientCacheVersion;
+import com.minthantoo.patient_service.dto.PatientImportErrorDTO;
+import com.minthantoo.patient_service.dto.PatientImportResultDTO;
+import com.minthantoo.patient_service.dto.PatientRequestDTO;
+import com.minthantoo.patient_service.dto.validators.CreatePatientValidationGroup;
+import com.minthantoo.patient_service.importer.PatientRecordReader;
+import com.minthantoo.patient_service.kafka.KafkaTopics;
+import com.minthantoo.patient_service.kafka.kafkaProducer;
+import com.minthantoo.patient_service.mapper.PatientMapper;
+import com.minthantoo.patient_service.model.OutboxEvent;
+import com.minthantoo.patient_service.model.Patient;
+import com.minthantoo.patient_service.outbox.OutboxRelay;
+import com.minthantoo.patient_service.outbox.OutboxWorker;
+import com.minthantoo.patient_service.repository.PatientRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.groups.Default;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Date;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Bulk import for onboarding a clinic (POST /patients/import).
+// The file is read line by line and handled in batches of batchSize rows, each batch is:
+//   validate (same validation groups as POST /patients) -> drop emails seen twice in the batch
+//   -> one query for the emails that already exist -> one JDBC batch insert for the patients
+//   -> patient.created events + billing requests into the outbox (batched inserts), in the same transaction.
+// Earlier batches are already committed, so a duplicate of an earlier row is found by the database check,
+// which keeps memory at one batch no matter how big the file is. Bad rows are reported, the rest is still imported.
+@Service
+public class PatientImportService {
+    private static final Logger log = LoggerFactory.getLogger(PatientImportService.class);
+
+    private static final String INSERT_PATIENT = """
+            INSERT INTO patient (id, name, email, address, date_of_birth, registered_date)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private final PatientRepository patientRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final kafkaProducer kafkaProducer;
+    private final OutboxRelay outboxRelay;
+    private final OutboxWorker outboxWorker;
+    private final PatientCacheVersion patientCacheVersion;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public PatientImportService(PatientRepository patientRepository,
+                                JdbcTemplate jdbcTemplate,
+                                Validator validator,
+                                ObjectMapper objectMapper,
+                                kafkaProducer kafkaProducer,
+                                OutboxRelay outboxRelay,
+                                OutboxWorker outboxWorker,
+                                PatientCacheVersion patientCacheVersion,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${patients.import.batch-size:1000}") int batchSize,
+                                @Value("${patients.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.patientRepository = patientRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.kafkaProducer = kafkaProducer;
+        this.outboxRelay = outboxRelay;
+        this.outboxWorker = outboxWorker;
+        this.patientCacheVersion = patientCacheVersion;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    private record Row(long line, Patient patient) {}
+
+    // per request state, the error list is capped so a completely broken file doesn't fill the heap
+    private class Result {
+        long received;
+        long imported;
+        long failed;
+        final List<PatientImportErrorDTO> errors = new ArrayList<>();
+
+        void fail(long line, String email, String message) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new PatientImportErrorDTO(line, email, message));
+            }
+        }
+
+        PatientImportResultDTO toDTO() {
+            errors.sort(Comparator.comparingLong(PatientImportErrorDTO::getLine));
+            return new PatientImportResultDTO(received, imported, failed, errors, failed > errors.size());
+        }
+    }
+
+    public PatientImportResultDTO importPatients(String contentType, InputStream in) throws IOException {
+        Result result = new Result();
+        List<Row> batch = new ArrayList<>(batchSize);
+
+        try (PatientRecordReader reader = PatientRecordReader.open(contentType, in, objectMapper)) {
+            PatientRecordReader.Record record;
+            while ((record = reader.next()) != null) {
+                result.received++;
+                Row row = validate(record, result);
+                if (row == null) {
+                    continue;
+                }
+
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    importBatch(batch, result);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                importBatch(batch, result);
+            }
+        } finally {
+            // also after a broken upload, the batches before it are committed
+            if (result.imported > 0) {
+                patientCacheVersion.bump("import");
+            }
+        }
+
+        log.info("Patient import finished: {} rows, {} imported, {} failed", result.received, result.imported, result.failed);
+        return result.toDTO();
+    }
+
+    private Row validate(PatientRecordReader.Record record, Result result) {
+        if (record.error() != null) {
+            result.fail(record.line(), null, record.error());
+            return null;
+        }
+
+        PatientRequestDTO request = record.patient();
+        Set<ConstraintViolation<PatientRequestDTO>> violations =
+                validator.validate(request, Default.class, CreatePatientValidationGroup.class);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            result.fail(record.line(), request.getEmail(), message);
+            return null;
+        }
+
+        try {
+            Patient patient = PatientMapper.toModel(request);
+            patient.setId(UUID.randomUUID());
+            return new Row(record.line(), patient);
+        } catch (DateTimeParseException e) {
+            result.fail(record.line(), request.getEmail(), "Dates must be yyyy-MM-dd: " + e.getParsedString());
+            return null;
+        }
+    }
+
+    private void importBatch(List<Row> batch, Result result) {
+        // first row wins when the same email is in the batch twice
+        Map<String, Row> byEmail = new LinkedHashMap<>();
+        for (Row row : batch) {
+            Row first = byEmail.putIfAbsent(row.patient().getEmail(), row);
+            if (first != null) {
+                result.fail(row.line(), row.patient().getEmail(), "Duplicate email in import, first seen on line " + first.line());
+            }
+        }
+
+        Set<String> existing = new HashSet<>(patientRepository.findExistingEmails(byEmail.keySet()));
+        List<Row> rows = new ArrayList<>(byEmail.size());
+        for (Row row : byEmail.values()) {
+            if (existing.contains(row.patient().getEmail())) {
+                result.fail(row.line(), row.patient().getEmail(), "Email address already exists");
+            } else {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(rows));
+            result.imported += rows.size();
+        } catch (DataIntegrityViolationException e) {
+            // someone created one of these emails between our check and the insert -> fall back to row by row
+            for (Row row : rows) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(row)));
+                    result.imported++;
+                } catch (DataIntegrityViolationException rowError) {
+                    result.fail(row.line(), row.patient().getEmail(), "Email address already exists");
+                }
+            }
+        }
+    }
+
+    private void insert(List<Row> rows) {
+        jdbcTemplate.batchUpdate(INSERT_PATIENT, rows, rows.size(), (statement, row) -> {
+            Patient patient = row.patient();
+            statement.setObject(1, patient.getId());
+            statement.setString(2, patient.getName());
+            statement.setString(3, patient.getEmail());
+            statement.setString(4, patient.getAddress());
+            statement.setDate(5, Date.valueOf(patient.getDateOfBirth()));
+            statement.setDate(6, Date.valueOf(patient.getRegisteredDate()));
+        });
+
+        List<OutboxEvent> events = new ArrayList<>(rows.size());
+        List<OutboxEvent> billingRequests = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Patient patient = row.patient();
+            String patientId = patient.getId().toString();
+            events.add(new OutboxEvent(patientId, OutboxEvent.PATIENT_CREATED, KafkaTopics.PATIENT_CREATED,
+                    kafkaProducer.buildPatientEvent(patient, OutboxEvent.PATIENT_CREATED).toByteArray()));
+            billingRequests.add(new OutboxEvent(patientId, OutboxEvent.BILLING_ACCOUNT_CREATE, null,
+                    BillingRequest.newBuilder()
+                            .setPatientId(patientId)
+                            .setName(patient.getName())
+                            .setEmail(patient.getEmail())
+                            .build()
+                            .toByteArray()));
+        }
+
+        // billing always goes through the outbox here, tens of thousands of blocking gRPC calls on the request thread won't do
+        outboxRelay.publishAll(events);
+        outboxWorker.submitAll(billingRequests);
+    }
+}
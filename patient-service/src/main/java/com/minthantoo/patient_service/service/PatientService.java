@@ -1,50 +1,99 @@
 package com.minthantoo.patient_service.service;
 
+import com.minthantoo.patient_service.cache.PatientCacheVersion;
+import com.minthantoo.patient_service.dto.CursorPagedPatientResponseDTO;
 import com.minthantoo.patient_service.dto.PagedPatientResponseDTO;
 import com.minthantoo.patient_service.dto.PatientRequestDTO;
 import com.minthantoo.patient_service.dto.PatientResponseDTO;
 import com.minthantoo.patient_service.exception.EmailAlreadyExistsException;
+import com.minthantoo.patient_service.exception.InvalidCursorException;
 import com.minthantoo.patient_service.exception.PatientNotFoundException;
-import com.minthantoo.patient_service.grpc.BillingServiceGrpcClient;
+import com.minthantoo.patient_service.grpc.BillingAccountBatcher;
+import com.minthantoo.patient_service.kafka.KafkaTopics;
 import com.minthantoo.patient_service.kafka.kafkaProducer;
 import com.minthantoo.patient_service.mapper.PatientMapper;
+import com.minthantoo.patient_service.model.OutboxEvent;
 import com.minthantoo.patient_service.model.Patient;
+import com.minthantoo.patient_service.outbox.OutboxRelay;
+import com.minthantoo.patient_service.outbox.OutboxWorker;
+import com.minthantoo.patient_service.pagination.PatientCursor;
 import com.minthantoo.patient_service.repository.PatientRepository;
+import com.minthantoo.patient_service.search.PatientTrigramIndex;
+import billing.BillingRequest;
+import billing.BillingResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class PatientService {
     private static final Logger log = LoggerFactory.getLogger(PatientService.class);
     private final PatientRepository patientRepository;
-    private final BillingServiceGrpcClient billingServiceGrpcClient;
+    private final BillingAccountBatcher billingAccountBatcher;
     private final kafkaProducer kafkaProducer;
+    private final PatientCountEstimator patientCountEstimator;
+    private final PatientTrigramIndex patientTrigramIndex;
+    private final PatientCacheVersion patientCacheVersion;
+    private final OutboxWorker outboxWorker;
+    private final OutboxRelay outboxRelay;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean asyncCreate;
+    private final Duration billingWait;
+    private final int maxPageSize;
 
     public PatientService(PatientRepository patientRepository,
-                           BillingServiceGrpcClient billingServiceGrpcClient,
-                           kafkaProducer kafkaProducer) {
+                           BillingAccountBatcher billingAccountBatcher,
+                           kafkaProducer kafkaProducer,
+                           PatientCountEstimator patientCountEstimator,
+                           PatientTrigramIndex patientTrigramIndex,
+                           PatientCacheVersion patientCacheVersion,
+                           OutboxWorker outboxWorker,
+                           OutboxRelay outboxRelay,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${patients.create.mode:sync}") String createMode,
+                           @Value("${patients.create.billing-wait:15s}") Duration billingWait,
+                           @Value("${patients.page.max-size:1000}") int maxPageSize) {
         this.patientRepository = patientRepository;
-        this.billingServiceGrpcClient = billingServiceGrpcClient;
+        this.billingAccountBatcher = billingAccountBatcher;
         this.kafkaProducer = kafkaProducer;
+        this.patientCountEstimator = patientCountEstimator;
+        this.patientTrigramIndex = patientTrigramIndex;
+        this.patientCacheVersion = patientCacheVersion;
+        this.outboxWorker = outboxWorker;
+        this.outboxRelay = outboxRelay;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.asyncCreate = createMode.equalsIgnoreCase("async");
+        this.billingWait = billingWait;
+        this.maxPageSize = maxPageSize;
     }
 
     // The flow is we get the patients from database.
     // Got a patientPage object _ this has patients + pagination info.
     // we take just the patients out of that patientPage object and turn them into DTOs meaning without pagination info(not to expose entities)
     // Finally, we put those DTOs back together with the pagination info into our own response object (PagedPatientResponseDTO) and return it.
+    // key starts with the cache generation (see PatientCacheVersion), writes bump it so stale pages are never served
+    // sync = true -> concurrent misses for the same page share one load instead of all hitting the database (SingleFlightLoader)
     @Cacheable(
             value = "patients",
-            key = "#page + '-' + #size + '-' + #sort + '-' + #sortField",
+            sync = true,
+            key = "@patientCacheVersion.current() + '-' + #page + '-' + #size + '-' + #sort + '-' + #sortField",
             condition = "#searchValue == ''" // only cache response when searchValue is empty string
     )
     public PagedPatientResponseDTO getPatients(int page, int size, String sort, String sortField, String searchValue) {
@@ -66,6 +115,10 @@ public class PatientService {
         // Got a patientPage object _ this has patients + pagination info.
         if(searchValue == null || searchValue.isBlank()) {
             patientPage = patientRepository.findAll(pageable);
+        } else if (patientTrigramIndex.isAvailable()) {
+            // ranked by relevance (not by sortField), searches name, email and address using the trigram indexes
+            patientPage = patientRepository.searchRanked(searchValue, PatientTrigramIndex.toPrefixPattern(searchValue),
+                    PageRequest.of(page - 1, size));
         } else {
             patientPage = patientRepository.findByNameContainingIgnoreCase(searchValue, pageable);
         }
@@ -84,19 +137,128 @@ public class PatientService {
         );
     }
 
+    // Keyset (seek) version of getPatients for deep paging.
+    // Instead of OFFSET, the cursor carries the sort key + id of the last patient the client saw,
+    // so every page is one index range scan no matter how far the client has scrolled.
+    // The total is skipped unless asked for, and then it comes from the cached estimate instead of COUNT(*) per call.
+    public CursorPagedPatientResponseDTO getPatientsByCursor(String cursor, int size, String sort, String sortField,
+                                                             String searchValue, boolean includeTotal) {
+        if (!PatientCursor.SORTABLE_FIELDS.contains(sortField)) {
+            throw new InvalidCursorException("Sort field is not supported for cursor paging: " + sortField);
+        }
+
+        String direction = sort.equalsIgnoreCase("desc") ? "desc" : "asc";
+        Sort.Direction sortDirection = Sort.Direction.fromString(direction);
+
+        // id is the tie-breaker so that patients with the same name are never skipped or repeated
+        Sort keysetSort = Sort.by(sortDirection, sortField).and(Sort.by(sortDirection, "id"));
+
+        ScrollPosition position = ScrollPosition.keyset(); // first page
+        if (cursor != null && !cursor.isBlank()) {
+            PatientCursor decoded = PatientCursor.decode(cursor);
+            decoded.verifySort(sortField, direction);
+            position = decoded.toScrollPosition();
+        }
+
+        // Limit.of rejects 0 and negative sizes, a huge one would load the whole table
+        Limit limit = Limit.of(Math.max(1, Math.min(size, maxPageSize)));
+
+        Window<Patient> window;
+        if (searchValue == null || searchValue.isBlank()) {
+            window = patientRepository.findAllBy(position, keysetSort, limit);
+        } else {
+            window = patientRepository.findByNameContainingIgnoreCase(searchValue, position, keysetSort, limit);
+        }
+
+        List<Patient> content = window.getContent();
+        String nextCursor = window.hasNext() && !content.isEmpty()
+                ? PatientCursor.after(content.get(content.size() - 1), sortField, direction).encode()
+                : null;
+
+        // estimate only makes sense for the whole table, not for a search
+        Long totalElements = includeTotal && (searchValue == null || searchValue.isBlank())
+                ? patientCountEstimator.estimate()
+                : null;
+
+        return new CursorPagedPatientResponseDTO(
+                content.stream().map(PatientMapper::toDTO).toList(),
+                content.size(),
+                nextCursor,
+                nextCursor != null,
+                totalElements
+        );
+    }
+
     public PatientResponseDTO createPatient(PatientRequestDTO patientRequestDTO) {
         if(patientRepository.existsByEmail(patientRequestDTO.getEmail())) {
             throw new EmailAlreadyExistsException("A patient with this email " + "already exists" + patientRequestDTO.getEmail());
         }
 
-        Patient newPatient = patientRepository.save(PatientMapper.toModel(patientRequestDTO));
+        if (asyncCreate) {
+            return createPatientAsync(patientRequestDTO);
+        }
+
+        // patient row and patient.created event commit together (OutboxRelay sends it)
+        Patient newPatient = transactionTemplate.execute(status -> {
+            Patient patient = patientRepository.save(PatientMapper.toModel(patientRequestDTO));
+            publishPatientEvent(patient, OutboxEvent.PATIENT_CREATED, KafkaTopics.PATIENT_CREATED);
+            return patient;
+        });
+
+        // cached pages may not contain the new patient anymore
+        patientCacheVersion.bump("create");
 
         // calling billing-service grpc client to create account for them
-        billingServiceGrpcClient.createBillingAccount(newPatient.getId().toString(), newPatient.getName(), newPatient.getEmail());
+        // concurrent creates share one CreateBillingAccounts call (BillingAccountBatcher), the fallback still answers PENDING
+        String billingStatus = awaitBillingAccount(billingRequest(newPatient));
+
+        PatientResponseDTO response = PatientMapper.toDTO(newPatient);
+        response.setBillingStatus(billingStatus);
+        return response;
+    }
 
-        // calling kafka
-        kafkaProducer.sendPatientCreatedEvent(newPatient);
-        return PatientMapper.toDTO(newPatient);
+    // The patient is already committed here, so billing can't fail the request anymore.
+    // Normally the fallback answers PENDING itself, but if it can't run (its pool rejected the task, the batcher was
+    // interrupted) or the answer takes longer than billing-wait, we queue the account request the same way the fallback
+    // does and answer PENDING. billing-service creates accounts idempotently, so a late gRPC success on top of that is fine.
+    private String awaitBillingAccount(BillingRequest request) {
+        try {
+            return billingAccountBatcher.submit(request)
+                    .orTimeout(billingWait.toMillis(), TimeUnit.MILLISECONDS)
+                    .join()
+                    .getStatus();
+        } catch (RuntimeException e) {
+            log.warn("No billing account answer for patient {}, queueing the request: {}", request.getPatientId(), e.toString());
+            try {
+                transactionTemplate.executeWithoutResult(status -> outboxRelay.publish(new OutboxEvent(request.getPatientId(),
+                        OutboxEvent.BILLING_ACCOUNT_CREATE_REQUESTED, KafkaTopics.BILLING_ACCOUNT,
+                        kafkaProducer.buildBillingAccountEvent(request.getPatientId(), request.getName(), request.getEmail()).toByteArray())));
+            } catch (RuntimeException outboxError) {
+                log.error("Could not queue the billing account request for patient {}", request.getPatientId(), outboxError);
+            }
+            return "PENDING";
+        }
+    }
+
+    // patients.create.mode=async
+    // only the database work happens on the request thread -> the patient row and the two outbox rows
+    // (billing account request + patient.created event) commit together, OutboxWorker and OutboxRelay do the rest in the background.
+    // So the response time no longer depends on billing-service, the client gets billingStatus PENDING.
+    private PatientResponseDTO createPatientAsync(PatientRequestDTO patientRequestDTO) {
+        Patient newPatient = transactionTemplate.execute(status -> {
+            Patient patient = patientRepository.save(PatientMapper.toModel(patientRequestDTO));
+
+            outboxWorker.submit(new OutboxEvent(patient.getId().toString(), OutboxEvent.BILLING_ACCOUNT_CREATE, null,
+                    billingRequest(patient).toByteArray()));
+            publishPatientEvent(patient, OutboxEvent.PATIENT_CREATED, KafkaTopics.PATIENT_CREATED);
+            return patient;
+        });
+
+        patientCacheVersion.bump("create");
+
+        PatientResponseDTO response = PatientMapper.toDTO(newPatient);
+        response.setBillingStatus("PENDING");
+        return response;
     }
 
     public PatientResponseDTO updatePatient(UUID id, PatientRequestDTO patientRequestDTO) {
@@ -112,12 +274,35 @@ public class PatientService {
         patient.setEmail(patientRequestDTO.getEmail());
         patient.setDateOfBirth(LocalDate.parse(patientRequestDTO.getDateOfBirth()));
 
-        Patient updatedPatient = patientRepository.save(patient);
+        Patient updatedPatient = transactionTemplate.execute(status -> {
+            Patient saved = patientRepository.save(patient);
+            publishPatientEvent(saved, OutboxEvent.PATIENT_UPDATED, KafkaTopics.PATIENT_UPDATED);
+            return saved;
+        });
+        patientCacheVersion.bump("update");
 
         return PatientMapper.toDTO(updatedPatient);
     }
 
     public void deletePatient(UUID id) {
-        patientRepository.deleteById(id);
+        transactionTemplate.executeWithoutResult(status -> patientRepository.findById(id).ifPresent(patient -> {
+            patientRepository.delete(patient);
+            publishPatientEvent(patient, OutboxEvent.PATIENT_DELETED, KafkaTopics.PATIENT_DELETED);
+        }));
+        patientCacheVersion.bump("delete");
+    }
+
+    private static BillingRequest billingRequest(Patient patient) {
+        return BillingRequest.newBuilder()
+                .setPatientId(patient.getId().toString())
+                .setName(patient.getName())
+                .setEmail(patient.getEmail())
+                .build();
+    }
+
+    // has to run inside the transaction of the change, see OutboxRelay
+    private void publishPatientEvent(Patient patient, String eventType, String topic) {
+        outboxRelay.publish(new OutboxEvent(patient.getId().toString(), eventType, topic,
+                kafkaProducer.buildPatientEvent(patient, eventType).toByteArray()));
     }
 }
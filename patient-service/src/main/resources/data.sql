@@ -9,6 +9,33 @@ CREATE TABLE IF NOT EXISTS patient
     registered_date DATE                NOT NULL
 );
 
+-- Indexes for keyset (cursor) paging, (sort key, id) matches the ORDER BY so a page is one index range scan
+CREATE INDEX IF NOT EXISTS idx_patient_name_id ON patient (name, id);
+CREATE INDEX IF NOT EXISTS idx_patient_email_id ON patient (email, id);
+CREATE INDEX IF NOT EXISTS idx_patient_address_id ON patient (address, id);
+CREATE INDEX IF NOT EXISTS idx_patient_date_of_birth_id ON patient (date_of_birth, id);
+CREATE INDEX IF NOT EXISTS idx_patient_registered_date_id ON patient (registered_date, id);
+
+-- Transactional outbox, written in the same transaction as the patient row (see OutboxWorker)
+CREATE TABLE IF NOT EXISTS outbox_event
+(
+    id              UUID PRIMARY KEY,
+    aggregate_id    VARCHAR(255)             NOT NULL,
+    event_type      VARCHAR(255)             NOT NULL,
+    topic           VARCHAR(255),
+    payload         BYTEA                    NOT NULL,
+    status          VARCHAR(32)              NOT NULL,
+    attempts        INTEGER                  NOT NULL,
+    created_at      TIMESTAMP WITH TIME ZONE NOT NULL,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    processed_at    TIMESTAMP WITH TIME ZONE
+);
+
+-- the poller only looks for due PENDING/PROCESSING rows, sent rows pile up behind them
+CREATE INDEX IF NOT EXISTS idx_outbox_event_status_next_attempt ON outbox_event (status, next_attempt_at);
+-- the relay's "earlier unsent event of the same patient" check
+CREATE INDEX IF NOT EXISTS idx_outbox_event_aggregate_created ON outbox_event (aggregate_id, created_at);
+
 -- Insert well-known UUIDs for specific patients
 INSERT INTO patient (id, name, email, address, date_of_birth, registered_date)
 SELECT '123e4567-e89b-12d3-a456-426614174000',
@@ -0,0 +1,128 @@
+package com.minthantoo.patient_service.benchmark;
+
+import billing.BillingBatchRequest;
+import billing.BillingBatchResponse;
+import billing.BillingRequest;
+import billing.BillingResponse;
+import billing.BillingServiceGrpc;
+import com.minthantoo.patient_service.grpc.BillingAccountBatcher;
+import com.minthantoo.patient_service.grpc.GrpcFutures;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Load test -> billing accounts/second, one unary CreateBillingAccount per patient vs BillingAccountBatcher
+// (CreateBillingAccounts), 64 concurrent callers against a local gRPC server over a real socket.
+// The fake server spends callCostMicros per call (think one database commit) plus a little per account,
+// which is what batching saves: the per-call part is paid once per batch instead of once per account.
+// Run main() from the IDE, or: mvn test-compile, then run this class with the test classpath.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class BillingBatchingBenchmark {
+    private static final long PER_ACCOUNT_NANOS = 10_000;
+
+    @Param({"unary", "batched"})
+    public String mode;
+
+    @Param({"0", "500"})
+    public long callCostMicros;
+
+    private Server server;
+    private ManagedChannel channel;
+    private BillingServiceGrpc.BillingServiceBlockingStub stub;
+    private BillingServiceGrpc.BillingServiceFutureStub futureStub;
+    private BillingAccountBatcher batcher;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        long callCostNanos = TimeUnit.MICROSECONDS.toNanos(callCostMicros);
+        server = Grpc.newServerBuilderForPort(0, InsecureServerCredentials.create())
+                .addService(new BillingServiceGrpc.BillingServiceImplBase() {
+                    @Override
+                    public void createBillingAccount(BillingRequest request, StreamObserver<BillingResponse> responseObserver) {
+                        work(callCostNanos + PER_ACCOUNT_NANOS);
+                        responseObserver.onNext(response(request));
+                        responseObserver.onCompleted();
+                    }
+
+                    @Override
+                    public void createBillingAccounts(BillingBatchRequest request, StreamObserver<BillingBatchResponse> responseObserver) {
+                        work(callCostNanos + PER_ACCOUNT_NANOS * request.getRequestsCount());
+                        BillingBatchResponse.Builder batch = BillingBatchResponse.newBuilder();
+                        request.getRequestsList().forEach(r -> batch.addResponses(response(r)));
+                        responseObserver.onNext(batch.build());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+
+        channel = Grpc.newChannelBuilderForAddress("localhost", server.getPort(), InsecureChannelCredentials.create()).build();
+        stub = BillingServiceGrpc.newBlockingStub(channel);
+        futureStub = BillingServiceGrpc.newFutureStub(channel);
+        batcher = new BillingAccountBatcher(
+                requests -> GrpcFutures.toCompletableFuture(
+                        futureStub.createBillingAccounts(BillingBatchRequest.newBuilder().addAllRequests(requests).build()))
+                        .thenApply(BillingBatchResponse::getResponsesList),
+                100, Duration.ofMillis(5), 4);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        batcher.shutdown();
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // one operation = one billing account
+    @Benchmark
+    public BillingResponse createAccount() {
+        BillingRequest request = BillingRequest.newBuilder()
+                .setPatientId(UUID.randomUUID().toString())
+                .setName("Patient Name")
+                .setEmail("patient@example.com")
+                .build();
+
+        return mode.equals("unary")
+                ? stub.createBillingAccount(request)
+                : batcher.submit(request).join();
+    }
+
+    private static void work(long nanos) {
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    private static BillingResponse response(BillingRequest request) {
+        return BillingResponse.newBuilder()
+                .setAccountId(UUID.randomUUID().toString())
+                .setStatus("ACTIVE")
+                .setPatientId(request.getPatientId())
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BillingBatchingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,78 @@
+package com.minthantoo.patient_service.benchmark;
+
+import com.minthantoo.patient_service.cache.ProtobufPatientRedisSerializer;
+import com.minthantoo.patient_service.cache.RedisCacheConfig;
+import com.minthantoo.patient_service.dto.PagedPatientResponseDTO;
+import com.minthantoo.patient_service.dto.PatientResponseDTO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// JSON (current) vs protobuf vs protobuf + LZ4 for a cached patients page.
+// Run main() from the IDE, or: mvn test-compile, then run this class with the test classpath.
+// Bytes per entry are printed once per trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheSerializerBenchmark {
+
+    @Param({"json", "protobuf", "protobuf-lz4"})
+    public String format;
+
+    @Param({"10", "100"})
+    public int pageSize;
+
+    private RedisSerializer<Object> serializer;
+    private PagedPatientResponseDTO page;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializer = switch (format) {
+            case "json" -> RedisCacheConfig.jsonSerializer();
+            case "protobuf" -> new ProtobufPatientRedisSerializer(0);
+            default -> new ProtobufPatientRedisSerializer(1); // always compress
+        };
+
+        List<PatientResponseDTO> patients = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            PatientResponseDTO patient = new PatientResponseDTO();
+            patient.setId(UUID.randomUUID().toString());
+            patient.setName("Patient Name " + i);
+            patient.setEmail("patient." + i + "@example.com");
+            patient.setAddress(i + " Main St, Springfield");
+            patient.setDateOfBirth("1985-06-15");
+            patients.add(patient);
+        }
+        page = new PagedPatientResponseDTO(patients, 1, pageSize, 1000, 1000 * pageSize);
+        serialized = serializer.serialize(page);
+
+        System.out.printf("%n[%s, pageSize=%d] bytes per entry: %d%n", format, pageSize, serialized.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(page);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(serialized);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheSerializerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,68 @@
+package com.minthantoo.patient_service.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.minthantoo.patient_service.exporter.PatientExportWriter;
+import com.minthantoo.patient_service.model.Patient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Export formatting throughput in rows/second (ndjson vs csv), written to a discarding stream.
+// This is the CPU side only, the end to end number against PostgreSQL comes from benchmarks/patient-service/patient-export.sh.
+// Run main() from the IDE, or: mvn test-compile, then run this class with the test classpath.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientExportBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({"ndjson", "csv"})
+    public String format;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private Patient[] patients;
+    private OutputStream sink;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        patients = new Patient[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            Patient patient = new Patient();
+            patient.setId(UUID.randomUUID());
+            patient.setName("Patient Name " + i);
+            patient.setEmail("patient." + i + "@example.com");
+            patient.setAddress(i + " Main St, Springfield"); // has a comma -> quoted in csv
+            patient.setDateOfBirth(LocalDate.of(1985, 6, 15).plusDays(i % 1000));
+            patient.setRegisteredDate(LocalDate.of(2024, 1, 10));
+            patients[i] = patient;
+        }
+        sink = OutputStream.nullOutputStream();
+    }
+
+    // one operation = one row
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void export() throws IOException {
+        try (PatientExportWriter writer = PatientExportWriter.open(format, sink, jsonFactory)) {
+            for (Patient patient : patients) {
+                writer.write(patient);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PatientExportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,137 @@
+package com.minthantoo.patient_service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Concurrent misses for the same key inside one instance must end up as one database load.
+// The remote (Redis) level is a plain map, the Redis template is a mock -> taking the load lock fails, which the
+// loader treats as "no Redis", so only the in-instance coalescing is tested here.
+class SingleFlightLoaderTest {
+    private static final int THREADS = 20;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Cache remote = new ConcurrentMapCache("patients");
+    private final SingleFlightLoader loader = new SingleFlightLoader("patients", remote, "patients::",
+            mock(StringRedisTemplate.class), meterRegistry,
+            new SingleFlightLoader.Settings(Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofMillis(10), 0));
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentMissesForTheSameKeyLoadOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Object> values = loadConcurrently("1-10-asc-name", () -> {
+            loads.incrementAndGet();
+            awaitCoalesced(THREADS - 1); // keep the load running until every other thread waits on it
+            return "page";
+        });
+
+        assertEquals(1, loads.get());
+        values.forEach(value -> assertEquals("page", value));
+        assertEquals(THREADS - 1, count("coalesced"));
+        assertEquals("page", remote.get("1-10-asc-name").get());
+    }
+
+    @Test
+    void aFailedLoadFailsEveryWaiterAndIsNotCached() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        List<Object> results = loadConcurrently("1-10-asc-name", () -> {
+            loads.incrementAndGet();
+            awaitCoalesced(THREADS - 1);
+            throw new IllegalStateException("database down");
+        });
+
+        assertEquals(1, loads.get());
+        results.forEach(result -> assertInstanceOf(Cache.ValueRetrievalException.class, result));
+        assertNull(remote.get("1-10-asc-name"));
+
+        // nothing in flight anymore, the next miss loads again
+        assertEquals("page", loader.load("1-10-asc-name", () -> "page"));
+    }
+
+    @Test
+    void earlyRefreshRunsOnTheCallingThreadInsideTheGet() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        // 1ms left on the Redis entry and a huge beta -> every hit refreshes
+        when(redisTemplate.getExpire("patients::1-10-asc-name", TimeUnit.MILLISECONDS)).thenReturn(1L);
+        SingleFlightLoader refreshing = new SingleFlightLoader("patients", remote, "patients::", redisTemplate, meterRegistry,
+                new SingleFlightLoader.Settings(Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofMillis(10), 1_000_000));
+        assertEquals("page", refreshing.load("1-10-asc-name", () -> "page"));
+
+        Thread caller = Thread.currentThread();
+        assertEquals("refreshed", refreshing.load("1-10-asc-name", () -> {
+            assertSame(caller, Thread.currentThread());
+            return "refreshed";
+        }));
+        assertEquals("refreshed", remote.get("1-10-asc-name").get());
+        assertEquals(1, count("early-refresh"));
+
+        // a failed refresh still answers with the cached page
+        assertEquals("refreshed", refreshing.load("1-10-asc-name", () -> {
+            throw new IllegalStateException("database down");
+        }));
+    }
+
+    // value of each thread, or the exception it got
+    private List<Object> loadConcurrently(String key, Callable<?> valueLoader) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    return loader.load(key, valueLoader);
+                } catch (RuntimeException e) {
+                    return e;
+                }
+            }));
+        }
+        start.countDown();
+
+        List<Object> results = new ArrayList<>();
+        for (Future<Object> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private void awaitCoalesced(int waiters) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count("coalesced") < waiters && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private double count(String role) {
+        return meterRegistry.counter("custom.cache.load", "cache", "patients", "role", role).count();
+    }
+}
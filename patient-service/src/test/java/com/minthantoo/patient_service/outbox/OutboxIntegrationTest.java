@@ -0,0 +1,278 @@
+package com.minthantoo.patient_service.outbox;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import com.minthantoo.patient_service.grpc.BillingAccountBatcher;
+import com.minthantoo.patient_service.kafka.kafkaProducer;
+import com.minthantoo.patient_service.model.OutboxEvent;
+import com.minthantoo.patient_service.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// OutboxRelay and OutboxWorker against a real PostgreSQL, the guarantees come from its row locks (SKIP LOCKED)
+// and the conditional updates. Kafka and billing-service are mocks, the relays and workers of the test are built
+// here with their timers effectively off, so the application's own ones don't pick up the test rows.
+@SpringBootTest(properties = {
+        "spring.kafka.listener.auto-startup=false",
+        "spring.sql.init.mode=always",
+        "patients.outbox.relay.poll-interval=1h",
+        "patients.outbox.poll-interval=1h"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class OutboxIntegrationTest {
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(30);
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final kafkaProducer kafkaProducer = mock(kafkaProducer.class);
+    // payloads in the order they were handed to Kafka, and the ones whose send fails
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> failing = ConcurrentHashMap.newKeySet();
+    private final List<OutboxRelay> relays = new ArrayList<>();
+    private final Instant start = Instant.now().truncatedTo(ChronoUnit.MILLIS).minusSeconds(60);
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM outbox_event");
+        when(kafkaProducer.send(any(), any(), any(), any())).thenAnswer(invocation -> {
+            String payload = new String(invocation.<byte[]>getArgument(2), StandardCharsets.UTF_8);
+            sent.add(payload);
+            return failing.contains(payload)
+                    ? CompletableFuture.failedFuture(new IllegalStateException("broker down"))
+                    : CompletableFuture.completedFuture(mock(SendResult.class));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        relays.forEach(OutboxRelay::shutdown);
+    }
+
+    @Test
+    void laterEventOfAPatientWaitsWhileAnEarlierOneIsUnsent() {
+        OutboxRelay relay = relay(100, 10);
+        save(event("alice", "alice-created", 0), event("alice", "alice-updated", 1), event("bob", "bob-created", 2));
+        failing.add("alice-created");
+
+        // alice-updated isn't even picked while alice-created is in flight
+        assertEquals(2, relay.relayBatch());
+        assertEquals(List.of("alice-created", "bob-created"), sent);
+
+        // the failed send is back to PENDING with a backoff, and still holds alice-updated back
+        OutboxEvent retried = find("alice-created");
+        assertEquals(OutboxEvent.Status.PENDING, retried.getStatus());
+        assertEquals(1, retried.getAttempts());
+        assertTrue(retried.getNextAttemptAt().isAfter(Instant.now().plus(RETRY_BACKOFF).minusSeconds(5)));
+        assertEquals(0, relay.relayBatch());
+
+        // retry is due and goes through -> only then alice-updated follows
+        failing.clear();
+        makeDue("alice-created");
+        assertEquals(1, relay.relayBatch());
+        assertEquals(1, relay.relayBatch());
+        assertEquals(List.of("alice-created", "bob-created", "alice-created", "alice-updated"), sent);
+        assertEquals(OutboxEvent.Status.SENT, find("alice-updated").getStatus());
+        assertEquals(0, relay.relayBatch());
+    }
+
+    @Test
+    void failedEventStopsHoldingTheLaterOnesBack() {
+        OutboxRelay relay = relay(100, 1);
+        save(event("alice", "alice-created", 0), event("alice", "alice-updated", 1));
+        failing.add("alice-created");
+
+        assertEquals(1, relay.relayBatch());
+        assertEquals(OutboxEvent.Status.FAILED, find("alice-created").getStatus());
+
+        assertEquals(1, relay.relayBatch());
+        assertEquals(List.of("alice-created", "alice-updated"), sent);
+        assertEquals(OutboxEvent.Status.SENT, find("alice-updated").getStatus());
+    }
+
+    @Test
+    void twoRelaysNeverClaimTheSameRow() throws Exception {
+        int events = 500;
+        save(IntStream.range(0, events).mapToObj(i -> event("patient-" + i, "event-" + i, i)).toArray(OutboxEvent[]::new));
+        List<OutboxRelay> competing = List.of(relay(10, 10), relay(10, 10));
+
+        ExecutorService executor = Executors.newFixedThreadPool(competing.size());
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> claimed = new ArrayList<>();
+            for (OutboxRelay relay : competing) {
+                claimed.add(executor.submit(() -> {
+                    go.await();
+                    int total = 0;
+                    for (int batch = relay.relayBatch(); batch > 0; batch = relay.relayBatch()) {
+                        total += batch;
+                    }
+                    return total;
+                }));
+            }
+            go.countDown();
+
+            int total = 0;
+            for (Future<Integer> result : claimed) {
+                total += result.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(events, total);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(events, sent.size());
+        assertEquals(events, Set.copyOf(sent).size());
+        assertEquals(events, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM outbox_event WHERE status = 'SENT'", Integer.class));
+    }
+
+    @Test
+    void purgeOnlyDeletesOldSentEvents() {
+        OutboxEvent oldSent = event("alice", "old-sent", 0);
+        oldSent.setStatus(OutboxEvent.Status.SENT);
+        oldSent.setProcessedAt(Instant.now().minus(Duration.ofDays(8)));
+        OutboxEvent recentSent = event("bob", "recent-sent", 1);
+        recentSent.setStatus(OutboxEvent.Status.SENT);
+        recentSent.setProcessedAt(Instant.now().minus(Duration.ofDays(1)));
+        OutboxEvent oldFailed = event("carol", "old-failed", 2);
+        oldFailed.setStatus(OutboxEvent.Status.FAILED);
+        oldFailed.setProcessedAt(Instant.now().minus(Duration.ofDays(8)));
+        save(oldSent, recentSent, oldFailed, event("dave", "pending", 3));
+
+        relay(100, 10).purgeSentEvents();
+
+        assertEquals(Set.of("recent-sent", "old-failed", "pending"), Set.copyOf(jdbcTemplate.queryForList(
+                "SELECT convert_from(payload, 'UTF8') FROM outbox_event", String.class)));
+    }
+
+    @Test
+    void onlyOneWorkerClaimsABillingRequest() {
+        OutboxEvent task = event("alice", "billing", 0);
+        task.setTopic(null);
+        save(task);
+
+        Instant now = Instant.now();
+        assertEquals(1, outboxEventRepository.claim(task.getId(), now, now.plusSeconds(60)));
+        assertEquals(0, outboxEventRepository.claim(task.getId(), now, now.plusSeconds(60)));
+    }
+
+    @Test
+    void workerMarksTheBillingRequestSentOrRetriesIt() throws InterruptedException {
+        BillingAccountBatcher batcher = mock(BillingAccountBatcher.class);
+        when(batcher.submit(any(BillingRequest.class))).thenAnswer(invocation ->
+                invocation.<BillingRequest>getArgument(0).getPatientId().equals("alice")
+                        ? CompletableFuture.completedFuture(BillingResponse.newBuilder().setStatus("ACTIVE").build())
+                        : CompletableFuture.failedFuture(new IllegalStateException("billing-service down")));
+        OutboxWorker worker = new OutboxWorker(outboxEventRepository, batcher, new SimpleMeterRegistry(),
+                2, 10, 100, 10, Duration.ofMinutes(1), RETRY_BACKOFF);
+        try {
+            OutboxEvent alice = billingTask("alice");
+            OutboxEvent bob = billingTask("bob");
+            worker.submitAll(List.of(alice, bob));
+
+            awaitStatus(alice.getId(), OutboxEvent.Status.SENT);
+            awaitStatus(bob.getId(), OutboxEvent.Status.PENDING);
+            OutboxEvent retried = outboxEventRepository.findById(bob.getId()).orElseThrow();
+            assertEquals(1, retried.getAttempts());
+            assertTrue(retried.getNextAttemptAt().isAfter(Instant.now()));
+        } finally {
+            worker.shutdown();
+        }
+    }
+
+    private OutboxRelay relay(int batchSize, int maxAttempts) {
+        OutboxRelay relay = new OutboxRelay(outboxEventRepository, kafkaProducer, new SimpleMeterRegistry(), transactionManager,
+                batchSize, 20, Duration.ofSeconds(5), Duration.ofMinutes(1), maxAttempts, RETRY_BACKOFF, Duration.ofDays(7));
+        relays.add(relay);
+        return relay;
+    }
+
+    // created "offset" ms after the test start, due right away, payload = name
+    private OutboxEvent event(String patient, String name, int offset) {
+        OutboxEvent event = new OutboxEvent(patient, OutboxEvent.PATIENT_UPDATED, "patient", name.getBytes(StandardCharsets.UTF_8));
+        event.setCreatedAt(start.plusMillis(offset));
+        event.setNextAttemptAt(start.plusMillis(offset));
+        return event;
+    }
+
+    private static OutboxEvent billingTask(String patient) {
+        return new OutboxEvent(patient, OutboxEvent.BILLING_ACCOUNT_CREATE, null, BillingRequest.newBuilder()
+                .setPatientId(patient).setName(patient).setEmail(patient + "@example.com").build().toByteArray());
+    }
+
+    private void save(OutboxEvent... events) {
+        outboxEventRepository.saveAll(List.of(events));
+    }
+
+    private OutboxEvent find(String name) {
+        UUID id = jdbcTemplate.queryForObject("SELECT id FROM outbox_event WHERE convert_from(payload, 'UTF8') = ?", UUID.class, name);
+        return outboxEventRepository.findById(id).orElseThrow();
+    }
+
+    private void makeDue(String name) {
+        jdbcTemplate.update("UPDATE outbox_event SET next_attempt_at = ? WHERE convert_from(payload, 'UTF8') = ?",
+                Timestamp.from(Instant.now().minusSeconds(1)), name);
+    }
+
+    private void awaitStatus(UUID id, OutboxEvent.Status status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (outboxEventRepository.findById(id).orElseThrow().getStatus() != status && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(status, outboxEventRepository.findById(id).orElseThrow().getStatus());
+    }
+}
@@ -0,0 +1,127 @@
+package com.minthantoo.patient_service.pagination;
+
+import com.minthantoo.patient_service.cache.PatientCacheVersion;
+import com.minthantoo.patient_service.controller.PatientController;
+import com.minthantoo.patient_service.exception.GlobalExceptionHandler;
+import com.minthantoo.patient_service.exception.InvalidCursorException;
+import com.minthantoo.patient_service.grpc.BillingAccountBatcher;
+import com.minthantoo.patient_service.kafka.kafkaProducer;
+import com.minthantoo.patient_service.model.Patient;
+import com.minthantoo.patient_service.outbox.OutboxRelay;
+import com.minthantoo.patient_service.outbox.OutboxWorker;
+import com.minthantoo.patient_service.repository.PatientRepository;
+import com.minthantoo.patient_service.search.PatientTrigramIndex;
+import com.minthantoo.patient_service.service.PatientCountEstimator;
+import com.minthantoo.patient_service.service.PatientExportService;
+import com.minthantoo.patient_service.service.PatientImportService;
+import com.minthantoo.patient_service.service.PatientService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Keyset cursor codec: round trip for every sort field, the sort check, and garbage from the client.
+class PatientCursorTest {
+    private static final UUID ID = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+
+    @ParameterizedTest
+    @ValueSource(strings = {"name", "email", "address", "dateOfBirth", "registeredDate"})
+    void roundTripKeepsTheSortKeyAndId(String sortField) {
+        String token = PatientCursor.after(patient(), sortField, "DESC").encode();
+
+        PatientCursor decoded = PatientCursor.decode(token);
+
+        assertEquals(token, decoded.encode());
+        assertDoesNotThrow(() -> decoded.verifySort(sortField, "desc"));
+        KeysetScrollPosition position = assertInstanceOf(KeysetScrollPosition.class, decoded.toScrollPosition());
+        assertEquals(Map.of(sortField, expectedKey(sortField), "id", ID), position.getKeys());
+    }
+
+    @Test
+    void cursorIsOnlyValidForItsOwnSort() {
+        PatientCursor cursor = PatientCursor.decode(PatientCursor.after(patient(), "name", "asc").encode());
+
+        assertDoesNotThrow(() -> cursor.verifySort("name", "ASC"));
+        assertThrows(InvalidCursorException.class, () -> cursor.verifySort("email", "asc"));
+        assertThrows(InvalidCursorException.class, () -> cursor.verifySort("name", "desc"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "not base64 at all!",
+            "v1:name:asc",                                                    // too few parts
+            "v2:name:asc:123e4567-e89b-12d3-a456-426614174000:John",         // unknown version
+            "v1:password:asc:123e4567-e89b-12d3-a456-426614174000:x",        // not a sortable field
+            "v1:name:asc:not-a-uuid:John",
+            "v1:dateOfBirth:asc:123e4567-e89b-12d3-a456-426614174000:1985-13-45"
+    })
+    void malformedOrTamperedCursorIsRejected(String raw) {
+        String token = raw.startsWith("v") ? base64(raw) : raw;
+
+        assertThrows(InvalidCursorException.class, () -> PatientCursor.decode(token));
+    }
+
+    @Test
+    void badCursorIsA400() throws Exception {
+        PatientService patientService = new PatientService(mock(PatientRepository.class), mock(BillingAccountBatcher.class),
+                mock(kafkaProducer.class), mock(PatientCountEstimator.class), mock(PatientTrigramIndex.class),
+                mock(PatientCacheVersion.class), mock(OutboxWorker.class), mock(OutboxRelay.class),
+                mock(PlatformTransactionManager.class), "sync", Duration.ofSeconds(1), 1000);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new PatientController(patientService,
+                        mock(PatientImportService.class), mock(PatientExportService.class), mock(PatientCacheVersion.class)))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        mockMvc.perform(get("/patients").param("cursor", "%%%"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/patients").param("cursor", base64("v1:dateOfBirth:asc:" + ID + ":yesterday")).param("sortField", "dateOfBirth"))
+                .andExpect(status().isBadRequest());
+        // a valid cursor from another sort
+        mockMvc.perform(get("/patients").param("cursor", PatientCursor.after(patient(), "email", "asc").encode()))
+                .andExpect(status().isBadRequest());
+    }
+
+    // ':' in the values on purpose, the value is the last part of the cursor
+    private static Patient patient() {
+        Patient patient = new Patient();
+        patient.setId(ID);
+        patient.setName("Doe: John");
+        patient.setEmail("john.doe@example.com");
+        patient.setAddress("12:30 Main St, Springfield");
+        patient.setDateOfBirth(LocalDate.of(1985, 6, 15));
+        patient.setRegisteredDate(LocalDate.of(2024, 1, 10));
+        return patient;
+    }
+
+    private static Object expectedKey(String sortField) {
+        return switch (sortField) {
+            case "name" -> "Doe: John";
+            case "email" -> "john.doe@example.com";
+            case "address" -> "12:30 Main St, Springfield";
+            case "dateOfBirth" -> LocalDate.of(1985, 6, 15);
+            default -> LocalDate.of(2024, 1, 10);
+        };
+    }
+
+    private static String base64(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
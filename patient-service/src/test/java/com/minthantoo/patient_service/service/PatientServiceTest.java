@@ -0,0 +1,108 @@
+package com.minthantoo.patient_service.service;
+
+import billing.BillingRequest;
+import billing.BillingResponse;
+import com.minthantoo.patient_service.cache.PatientCacheVersion;
+import com.minthantoo.patient_service.dto.PatientRequestDTO;
+import com.minthantoo.patient_service.dto.PatientResponseDTO;
+import com.minthantoo.patient_service.grpc.BillingAccountBatcher;
+import com.minthantoo.patient_service.kafka.KafkaTopics;
+import com.minthantoo.patient_service.kafka.kafkaProducer;
+import com.minthantoo.patient_service.model.OutboxEvent;
+import com.minthantoo.patient_service.model.Patient;
+import com.minthantoo.patient_service.outbox.OutboxRelay;
+import com.minthantoo.patient_service.outbox.OutboxWorker;
+import com.minthantoo.patient_service.repository.PatientRepository;
+import com.minthantoo.patient_service.search.PatientTrigramIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Sync createPatient once the patient is committed: whatever happens to the billing call, the answer is a 200,
+// PENDING when billing-service didn't answer in time, with the account request queued in the outbox.
+class PatientServiceTest {
+    private final PatientRepository patientRepository = mock(PatientRepository.class);
+    private final BillingAccountBatcher billingAccountBatcher = mock(BillingAccountBatcher.class);
+    // builds the real payloads, nothing is sent from here
+    @SuppressWarnings("unchecked")
+    private final kafkaProducer kafkaProducer = new kafkaProducer(mock(KafkaTemplate.class));
+    private final OutboxRelay outboxRelay = mock(OutboxRelay.class);
+    private final PatientService patientService = new PatientService(patientRepository, billingAccountBatcher, kafkaProducer,
+            mock(PatientCountEstimator.class), mock(PatientTrigramIndex.class), mock(PatientCacheVersion.class),
+            mock(OutboxWorker.class), outboxRelay, mock(PlatformTransactionManager.class), "sync", Duration.ofMillis(100), 1000);
+
+    private final UUID patientId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        when(patientRepository.save(any(Patient.class))).thenAnswer(invocation -> {
+            Patient patient = invocation.getArgument(0);
+            patient.setId(patientId);
+            return patient;
+        });
+    }
+
+    @Test
+    void billingAnswerIsReturned() {
+        when(billingAccountBatcher.submit(any(BillingRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                BillingResponse.newBuilder().setAccountId("account-1").setStatus("ACTIVE").build()));
+
+        assertEquals("ACTIVE", patientService.createPatient(request()).getBillingStatus());
+        // only the patient.created event
+        verify(outboxRelay, times(1)).publish(any(OutboxEvent.class));
+    }
+
+    @Test
+    void failedBillingCallIsPendingAndQueued() {
+        when(billingAccountBatcher.submit(any(BillingRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("fallback pool is full")));
+
+        PatientResponseDTO response = patientService.createPatient(request());
+
+        assertEquals("PENDING", response.getBillingStatus());
+        assertEquals(patientId.toString(), response.getId());
+        assertQueued();
+    }
+
+    @Test
+    void billingAnswerThatNeverComesIsPendingAfterTheWait() {
+        when(billingAccountBatcher.submit(any(BillingRequest.class))).thenReturn(new CompletableFuture<>());
+
+        assertEquals("PENDING", patientService.createPatient(request()).getBillingStatus());
+        assertQueued();
+    }
+
+    private void assertQueued() {
+        // the first publish is the patient.created event from the create transaction
+        ArgumentCaptor<OutboxEvent> events = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxRelay, times(2)).publish(events.capture());
+        OutboxEvent queued = events.getAllValues().get(1);
+        assertEquals(List.of(OutboxEvent.BILLING_ACCOUNT_CREATE_REQUESTED, KafkaTopics.BILLING_ACCOUNT, patientId.toString()),
+                List.of(queued.getEventType(), queued.getTopic(), queued.getAggregateId()));
+    }
+
+    private static PatientRequestDTO request() {
+        PatientRequestDTO request = new PatientRequestDTO();
+        request.setName("John Doe");
+        request.setEmail("john.doe@example.com");
+        request.setAddress("123 Main Street");
+        request.setDateOfBirth("1990-01-01");
+        request.setRegisteredDate("2024-01-01");
+        return request;
+    }
+}